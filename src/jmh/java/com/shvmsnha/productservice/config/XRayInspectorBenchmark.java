@@ -0,0 +1,98 @@
+package com.shvmsnha.productservice.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.AWSXRayRecorderBuilder;
+import com.amazonaws.xray.entities.Segment;
+import com.amazonaws.xray.spring.aop.BaseAbstractXRayInterceptor;
+import com.amazonaws.xray.spring.aop.XRayEnabled;
+
+// Per-request tracing overhead of one controller call that makes two repository calls, all through
+// @XRayEnabled proxies, for sampled and unsampled requests, with XRayInspector and with the stock aspect.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class XRayInspectorBenchmark {
+
+    @Param({"true", "false"})
+    public boolean sampled;
+
+    @Param({"inspector", "stock"})
+    public String aspect;
+
+    private Controller controller;
+
+    @Setup
+    public void setUp() {
+        AWSXRay.setGlobalRecorder(AWSXRayRecorderBuilder.standard().build());
+        Object tracingAspect = "inspector".equals(aspect) ? new XRayInspector() : new StockXRayInterceptor();
+        AspectJProxyFactory repositoryProxy = new AspectJProxyFactory(new Repository());
+        repositoryProxy.setProxyTargetClass(true);
+        repositoryProxy.addAspect(tracingAspect);
+        AspectJProxyFactory controllerProxy = new AspectJProxyFactory(new Controller(repositoryProxy.getProxy()));
+        controllerProxy.setProxyTargetClass(true);
+        controllerProxy.addAspect(tracingAspect);
+        controller = controllerProxy.getProxy();
+    }
+
+    @Benchmark
+    public String request() {
+        Segment segment = AWSXRay.beginSegment("productsservice-jmh");
+        segment.setSampled(sampled);
+        try {
+            return controller.getProduct("p1");
+        } finally {
+            AWSXRay.endSegment();
+        }
+    }
+
+    @XRayEnabled
+    public static class Controller {
+        private final Repository repository;
+
+        public Controller() {
+            this(null);
+        }
+
+        public Controller(Repository repository) {
+            this.repository = repository;
+        }
+
+        public String getProduct(String id) {
+            return repository.getById(id) + repository.getByCode(id);
+        }
+    }
+
+    @XRayEnabled
+    public static class Repository {
+        public String getById(String id) {
+            return id;
+        }
+
+        public String getByCode(String code) {
+            return code;
+        }
+    }
+
+    // BaseAbstractXRayInterceptor as shipped, which traces every call whether or not it is sampled
+    @Aspect
+    public static class StockXRayInterceptor extends BaseAbstractXRayInterceptor {
+        @Override
+        @Pointcut("@within(com.amazonaws.xray.spring.aop.XRayEnabled)")
+        protected void xrayEnabledClasses() {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.shvmsnha.productservice.events.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.amazonaws.xray.AWSXRay;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.events.dto.EventType;
+import com.shvmsnha.productservice.events.dto.ProductEventDto;
+import com.shvmsnha.productservice.events.dto.ProductFailureEventDto;
+
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+
+// Per-event CPU work in EventsPublisher before anything reaches the SNS client.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventsPublisherBenchmark {
+
+    private static final String TOPIC_ARN = "arn:aws:sns:ap-northeast-2:000000000000:product-events";
+
+    private ObjectMapper objectMapper;
+    private ProductEventDto productEventDto;
+    private ProductFailureEventDto productFailureEventDto;
+    private String message;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        productEventDto = new ProductEventDto("8b0e4b8e-2f0a-4c55-9d7e-6b1f8f7b1c2d", "KB-2024-001",
+            "shivamtest@test.com", 49.99f);
+        productFailureEventDto = new ProductFailureEventDto("shivamtest@test.com", 404, "Product not found",
+            "8b0e4b8e-2f0a-4c55-9d7e-6b1f8f7b1c2d");
+        message = objectMapper.writeValueAsString(productEventDto);
+        // what the interceptor and the X-Ray servlet filter leave on a request thread
+        ThreadContext.put("requestId", "c6f1d8f4-5d0b-4a53-9d43-0a6f0b6f2c11");
+        AWSXRay.beginSegment("productsservice-jmh");
+    }
+
+    @TearDown
+    public void tearDown() {
+        AWSXRay.clearTraceEntity();
+        ThreadContext.clearAll();
+    }
+
+    @Benchmark
+    public String serializeProductEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(productEventDto);
+    }
+
+    @Benchmark
+    public String serializeProductFailureEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(productFailureEventDto);
+    }
+
+    @Benchmark
+    public PublishRequest buildPublishRequest() {
+        return EventsPublisher.publishRequest(TOPIC_ARN, message, EventsPublisher.messageAttributes(EventType.PRODUCT_CREATED));
+    }
+}
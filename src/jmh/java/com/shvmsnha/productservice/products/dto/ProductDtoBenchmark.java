@@ -0,0 +1,44 @@
+package com.shvmsnha.productservice.products.dto;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductDtoBenchmark {
+
+    private Product product;
+    private ProductDto productDto;
+
+    @Setup
+    public void setUp() {
+        product = new Product();
+        product.setId("8b0e4b8e-2f0a-4c55-9d7e-6b1f8f7b1c2d");
+        product.setProductName("Wireless Keyboard");
+        product.setCode("KB-2024-001");
+        product.setPrice(49.99f);
+        product.setModel("K380");
+        product.setProductUrl("https://example.com/products/k380");
+        productDto = new ProductDto(product);
+    }
+
+    @Benchmark
+    public ProductDto productToDto() {
+        return new ProductDto(product);
+    }
+
+    @Benchmark
+    public Product dtoToProduct() {
+        return ProductDto.toProduct(productDto);
+    }
+}
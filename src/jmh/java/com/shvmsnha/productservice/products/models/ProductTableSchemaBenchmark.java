@@ -0,0 +1,71 @@
+package com.shvmsnha.productservice.products.models;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+// Item conversion done for every product read from or written to DynamoDB, with the static
+// Product.TABLE_SCHEMA against the TableSchema.fromBean mapping it replaced.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductTableSchemaBenchmark {
+
+    private TableSchema<BeanProduct> beanSchema;
+    private BeanProduct beanProduct;
+    private Product product;
+    private Map<String, AttributeValue> item;
+
+    @Setup
+    public void setUp() {
+        beanSchema = TableSchema.fromBean(BeanProduct.class);
+        product = new Product();
+        product.setId("8b0e4b8e-2f0a-4c55-9d7e-6b1f8f7b1c2d");
+        product.setProductName("Wireless Keyboard");
+        product.setCode("KB-2024-001");
+        product.setPrice(49.99f);
+        product.setModel("K380");
+        product.setProductUrl("https://example.com/products/k380");
+        item = Product.TABLE_SCHEMA.itemToMap(product, true);
+        beanProduct = beanSchema.mapToItem(item);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> beanItemToMap() {
+        return beanSchema.itemToMap(beanProduct, true);
+    }
+
+    @Benchmark
+    public BeanProduct beanMapToItem() {
+        return beanSchema.mapToItem(item);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> staticItemToMap() {
+        return Product.TABLE_SCHEMA.itemToMap(product, true);
+    }
+
+    @Benchmark
+    public Product staticMapToItem() {
+        return Product.TABLE_SCHEMA.mapToItem(item);
+    }
+
+    // the introspection TableSchema.fromBean did when ProductsRepository was created; the static schema
+    // is built once when Product is loaded and has no counterpart here
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public TableSchema<BeanProduct> beanSchemaCreation() {
+        return TableSchema.fromBean(BeanProduct.class);
+    }
+}
@@ -0,0 +1,73 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Outcomes of one operation's requests in the measured window. Outcomes are keyed by status code, or by
+// timeout, error (no response), dropped (not sent because max-in-flight requests were outstanding) or
+// skipped (a delete with nothing created to delete yet, which does not count as a failure).
+final class EndpointStats {
+
+    static final String TIMEOUT = "timeout";
+    static final String ERROR = "error";
+    static final String DROPPED = "dropped";
+    static final String SKIPPED = "skipped";
+
+    private final Operation operation;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    EndpointStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    void record(int status, long latencyMicros) {
+        latencies.record(latencyMicros);
+        outcome(Integer.toString(status), status != operation.expectedStatus());
+    }
+
+    void timedOut(long latencyMicros) {
+        latencies.record(latencyMicros);
+        outcome(TIMEOUT, true);
+    }
+
+    void failed() {
+        outcome(ERROR, true);
+    }
+
+    void dropped() {
+        outcome(DROPPED, true);
+    }
+
+    void skipped() {
+        outcome(SKIPPED, false);
+    }
+
+    LoadReport.EndpointReport report(double measuredSeconds) {
+        long requests = outcomes.values().stream().mapToLong(LongAdder::sum).sum();
+        Map<String, Long> byOutcome = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> byOutcome.put(outcome, count.sum()));
+        return new LoadReport.EndpointReport(
+            operation.method(),
+            operation.path(),
+            operation.expectedStatus(),
+            requests,
+            latencies.count() / measuredSeconds,
+            requests == 0 ? 0 : failures.sum() / (double) requests,
+            latencies.percentileMicros(0.50) / 1000.0,
+            latencies.percentileMicros(0.99) / 1000.0,
+            latencies.percentileMicros(0.999) / 1000.0,
+            latencies.maxMicros() / 1000.0,
+            byOutcome);
+    }
+
+    private void outcome(String outcome, boolean failure) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        if (failure) {
+            failures.increment();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latencies in microseconds, in log-linear buckets: exact below 128us, then 64 buckets per power of two,
+// so any percentile is within about 1.6% of the recorded value. Recording is lock free and the memory is
+// fixed, however many requests a run sends, which sorting every latency would not be.
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int BUCKETS = 2048;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(Math.min(index(value), BUCKETS - 1));
+        count.incrementAndGet();
+        maxMicros.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    long maxMicros() {
+        return maxMicros.get();
+    }
+
+    // The upper bound of the bucket holding the value at `quantile`, so a percentile is never understated.
+    long percentileMicros(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        long mantissa = value >>> shift;
+        long index = 2L * SUB_BUCKETS + (long) (shift - 1) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+        return (int) Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long mantissa = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,209 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+
+// Sends the mix as an open model: requests arrive at `rate` per second, Poisson distributed or evenly
+// spaced, whether or not earlier ones have been answered, as independent clients would send them. A closed
+// loop of N clients waiting for their responses would slow down with the service and understate latency.
+final class LoadGenerator {
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final LoadTestOptions options;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final Semaphore inFlight;
+    // ids of products this run created, which are the ones it deletes
+    private final Queue<String> created = new ConcurrentLinkedQueue<>();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadGenerator(LoadTestOptions options, HttpClient httpClient, ObjectMapper objectMapper) {
+        this.options = options;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.inFlight = new Semaphore(options.maxInFlight());
+        this.operations = options.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+            stats.put(operations[i], new EndpointStats(operations[i]));
+        }
+    }
+
+    LoadReport run() throws InterruptedException {
+        String startedAt = Instant.now().toString();
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + options.warmup().toNanos();
+        long endNanos = measureFromNanos + options.duration().toNanos();
+        double meanIntervalNanos = 1e9 / options.rate();
+        double offsetNanos = 0;
+        long sent = 0;
+        long nextProgressNanos = startNanos + PROGRESS_INTERVAL_NANOS;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long scheduledNanos = startNanos + (long) offsetNanos;
+            if (scheduledNanos >= endNanos) {
+                break;
+            }
+            // a request this thread is late for is sent at once, and its latency still counts from its schedule
+            long waitNanos;
+            while ((waitNanos = scheduledNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            send(pick(random), scheduledNanos, scheduledNanos >= measureFromNanos);
+            sent++;
+            offsetNanos += options.poisson() ? -Math.log(1 - random.nextDouble()) * meanIntervalNanos : meanIntervalNanos;
+            if (scheduledNanos >= nextProgressNanos) {
+                System.out.printf("[load-test] %ds %s, sent: %d, in flight: %d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(scheduledNanos - startNanos),
+                    scheduledNanos < measureFromNanos ? "warmup" : "measuring", sent,
+                    options.maxInFlight() - inFlight.availablePermits());
+                nextProgressNanos += PROGRESS_INTERVAL_NANOS;
+            }
+        }
+        // every outstanding request has completed or timed out by then
+        if (inFlight.tryAcquire(options.maxInFlight(), options.timeout().toMillis() + 1000, TimeUnit.MILLISECONDS)) {
+            inFlight.release(options.maxInFlight());
+        }
+        double measuredSeconds = options.duration().toNanos() / 1e9;
+        Map<String, LoadReport.EndpointReport> endpoints = new LinkedHashMap<>();
+        stats.forEach((operation, endpoint) -> endpoints.put(operation.key(), endpoint.report(measuredSeconds)));
+        return new LoadReport(options.target().toString(), startedAt, options.rate(),
+            options.poisson() ? "poisson" : "uniform", options.warmup().toMillis() / 1000.0, measuredSeconds, endpoints);
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    // Warmup requests are sent like any other but not recorded.
+    private void send(Operation operation, long scheduledNanos, boolean measured) {
+        EndpointStats endpoint = measured ? stats.get(operation) : null;
+        HttpRequest request = request(operation);
+        if (request == null) {
+            if (endpoint != null) {
+                endpoint.skipped();
+            }
+            return;
+        }
+        if (!inFlight.tryAcquire()) {
+            if (endpoint != null) {
+                endpoint.dropped();
+            }
+            return;
+        }
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, throwable) -> {
+            try {
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos);
+                if (throwable == null && operation == Operation.CREATE && response.statusCode() == 201) {
+                    remember(response.body());
+                }
+                if (endpoint == null) {
+                    return;
+                }
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                if (cause == null) {
+                    endpoint.record(response.statusCode(), latencyMicros);
+                } else if (cause instanceof HttpTimeoutException) {
+                    endpoint.timedOut(latencyMicros);
+                } else {
+                    endpoint.failed();
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // null for a delete before this run has created anything to delete
+    private HttpRequest request(Operation operation) {
+        long n = sequence.incrementAndGet();
+        int seed = ThreadLocalRandom.current().nextInt(options.seedProducts());
+        String seedId = options.seedIdPrefix() + seed;
+        String seedCode = options.seedCodePrefix() + seed;
+        return switch (operation) {
+            case GET_BY_ID -> builder("/api/products/" + encode(seedId), n).GET().build();
+            case GET_BY_CODE -> builder("/api/products?code=" + encode(seedCode), n).GET().build();
+            case GET_MISSING -> builder("/api/products/load-test-missing-" + runId + "-" + n, n).GET().build();
+            case CREATE -> withBody(builder("/api/products", n), "POST", product(null, "LOAD-TEST-" + runId + "-" + n, n));
+            // the code belongs to a seeded product, so the create is rejected
+            case CREATE_CONFLICT -> withBody(builder("/api/products", n), "POST", product(null, seedCode, n));
+            case UPDATE -> withBody(builder("/api/products/" + encode(seedId), n), "PUT", product(seedId, seedCode, n));
+            case DELETE -> {
+                String id = created.poll();
+                yield id == null ? null : builder("/api/products/" + encode(id), n).DELETE().build();
+            }
+        };
+    }
+
+    private HttpRequest.Builder builder(String path, long n) {
+        return HttpRequest.newBuilder(options.target().resolve(path))
+            .timeout(options.timeout())
+            .header("requestId", "load-test-" + runId + "-" + n);
+    }
+
+    private HttpRequest withBody(HttpRequest.Builder builder, String method, ProductDto product) {
+        try {
+            return builder
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(product)))
+                .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ProductDto product(String id, String code, long n) {
+        return new ProductDto(id, "Load test product " + n, code, 10 + n % 1000, "load-test", null);
+    }
+
+    private void remember(byte[] body) {
+        try {
+            String id = objectMapper.readTree(body).path("id").asText(null);
+            if (id != null) {
+                created.add(id);
+            }
+        } catch (IOException e) {
+            // the create is still recorded by its status; it just can not be deleted
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
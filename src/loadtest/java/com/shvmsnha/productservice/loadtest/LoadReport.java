@@ -0,0 +1,58 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// The JSON report of a run. A report kept from an earlier run is the baseline a later one is compared with.
+record LoadReport(
+    String target,
+    String startedAt,
+    double arrivalRate,
+    String arrivals,
+    double warmupSeconds,
+    double durationSeconds,
+    Map<String, EndpointReport> endpoints
+) {
+
+    // Throughput counts the responses, and timeouts, to requests scheduled in the measured window. Latency
+    // is from when a request was scheduled rather than sent, so a generator that falls behind shows up in
+    // it instead of hiding the wait; errorRate is the share of requests without the expected status.
+    record EndpointReport(
+        String method,
+        String path,
+        int expectedStatus,
+        long requests,
+        double throughputPerSecond,
+        double errorRate,
+        double p50Ms,
+        double p99Ms,
+        double p999Ms,
+        double maxMs,
+        Map<String, Long> outcomes
+    ) {
+    }
+
+    // One line per endpoint in both reports whose p99 or throughput is worse than the baseline's by more
+    // than `tolerance`, or whose error rate is higher by more than `errorRateTolerance`.
+    List<String> regressions(LoadReport baseline, double tolerance, double errorRateTolerance) {
+        List<String> regressions = new ArrayList<>();
+        endpoints.forEach((name, current) -> {
+            EndpointReport previous = baseline.endpoints().get(name);
+            if (previous == null) {
+                return;
+            }
+            if (current.p99Ms() > previous.p99Ms() * (1 + tolerance)) {
+                regressions.add(String.format("%s p99 %.1f ms, baseline %.1f ms", name, current.p99Ms(), previous.p99Ms()));
+            }
+            if (current.throughputPerSecond() < previous.throughputPerSecond() * (1 - tolerance)) {
+                regressions.add(String.format("%s throughput %.1f/s, baseline %.1f/s", name,
+                    current.throughputPerSecond(), previous.throughputPerSecond()));
+            }
+            if (current.errorRate() > previous.errorRate() + errorRateTolerance) {
+                regressions.add(String.format("%s error rate %.4f, baseline %.4f", name, current.errorRate(), previous.errorRate()));
+            }
+        });
+        return regressions;
+    }
+}
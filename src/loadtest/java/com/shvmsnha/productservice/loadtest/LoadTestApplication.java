@@ -0,0 +1,59 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Load test against a running instance, e.g. one started with the local-perf profile:
+//   ./gradlew bootRun --args='--spring.profiles.active=local-perf'
+//   ./gradlew loadTest --args="--rate=500 --duration=60s --baseline=loadtest-baseline.json"
+// Writes the report to --report and, given --baseline, exits with 1 when an endpoint regressed against it.
+public class LoadTestApplication {
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ObjectMapper objectMapper = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(options.timeout())
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        System.out.printf("[load-test] target: %s, rate: %.1f/s (%s), warmup: %s, duration: %s, mix: %s%n",
+            options.target(), options.rate(), options.poisson() ? "poisson" : "uniform", options.warmup(),
+            options.duration(), options.mix());
+
+        LoadReport report = new LoadGenerator(options, httpClient, objectMapper).run();
+        report.endpoints().forEach((name, endpoint) -> System.out.printf(
+            "[load-test] %-15s %8d requests %9.1f/s  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  errors %6.2f%%  %s%n",
+            name, endpoint.requests(), endpoint.throughputPerSecond(), endpoint.p50Ms(), endpoint.p99Ms(),
+            endpoint.p999Ms(), endpoint.errorRate() * 100, endpoint.outcomes()));
+        Path reportFile = options.report().toAbsolutePath();
+        Files.createDirectories(reportFile.getParent());
+        objectMapper.writeValue(reportFile.toFile(), report);
+        System.out.printf("[load-test] report: %s%n", reportFile);
+
+        int exitCode = 0;
+        if (options.baseline() != null) {
+            if (Files.exists(options.baseline())) {
+                LoadReport baseline = objectMapper.readValue(options.baseline().toFile(), LoadReport.class);
+                List<String> regressions = report.regressions(baseline, options.tolerance(), options.errorRateTolerance());
+                regressions.forEach(regression -> System.out.printf("[load-test] REGRESSION %s%n", regression));
+                System.out.printf("[load-test] compared with baseline %s: %d regressions%n", options.baseline(), regressions.size());
+                exitCode = regressions.isEmpty() ? 0 : 1;
+            } else {
+                System.out.printf("[load-test] no baseline at %s; copy the report there to compare later runs with it%n",
+                    options.baseline());
+            }
+        }
+        System.exit(exitCode);
+    }
+}
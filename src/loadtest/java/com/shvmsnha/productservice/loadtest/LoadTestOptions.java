@@ -0,0 +1,103 @@
+package com.shvmsnha.productservice.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Options as --name=value arguments, e.g. ./gradlew loadTest --args="--target=http://localhost:8080 --rate=500".
+// The seed-* options name the products the reads and updates go to; the defaults match the products the
+// local-perf profile seeds, local-perf-<n> with code LOCAL-PERF-<n>.
+record LoadTestOptions(
+    URI target,
+    double rate,
+    boolean poisson,
+    Duration warmup,
+    Duration duration,
+    Duration timeout,
+    int maxInFlight,
+    Map<Operation, Integer> mix,
+    int seedProducts,
+    String seedIdPrefix,
+    String seedCodePrefix,
+    Path report,
+    Path baseline,
+    double tolerance,
+    double errorRateTolerance
+) {
+
+    private static final Set<String> KNOWN = Set.of("target", "rate", "arrivals", "warmup", "duration", "timeout",
+        "max-in-flight", "mix", "seed-products", "seed-id-prefix", "seed-code-prefix", "report", "baseline",
+        "tolerance", "error-rate-tolerance");
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+            URI.create(values.getOrDefault("target", "http://localhost:8080")),
+            Double.parseDouble(values.getOrDefault("rate", "200")),
+            !"uniform".equals(values.getOrDefault("arrivals", "poisson")),
+            duration(values.getOrDefault("warmup", "10s")),
+            duration(values.getOrDefault("duration", "60s")),
+            duration(values.getOrDefault("timeout", "10s")),
+            Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+            mix(values.get("mix")),
+            Integer.parseInt(values.getOrDefault("seed-products", "10000")),
+            values.getOrDefault("seed-id-prefix", "local-perf-"),
+            values.getOrDefault("seed-code-prefix", "LOCAL-PERF-"),
+            Path.of(values.getOrDefault("report", "build/reports/load-test/report.json")),
+            values.containsKey("baseline") ? Path.of(values.get("baseline")) : null,
+            Double.parseDouble(values.getOrDefault("tolerance", "0.1")),
+            Double.parseDouble(values.getOrDefault("error-rate-tolerance", "0.01")));
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (options.rate <= 0 || options.seedProducts <= 0) {
+            throw new IllegalArgumentException("rate and seed-products must be positive");
+        }
+        return options;
+    }
+
+    // 500ms, 30s or 5m
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        return Duration.parse("PT" + value);
+    }
+
+    // getById:40,create:10,... as relative weights; operations left out of the list are not sent.
+    private static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        if (mix == null) {
+            for (Operation operation : Operation.values()) {
+                weights.put(operation, operation.defaultWeight());
+            }
+            return weights;
+        }
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in mix, got: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.of(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+}
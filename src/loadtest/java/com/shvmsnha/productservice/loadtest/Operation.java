@@ -0,0 +1,56 @@
+package com.shvmsnha.productservice.loadtest;
+
+// What the load test sends, with the status each request is expected to get. getMissing and createConflict
+// exercise the 404 and 409 paths through ProductsExceptionHandler, so for them that status is a success.
+enum Operation {
+    GET_BY_ID("getById", "GET", "/api/products/{id}", 200, 40),
+    GET_BY_CODE("getByCode", "GET", "/api/products?code={code}", 200, 20),
+    CREATE("create", "POST", "/api/products", 201, 10),
+    UPDATE("update", "PUT", "/api/products/{id}", 200, 10),
+    DELETE("delete", "DELETE", "/api/products/{id}", 200, 5),
+    GET_MISSING("getMissing", "GET", "/api/products/{id}", 404, 10),
+    CREATE_CONFLICT("createConflict", "POST", "/api/products", 409, 5);
+
+    private final String key;
+    private final String method;
+    private final String path;
+    private final int expectedStatus;
+    private final int defaultWeight;
+
+    Operation(String key, String method, String path, int expectedStatus, int defaultWeight) {
+        this.key = key;
+        this.method = method;
+        this.path = path;
+        this.expectedStatus = expectedStatus;
+        this.defaultWeight = defaultWeight;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String method() {
+        return method;
+    }
+
+    String path() {
+        return path;
+    }
+
+    int expectedStatus() {
+        return expectedStatus;
+    }
+
+    int defaultWeight() {
+        return defaultWeight;
+    }
+
+    static Operation of(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + key);
+    }
+}
@@ -0,0 +1,38 @@
+package com.shvmsnha.productservice;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.shvmsnha.productservice.products.repositories.CodeReservationBackfill;
+
+// Code reservation backfill entry point: starts the application without the web server, reserves the code of
+// every product that has none yet and exits. Safe to run again; it only writes the reservations still missing.
+//   --products.reservations.backfill.segments=8      optional, parallel scan segments
+//   --products.reservations.backfill.page-size=100   optional, products per scan page
+public class CodeReservationBackfillApplication {
+
+	private static final Logger LOG = LogManager.getLogger(CodeReservationBackfillApplication.class);
+
+	public static void main(String[] args) {
+		if (System.getProperty("products.cache.enabled") == null) {
+			System.setProperty("products.cache.enabled", "false");
+		}
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductserviceApplication.class)
+			.web(WebApplicationType.NONE)
+			.run(args);
+		int exitCode = 0;
+		try {
+			context.getBean(CodeReservationBackfill.class).run();
+		} catch (Exception e) {
+			LOG.error("Code reservation backfill failed, run it again to complete it", e);
+			exitCode = 1;
+		}
+		int status = exitCode;
+		System.exit(SpringApplication.exit(context, () -> status));
+	}
+
+}
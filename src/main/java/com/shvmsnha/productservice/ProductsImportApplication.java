@@ -0,0 +1,47 @@
+package com.shvmsnha.productservice;
+
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import com.shvmsnha.productservice.products.importer.ImportFormat;
+import com.shvmsnha.productservice.products.importer.ProductsImporter;
+
+// Bulk import entry point: starts the application without the web server, imports one file and exits.
+//   --products.import.file=<path>      NDJSON or CSV file to import
+//   --products.import.format=csv       optional, taken from the file extension otherwise
+//   --products.import.resume=false     optional, ignores the checkpoint and imports from the start
+public class ProductsImportApplication {
+
+	private static final Logger LOG = LogManager.getLogger(ProductsImportApplication.class);
+
+	public static void main(String[] args) {
+		// every imported product would otherwise stay in the read cache
+		if (System.getProperty("products.cache.enabled") == null) {
+			System.setProperty("products.cache.enabled", "false");
+		}
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductserviceApplication.class)
+			.web(WebApplicationType.NONE)
+			.run(args);
+		int exitCode = 0;
+		try {
+			Environment environment = context.getEnvironment();
+			Path file = Path.of(environment.getRequiredProperty("products.import.file"));
+			ImportFormat format = ImportFormat.of(environment.getProperty("products.import.format"), file);
+			boolean resume = environment.getProperty("products.import.resume", Boolean.class, true);
+			context.getBean(ProductsImporter.class).importFile(file, format, resume);
+		} catch (Exception e) {
+			LOG.error("Products import failed, run again to resume from the last checkpoint", e);
+			exitCode = 1;
+		}
+		int status = exitCode;
+		System.exit(SpringApplication.exit(context, () -> status));
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.shvmsnha.productservice.config;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.xray.strategy.sampling.SamplingRequest;
+import com.amazonaws.xray.strategy.sampling.SamplingResponse;
+import com.amazonaws.xray.strategy.sampling.SamplingStrategy;
+
+// Local sampler that aims for `targetTracesPerSecond` whatever the request rate. The first request of every
+// second is always traced; the rest are sampled with the probability that would have hit the target during
+// the previous second, and never more than the target per second.
+public class AdaptiveSamplingStrategy implements SamplingStrategy {
+
+    private static final String RULE_NAME = "adaptive";
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int targetTracesPerSecond;
+    private final Set<String> ignoredPaths;
+    private final AtomicLong requestsInWindow = new AtomicLong();
+    private final AtomicLong sampledInWindow = new AtomicLong();
+    private volatile long windowStartNanos = System.nanoTime();
+    private volatile double probability = 1.0;
+
+    public AdaptiveSamplingStrategy(int targetTracesPerSecond, Set<String> ignoredPaths) {
+        this.targetTracesPerSecond = Math.max(1, targetTracesPerSecond);
+        this.ignoredPaths = ignoredPaths;
+    }
+
+    @Override
+    public SamplingResponse shouldTrace(SamplingRequest samplingRequest) {
+        if (samplingRequest.getUrl().map(ignoredPaths::contains).orElse(false)) {
+            return new SamplingResponse(false, RULE_NAME);
+        }
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= NANOS_PER_SECOND) {
+            rollWindow(now);
+        }
+        requestsInWindow.incrementAndGet();
+        long sampled = sampledInWindow.get();
+        boolean trace = sampled == 0
+            || (sampled < targetTracesPerSecond && ThreadLocalRandom.current().nextDouble() < probability);
+        if (trace) {
+            sampledInWindow.incrementAndGet();
+        }
+        return new SamplingResponse(trace, RULE_NAME);
+    }
+
+    private synchronized void rollWindow(long now) {
+        long elapsedNanos = now - windowStartNanos;
+        if (elapsedNanos < NANOS_PER_SECOND) {
+            return;
+        }
+        double requestsPerSecond = requestsInWindow.getAndSet(0) * (double) NANOS_PER_SECOND / elapsedNanos;
+        sampledInWindow.set(0);
+        probability = requestsPerSecond <= targetTracesPerSecond ? 1.0 : targetTracesPerSecond / requestsPerSecond;
+        windowStartNanos = now;
+    }
+
+    @Override
+    public SamplingStrategy getFallbackSamplingStrategy() {
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+package com.shvmsnha.productservice.config;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+
+// the in-memory clients of the local-perf profile make no HTTP calls
+@Configuration
+@Profile("!local-perf")
+public class AwsHttpClientConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AwsHttpClientConfig.class);
+
+    @Value("${aws.http.client}")
+    private String client;
+
+    @Value("${aws.http.max-pending-connection-acquires}")
+    private int maxPendingConnectionAcquires;
+
+    @Value("${aws.http.connection-acquisition-timeout}")
+    private Duration connectionAcquisitionTimeout;
+
+    @Value("${aws.http.connection-timeout}")
+    private Duration connectionTimeout;
+
+    @Value("${aws.http.connection-max-idle-time}")
+    private Duration connectionMaxIdleTime;
+
+    @Value("${aws.http.tcp-keep-alive}")
+    private boolean tcpKeepAlive;
+
+    @Value("${aws.http.read-timeout}")
+    private Duration readTimeout;
+
+    // the SDK clients do not close an HTTP client they were given, Spring closes these on shutdown
+    @Bean
+    public SdkAsyncHttpClient dynamoDbHttpClient(@Value("${aws.http.dynamodb.max-concurrency}") int maxConcurrency) {
+        return settings(maxConcurrency).build();
+    }
+
+    @Bean
+    public SdkAsyncHttpClient snsHttpClient(@Value("${aws.http.sns.max-concurrency}") int maxConcurrency) {
+        return settings(maxConcurrency).build();
+    }
+
+    private AwsHttpClientSettings settings(int maxConcurrency) {
+        AwsHttpClientSettings settings = new AwsHttpClientSettings(client, maxConcurrency, maxPendingConnectionAcquires,
+            connectionAcquisitionTimeout, connectionTimeout, connectionMaxIdleTime, tcpKeepAlive, readTimeout);
+        LOG.info("AWS http client: [{}]", settings);
+        return settings;
+    }
+}
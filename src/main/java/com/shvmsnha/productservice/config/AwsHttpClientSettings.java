@@ -0,0 +1,60 @@
+package com.shvmsnha.productservice.config;
+
+import java.time.Duration;
+
+import org.springframework.util.ClassUtils;
+
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+
+// Transport settings for an async AWS client. `client` is netty (the SDK default) or crt; the CRT client has
+// no pending-acquire limit or read timeout, so those two only apply to netty. The CRT native library is only
+// packaged by builds made with -PawsHttpClient=crt.
+public record AwsHttpClientSettings(
+    String client,
+    int maxConcurrency,
+    int maxPendingConnectionAcquires,
+    Duration connectionAcquisitionTimeout,
+    Duration connectionTimeout,
+    Duration connectionMaxIdleTime,
+    boolean tcpKeepAlive,
+    Duration readTimeout
+) {
+    // probes sent on an idle keep-alive connection before the OS drops it
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration KEEP_ALIVE_TIMEOUT = Duration.ofSeconds(5);
+    private static final String CRT_NATIVE_CLASS = "software.amazon.awssdk.crt.CRT";
+
+    public AwsHttpClientSettings withMaxConcurrency(int maxConcurrency) {
+        return new AwsHttpClientSettings(client, maxConcurrency, maxPendingConnectionAcquires,
+            connectionAcquisitionTimeout, connectionTimeout, connectionMaxIdleTime, tcpKeepAlive, readTimeout);
+    }
+
+    public SdkAsyncHttpClient build() {
+        if ("crt".equals(client)) {
+            if (!ClassUtils.isPresent(CRT_NATIVE_CLASS, AwsHttpClientSettings.class.getClassLoader())) {
+                throw new IllegalStateException("aws.http.client=crt needs the aws-crt library, build with -PawsHttpClient=crt");
+            }
+            AwsCrtAsyncHttpClient.Builder builder = AwsCrtAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .connectionTimeout(connectionTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime);
+            if (tcpKeepAlive) {
+                builder.tcpKeepAliveConfiguration(keepAlive -> keepAlive
+                    .keepAliveInterval(KEEP_ALIVE_INTERVAL)
+                    .keepAliveTimeout(KEEP_ALIVE_TIMEOUT));
+            }
+            return builder.build();
+        }
+        return NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(maxConcurrency)
+            .maxPendingConnectionAcquires(maxPendingConnectionAcquires)
+            .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+            .connectionTimeout(connectionTimeout)
+            .connectionMaxIdleTime(connectionMaxIdleTime)
+            .tcpKeepAlive(tcpKeepAlive)
+            .readTimeout(readTimeout)
+            .build();
+    }
+}
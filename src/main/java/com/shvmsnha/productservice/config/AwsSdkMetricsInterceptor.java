@@ -0,0 +1,84 @@
+package com.shvmsnha.productservice.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+// Times every SDK call of a client, retries included, as `aws.sdk.requests` tagged with the operation
+// (GetItem, Query, Scan, TransactWriteItems, Publish, ...), the outcome and, for failures, the AWS error
+// code or exception type. Timers are cached per tag set so the hot path does no meter registration.
+public class AwsSdkMetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("AwsSdkMetricsStartNanos");
+    private static final String NO_ERROR = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final String service;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentMap<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public AwsSdkMetricsInterceptor(MeterRegistry meterRegistry, String service) {
+        this.meterRegistry = meterRegistry;
+        this.service = service;
+        Gauge.builder("aws.sdk.requests.active", inFlight, AtomicInteger::get)
+            .description("SDK calls in flight")
+            .tag("service", service)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        record(executionAttributes, NO_ERROR);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Throwable exception = context.exception();
+        String error = exception instanceof AwsServiceException serviceException
+            && serviceException.awsErrorDetails() != null && serviceException.awsErrorDetails().errorCode() != null
+            ? serviceException.awsErrorDetails().errorCode()
+            : exception.getClass().getSimpleName();
+        record(executionAttributes, error);
+    }
+
+    private void record(ExecutionAttributes executionAttributes, String error) {
+        Long startNanos = executionAttributes.getAttribute(START_NANOS);
+        if (startNanos == null) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        TimerKey key = new TimerKey(executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME), error);
+        timers.computeIfAbsent(key, this::timer).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(TimerKey key) {
+        return Timer.builder("aws.sdk.requests")
+            .description("AWS SDK call latency, including retries")
+            .tag("service", service)
+            .tag("operation", key.operation())
+            .tag("outcome", NO_ERROR.equals(key.error()) ? "SUCCESS" : "ERROR")
+            .tag("error", key.error())
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private record TimerKey(String operation, String error) {
+    }
+}
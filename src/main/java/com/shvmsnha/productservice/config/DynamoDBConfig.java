@@ -1,15 +1,25 @@
 package com.shvmsnha.productservice.config;
 
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 
 import com.amazonaws.xray.interceptors.TracingInterceptor;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 
@@ -19,23 +29,61 @@ public class DynamoDBConfig {
     @Value("${aws.region}")
     private String awsRegion;
 
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${aws.dynamodb.api-call-attempt-timeout}")
+    private Duration apiCallAttemptTimeout;
+
+    @Value("${aws.dynamodb.api-call-timeout}")
+    private Duration apiCallTimeout;
+
+    // LocalPerfConfig provides the client with the local-perf profile
     @Bean
     @Primary
-    public DynamoDbAsyncClient dynamoDbAsyncClient() {
+    @Profile("!local-perf")
+    public DynamoDbAsyncClient dynamoDbAsyncClient(MeterRegistry meterRegistry,
+        @Qualifier("dynamoDbHttpClient") SdkAsyncHttpClient dynamoDbHttpClient) {
         return DynamoDbAsyncClient.builder()
             .credentialsProvider(DefaultCredentialsProvider.create())
             .region(Region.of(awsRegion))
+            .httpClient(dynamoDbHttpClient)
             .overrideConfiguration(ClientOverrideConfiguration.builder()
                 .addExecutionInterceptor(new TracingInterceptor())
+                .addExecutionInterceptor(new AwsSdkMetricsInterceptor(meterRegistry, "dynamodb"))
+                .apiCallAttemptTimeout(apiCallAttemptTimeout)
+                .apiCallTimeout(apiCallTimeout)
                 .build())
+            .asyncConfiguration(asyncConfiguration(virtualThreads))
             .build();
     }
 
+    // Response futures are completed, and their continuations run, on this executor. With virtual threads
+    // enabled a blocking continuation no longer ties up one of the SDK's few completion threads.
+    static ClientAsyncConfiguration asyncConfiguration(boolean virtualThreads) {
+        ClientAsyncConfiguration.Builder builder = ClientAsyncConfiguration.builder();
+        if (virtualThreads) {
+            builder.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sdk-async-response-", 0).factory()));
+        }
+        return builder.build();
+    }
+
     @Bean
     @Primary
-    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient() {
+    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient(DynamoDbAsyncClient dynamoDbAsyncClient) {
+        return DynamoDbEnhancedAsyncClient.builder()
+            .dynamoDbClient(dynamoDbAsyncClient)
+            .build();
+    }
+
+    // Without the default extensions, VersionedRecordExtension in particular, so that batch writes can set the
+    // version and the conditions of their puts themselves.
+    @Bean
+    public DynamoDbEnhancedAsyncClient unversionedDynamoDbEnhancedAsyncClient(DynamoDbAsyncClient dynamoDbAsyncClient) {
         return DynamoDbEnhancedAsyncClient.builder()
-            .dynamoDbClient(dynamoDbAsyncClient())
+            .dynamoDbClient(dynamoDbAsyncClient)
+            .extensions()
             .build();
     }
 }
@@ -5,21 +5,29 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.shvmsnha.productservice.interceptors.ConcurrencyLimitInterceptor;
 import com.shvmsnha.productservice.interceptors.ProductsInterceptor;
 
 @Configuration
 public class InterceptorsConfig implements WebMvcConfigurer {
 
     private final ProductsInterceptor productsInterceptor;
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
 
     @Autowired
-    public InterceptorsConfig(ProductsInterceptor productsInterceptor) {
+    public InterceptorsConfig(ProductsInterceptor productsInterceptor, 
+        ConcurrencyLimitInterceptor concurrencyLimitInterceptor) {
         this.productsInterceptor = productsInterceptor;
+        this.concurrencyLimitInterceptor = concurrencyLimitInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(this.productsInterceptor)
             .addPathPatterns("/api/products/**");
+        // exports are long-running scans, not the requests the limit adapts to
+        registry.addInterceptor(this.concurrencyLimitInterceptor)
+            .addPathPatterns("/api/products/**")
+            .excludePathPatterns("/api/products/export/**");
     }
 }
@@ -0,0 +1,97 @@
+package com.shvmsnha.productservice.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import com.shvmsnha.productservice.localperf.FaultInjection;
+import com.shvmsnha.productservice.localperf.InMemoryDynamoDbAsyncClient;
+import com.shvmsnha.productservice.localperf.InMemorySnsAsyncClient;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.models.ProductCodeReservation;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+
+// With the local-perf profile the service runs against in-memory DynamoDB and SNS clients instead of AWS,
+// so it can be load tested on one machine. Everything above the SDK clients is the same code as in
+// production: the enhanced client, the repository, caches, limiters and publishers.
+@Configuration
+@Profile("local-perf")
+public class LocalPerfConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalPerfConfig.class);
+
+    @Value("${aws.productsddb.name}")
+    private String productsDdbName;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    // Completes responses off the caller's thread, like the SDK's own future completion executor.
+    @Bean
+    public ExecutorService localPerfResponseExecutor() {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("local-perf-response-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
+            Thread.ofPlatform().name("local-perf-response-", 0).daemon().factory());
+    }
+
+    @Bean
+    @Primary
+    public DynamoDbAsyncClient dynamoDbAsyncClient(
+        @Qualifier("localPerfResponseExecutor") ExecutorService localPerfResponseExecutor,
+        @Value("${local-perf.dynamodb.latency}") Duration latency,
+        @Value("${local-perf.dynamodb.latency-jitter}") Duration latencyJitter,
+        @Value("${local-perf.dynamodb.error-rate}") double errorRate,
+        @Value("${local-perf.dynamodb.seed-products}") int seedProducts) {
+        log.info("local-perf DynamoDB - table: [{}], latency: [{}], latencyJitter: [{}], errorRate: [{}]",
+            productsDdbName, latency, latencyJitter, errorRate);
+        InMemoryDynamoDbAsyncClient client = new InMemoryDynamoDbAsyncClient(new FaultInjection(latency, latencyJitter,
+            errorRate, localPerfResponseExecutor, InMemoryDynamoDbAsyncClient::throughputExceeded));
+        client.createTable(productsDdbName, "id", Map.of("codeIdx", "code"));
+        for (int i = 0; i < seedProducts; i++) {
+            Product product = seedProduct(i);
+            client.load(productsDdbName, Product.TABLE_SCHEMA.itemToMap(product, true));
+            client.load(productsDdbName, ProductCodeReservation.TABLE_SCHEMA.itemToMap(
+                ProductCodeReservation.of(product.getCode(), product.getId()), true));
+        }
+        log.info("local-perf DynamoDB seeded - products: [{}]", seedProducts);
+        return client;
+    }
+
+    @Bean
+    public SnsAsyncClient snsAsyncClient(
+        @Qualifier("localPerfResponseExecutor") ExecutorService localPerfResponseExecutor,
+        @Value("${local-perf.sns.latency}") Duration latency,
+        @Value("${local-perf.sns.latency-jitter}") Duration latencyJitter,
+        @Value("${local-perf.sns.error-rate}") double errorRate) {
+        log.info("local-perf SNS - latency: [{}], latencyJitter: [{}], errorRate: [{}]", latency, latencyJitter, errorRate);
+        return new InMemorySnsAsyncClient(new FaultInjection(latency, latencyJitter, errorRate,
+            localPerfResponseExecutor, InMemorySnsAsyncClient::throttled));
+    }
+
+    // Seeded products have predictable ids and codes, local-perf-<n> and LOCAL-PERF-<n>, for load tests to read.
+    private static Product seedProduct(int n) {
+        Product product = new Product();
+        product.setId("local-perf-" + n);
+        product.setCode("LOCAL-PERF-" + n);
+        product.setProductName("Local perf product " + n);
+        product.setModel("model-" + (n % 100));
+        product.setPrice(10 + n % 1000);
+        product.setProductUrl("https://example.com/products/local-perf-" + n);
+        product.setVersion(1L);
+        return product;
+    }
+}
@@ -1,14 +1,21 @@
 package com.shvmsnha.productservice.config;
 
+import java.time.Duration;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import com.amazonaws.xray.interceptors.TracingInterceptor;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sns.SnsAsyncClient;
 import software.amazon.awssdk.services.sns.model.Topic;
@@ -23,16 +30,32 @@ public class SnsConfig {
 
     @Value("${aws.sns.topic.product.events}")
     private String productEventsTopic;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${aws.sns.api-call-attempt-timeout}")
+    private Duration apiCallAttemptTimeout;
+
+    @Value("${aws.sns.api-call-timeout}")
+    private Duration apiCallTimeout;
     
     @Bean
-    public SnsAsyncClient snsAsyncClient() {
+    @Profile("!local-perf")
+    public SnsAsyncClient snsAsyncClient(MeterRegistry meterRegistry,
+        @Qualifier("snsHttpClient") SdkAsyncHttpClient snsHttpClient) {
         log.info("awsRegion: [{}], productEventsTopic: [{}]", awsRegion,productEventsTopic);
         return SnsAsyncClient.builder()
             .credentialsProvider(DefaultCredentialsProvider.create())
             .region(Region.of(awsRegion))
+            .httpClient(snsHttpClient)
             .overrideConfiguration(ClientOverrideConfiguration.builder()
                     .addExecutionInterceptor(new TracingInterceptor())
+                    .addExecutionInterceptor(new AwsSdkMetricsInterceptor(meterRegistry, "sns"))
+                    .apiCallAttemptTimeout(apiCallAttemptTimeout)
+                    .apiCallTimeout(apiCallTimeout)
                     .build())
+            .asyncConfiguration(DynamoDBConfig.asyncConfiguration(virtualThreads))
             .build();
     }
 
@@ -1,5 +1,6 @@
 package com.shvmsnha.productservice.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.slf4j.Logger;
@@ -11,22 +12,33 @@ import com.amazonaws.xray.AWSXRayRecorder;
 import com.amazonaws.xray.AWSXRayRecorderBuilder;
 import com.amazonaws.xray.jakarta.servlet.AWSXRayServletFilter;
 import com.amazonaws.xray.strategy.sampling.CentralizedSamplingStrategy;
+import com.amazonaws.xray.strategy.sampling.SamplingStrategy;
 
 import jakarta.servlet.Filter;
 
 import java.io.FileNotFoundException;
 import java.net.URL;
+import java.util.Set;
 
 @Configuration
 public class XRayConfig {
     private static final Logger LOG = LoggerFactory.getLogger(XRayConfig.class);
 
-    public XRayConfig() {
+    public XRayConfig(@Value("${xray.sampling.strategy}") String samplingStrategy,
+        @Value("${xray.sampling.adaptive.traces-per-second}") int tracesPerSecond,
+        @Value("${xray.sampling.adaptive.ignored-paths}") Set<String> ignoredPaths) {
         try {
-            URL ruleFile = ResourceUtils.getURL("classpath:xray/xray-sampling-rules.json");
+            SamplingStrategy strategy;
+            if ("adaptive".equals(samplingStrategy)) {
+                strategy = new AdaptiveSamplingStrategy(tracesPerSecond, ignoredPaths);
+            } else {
+                URL ruleFile = ResourceUtils.getURL("classpath:xray/xray-sampling-rules.json");
+                strategy = new CentralizedSamplingStrategy(ruleFile);
+            }
+            LOG.info("XRay sampling strategy: [{}], tracesPerSecond: [{}]", samplingStrategy, tracesPerSecond);
             AWSXRayRecorder awsXRayRecorder = AWSXRayRecorderBuilder.standard()
                 .withDefaultPlugins()
-                .withSamplingStrategy(new CentralizedSamplingStrategy(ruleFile))
+                .withSamplingStrategy(strategy)
                 .build();
             AWSXRay.setGlobalRecorder(awsXRayRecorder);
         } catch(FileNotFoundException e) {
@@ -1,12 +1,15 @@
 package com.shvmsnha.productservice.config;
 
 import java.util.Map;
+import java.util.Optional;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.springframework.stereotype.Component;
 
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Segment;
 import com.amazonaws.xray.entities.Subsegment;
 import com.amazonaws.xray.spring.aop.BaseAbstractXRayInterceptor;
 
@@ -14,6 +17,17 @@ import com.amazonaws.xray.spring.aop.BaseAbstractXRayInterceptor;
 @Component
 public class XRayInspector extends BaseAbstractXRayInterceptor {
 
+    // An unsampled request is never sent to X-Ray, so its subsegments and their metadata would only be
+    // built and thrown away; those calls go straight to the target.
+    @Override
+    protected Object processXRayTrace(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        Optional<Segment> segment = AWSXRay.getCurrentSegmentOptional();
+        if (segment.isEmpty() || !segment.get().isSampled()) {
+            return proceedingJoinPoint.proceed();
+        }
+        return super.processXRayTrace(proceedingJoinPoint);
+    }
+
     @Override
     protected Map<String, Map<String, Object>> generateMetadata(
         ProceedingJoinPoint proceedingJoinPoint, Subsegment subsegment
@@ -0,0 +1,288 @@
+package com.shvmsnha.productservice.events.outbox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.AWSXRayRecorder;
+import com.amazonaws.xray.strategy.sampling.SamplingRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.Topic;
+
+// Durable outbox in front of SNS. Events are appended to a local OutboxLog and acknowledged once the
+// flusher has forced them to disk, so callers wait for a group fsync rather than for SNS. A dispatcher
+// drains the log to SNS in order, retrying each event up to `maxAttempts` times, and checkpoints its progress.
+// An event SNS rejects as invalid, or still fails to take after that, is moved to a dead-letter log in
+// `<directory>/dead-letter` instead of holding up every event behind it.
+// Delivery is at-least-once: events after the last checkpoint are published again after a restart,
+// so every event carries an `eventId` attribute consumers can deduplicate on.
+@Component
+public class EventsOutbox {
+
+    private static final Logger LOG = LogManager.getLogger(EventsOutbox.class);
+    private static final String EVENT_ID_ATTRIBUTE = "eventId";
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+    private static final String SEGMENT_NAME = "productsservice-outbox";
+
+    private final SnsAsyncClient snsAsyncClient;
+    private final Topic productsEventsTopic;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long fsyncIntervalNanos;
+    private final int dispatchBatchSize;
+    private final long maxBackoffMs;
+    private final int maxAttempts;
+    private final OutboxLog outboxLog;
+    private final OutboxLog deadLetterLog;
+    private final ConcurrentSkipListMap<OutboxPosition, CompletableFuture<PublishResponse>> awaitingFsync =
+        new ConcurrentSkipListMap<>();
+    private final Thread flusher;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    @Autowired
+    public EventsOutbox(SnsAsyncClient snsAsyncClient,
+        @Qualifier("productEventsTopic") Topic productsEventsTopic,
+        ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${aws.sns.outbox.enabled}") boolean enabled,
+        @Value("${aws.sns.outbox.directory}") String directory,
+        @Value("${aws.sns.outbox.segment-size-bytes}") int segmentSize,
+        @Value("${aws.sns.outbox.fsync-interval}") Duration fsyncInterval,
+        @Value("${aws.sns.outbox.dispatch-batch-size}") int dispatchBatchSize,
+        @Value("${aws.sns.outbox.max-backoff}") Duration maxBackoff,
+        @Value("${aws.sns.outbox.max-attempts}") int maxAttempts) throws IOException {
+        this.snsAsyncClient = snsAsyncClient;
+        this.productsEventsTopic = productsEventsTopic;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.dispatchBatchSize = Math.max(1, dispatchBatchSize);
+        this.maxBackoffMs = maxBackoff.toMillis();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.outboxLog = enabled ? new OutboxLog(Path.of(directory), segmentSize) : null;
+        this.deadLetterLog = enabled ? new OutboxLog(Path.of(directory, DEAD_LETTER_DIRECTORY), segmentSize) : null;
+        this.flusher = Thread.ofPlatform().name("outbox-flusher").daemon(true).unstarted(this::runFlusher);
+        this.dispatcher = Thread.ofPlatform().name("outbox-dispatcher").daemon(true).unstarted(this::runDispatcher);
+        if (enabled) {
+            this.flusher.start();
+            this.dispatcher.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Completes with the event id once the event is durable in the outbox, not once SNS has accepted it.
+    public CompletableFuture<PublishResponse> append(String message, Map<String, MessageAttributeValue> messageAttributes) {
+        String eventId = UUID.randomUUID().toString();
+        Map<String, String> attributes = new HashMap<>();
+        messageAttributes.forEach((name, value) -> {
+            // SNS rejects an attribute without a value, e.g. requestId outside of a request, on every attempt
+            if (value != null && value.stringValue() != null) {
+                attributes.put(name, value.stringValue());
+            }
+        });
+        attributes.put(EVENT_ID_ATTRIBUTE, eventId);
+        CompletableFuture<PublishResponse> durable = new CompletableFuture<>();
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(new OutboxEvent(message, attributes));
+            // if the flusher forces past this position before it is registered, the next flush completes it
+            awaitingFsync.put(outboxLog.append(payload), durable);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return durable.thenApply(v -> PublishResponse.builder().messageId(eventId).build());
+    }
+
+    private void runFlusher() {
+        while (running) {
+            LockSupport.parkNanos(fsyncIntervalNanos);
+            flush();
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (awaitingFsync.isEmpty()) {
+            return;
+        }
+        try {
+            OutboxPosition durablePosition = outboxLog.force();
+            var durable = awaitingFsync.headMap(durablePosition, false);
+            durable.values().forEach(future -> future.complete(null));
+            durable.clear();
+        } catch (RuntimeException e) {
+            // The records are already appended and are dispatched once a force succeeds, so failing their
+            // callers would report events as lost that still get published. They stay pending for the next flush.
+            LOG.error("Failed to fsync outbox log - durable: [{}], pending: [{}]", outboxLog.durablePosition(),
+                awaitingFsync.size(), e);
+        }
+    }
+
+    private void runDispatcher() {
+        OutboxPosition checkpoint;
+        try {
+            checkpoint = outboxLog.readCheckpoint();
+        } catch (IOException e) {
+            LOG.error("Failed to read outbox checkpoint, events will not be dispatched", e);
+            return;
+        }
+        LOG.info("Outbox dispatcher started - checkpoint: [{}], durable: [{}]", checkpoint, outboxLog.durablePosition());
+        while (running) {
+            try {
+                List<OutboxLog.OutboxRecord> records = outboxLog.read(checkpoint, dispatchBatchSize);
+                if (records.isEmpty()) {
+                    LockSupport.parkNanos(fsyncIntervalNanos);
+                    continue;
+                }
+                dispatch(records);
+                checkpoint = records.get(records.size() - 1).next();
+                outboxLog.writeCheckpoint(checkpoint);
+            } catch (IOException e) {
+                LOG.error("Outbox dispatcher failed at checkpoint: [{}]", checkpoint, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(maxBackoffMs));
+            }
+        }
+    }
+
+    // Publishes the records concurrently and returns once SNS has accepted or dead-lettered every one of them.
+    private void dispatch(List<OutboxLog.OutboxRecord> records) throws IOException {
+        List<PendingPublish> pending = new ArrayList<>(records.size());
+        for (OutboxLog.OutboxRecord record : records) {
+            OutboxEvent event;
+            try {
+                event = objectMapper.readValue(record.payload(), OutboxEvent.class);
+            } catch (IOException e) {
+                deadLetter(record.payload(), null, "unreadable", e);
+                continue;
+            }
+            Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+            event.attributes().forEach((name, value) -> messageAttributes.put(name, MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue(value)
+                .build()));
+            pending.add(new PendingPublish(record.payload(), event.attributes().get(EVENT_ID_ATTRIBUTE), 
+                PublishRequest.builder()
+                    .message(event.message())
+                    .messageAttributes(messageAttributes)
+                    .topicArn(productsEventsTopic.topicArn())
+                    .build()));
+        }
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                long backoff = Math.min(maxBackoffMs, 50L << Math.min(attempt, 16));
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(backoff + 1)));
+            }
+            beginSegment();
+            try {
+                List<CompletableFuture<PublishResponse>> published = pending.stream()
+                    .map(publish -> snsAsyncClient.publish(publish.request()))
+                    .toList();
+                List<PendingPublish> failed = new ArrayList<>();
+                for (int i = 0; i < published.size(); i++) {
+                    PendingPublish publish = pending.get(i);
+                    try {
+                        published.get(i).join();
+                    } catch (RuntimeException e) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (isRejected(cause)) {
+                            deadLetter(publish.payload(), publish.eventId(), "rejected", cause);
+                        } else if (attempt + 1 >= maxAttempts) {
+                            deadLetter(publish.payload(), publish.eventId(), "exhausted", cause);
+                        } else {
+                            LOG.warn("Outbox event publish failed - attempt: [{}], eventId: [{}]", attempt + 1,
+                                publish.eventId(), e);
+                            failed.add(publish);
+                        }
+                    }
+                }
+                pending = failed;
+            } finally {
+                AWSXRay.endSegment();
+            }
+        }
+    }
+
+    // The configured sampling strategy decides whether an attempt is traced, so a retrying dispatcher counts
+    // against the same budget as requests instead of tracing every attempt.
+    private static void beginSegment() {
+        AWSXRayRecorder recorder = AWSXRay.getGlobalRecorder();
+        SamplingRequest samplingRequest = new SamplingRequest(SEGMENT_NAME, null, null, null, recorder.getOrigin());
+        if (recorder.getSamplingStrategy().shouldTrace(samplingRequest).isSampled()) {
+            recorder.beginSegment(SEGMENT_NAME);
+        } else {
+            recorder.beginNoOpSegment();
+        }
+    }
+
+    // A 4xx from SNS means the event itself is invalid and would be rejected again. Throttling, 5xx, failures
+    // to reach SNS and 401/403, which come from the service's credentials rather than the event, are retried.
+    private static boolean isRejected(Throwable cause) {
+        if (!(cause instanceof AwsServiceException serviceException) || serviceException.isThrottlingException()) {
+            return false;
+        }
+        int status = serviceException.statusCode();
+        return status >= 400 && status < 500 && status != 401 && status != 403;
+    }
+
+    // The dead-letter log keeps the event as it was appended, so it can be inspected and published again.
+    private void deadLetter(byte[] payload, String eventId, String reason, Throwable cause) throws IOException {
+        deadLetterLog.append(payload);
+        deadLetterLog.force();
+        Counter.builder("products.events.outbox.dead.letter")
+            .description("Outbox events moved to the dead-letter log instead of being published")
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+        LOG.error("Outbox event dead-lettered - reason: [{}], eventId: [{}]", reason, eventId, cause);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (enabled) {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+            dispatcher.interrupt();
+            outboxLog.close();
+            deadLetterLog.close();
+        }
+    }
+
+    record OutboxEvent(String message, Map<String, String> attributes) {
+    }
+
+    private record PendingPublish(byte[] payload, String eventId, PublishRequest request) {
+    }
+}
@@ -0,0 +1,280 @@
+package com.shvmsnha.productservice.events.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Append-only log of fixed-size, memory-mapped segment files. Each record is [length][crc32c][payload];
+// a zero length marks the end of the written part of a segment, since new segments are zero-filled.
+// Appends only reach the page cache; force() makes everything appended so far durable.
+public class OutboxLog implements Closeable {
+
+    private static final Logger LOG = LogManager.getLogger(OutboxLog.class);
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeSet<Long> segments = new TreeSet<>();
+    // a ReentrantLock rather than synchronized, so appending virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private MappedByteBuffer activeBuffer;
+    private long activeSegment;
+    private OutboxPosition appendedPosition;
+    private volatile OutboxPosition durablePosition;
+    // only used by the single reader, which keeps the segment it is reading mapped between polls
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    public OutboxLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                .forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            this.activeSegment = segments.last();
+            this.activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+            this.activeBuffer.position(recover(activeBuffer));
+        }
+        this.appendedPosition = new OutboxPosition(activeSegment, activeBuffer.position());
+        this.durablePosition = appendedPosition;
+        LOG.info("Outbox log opened - directory: [{}], segments: [{}], position: [{}]",
+            directory, segments.size(), appendedPosition);
+    }
+
+    public OutboxPosition append(byte[] payload) throws IOException {
+        lock.lock();
+        try {
+            if (HEADER_BYTES + payload.length > segmentSize - HEADER_BYTES) {
+                throw new IOException("Outbox record of " + payload.length + " bytes does not fit a segment");
+            }
+            if (activeBuffer.remaining() < HEADER_BYTES + payload.length + HEADER_BYTES) {
+                activeBuffer.force();
+                openSegment(activeSegment + 1);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            OutboxPosition position = new OutboxPosition(activeSegment, activeBuffer.position());
+            // the length goes in last so a reader never sees a record whose payload is not yet written
+            int start = activeBuffer.position();
+            activeBuffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            activeBuffer.put(start + HEADER_BYTES, payload);
+            activeBuffer.putInt(start, payload.length);
+            activeBuffer.position(start + HEADER_BYTES + payload.length);
+            appendedPosition = new OutboxPosition(activeSegment, activeBuffer.position());
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forces every record appended so far to disk and returns the new durable position.
+    public OutboxPosition force() {
+        OutboxPosition target;
+        MappedByteBuffer buffer;
+        lock.lock();
+        try {
+            target = appendedPosition;
+            buffer = activeBuffer;
+        } finally {
+            lock.unlock();
+        }
+        if (target.compareTo(durablePosition) > 0) {
+            buffer.force();
+            durablePosition = target;
+        }
+        return durablePosition;
+    }
+
+    public OutboxPosition durablePosition() {
+        return durablePosition;
+    }
+
+    // Reads up to maxRecords durable records starting at `from`. The returned records carry the position
+    // just past each of them, which is what the checkpoint should be advanced to once they are handled.
+    // read and writeCheckpoint are meant for a single reader thread.
+    public List<OutboxRecord> read(OutboxPosition from, int maxRecords) throws IOException {
+        List<OutboxRecord> records = new ArrayList<>();
+        OutboxPosition limit = durablePosition;
+        OutboxPosition position = from;
+        ByteBuffer buffer = null;
+        while (records.size() < maxRecords && position.compareTo(limit) < 0) {
+            if (buffer == null) {
+                buffer = readMapping(position.segment());
+            }
+            int length = position.offset() + HEADER_BYTES <= segmentSize ? buffer.getInt(position.offset()) : 0;
+            if (length == 0) {
+                // end of a sealed segment
+                Long next = nextSegment(position.segment());
+                if (next == null) {
+                    break;
+                }
+                position = new OutboxPosition(next, 0);
+                buffer = null;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position.offset() + HEADER_BYTES, payload);
+            int expectedCrc = buffer.getInt(position.offset() + Integer.BYTES);
+            position = new OutboxPosition(position.segment(), position.offset() + HEADER_BYTES + length);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Corrupt outbox record before " + position);
+            }
+            records.add(new OutboxRecord(payload, position));
+        }
+        return records;
+    }
+
+    public OutboxPosition readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return new OutboxPosition(segments.isEmpty() ? 0 : firstSegment(), 0);
+        }
+        String[] parts = Files.readString(checkpoint).trim().split(":");
+        return new OutboxPosition(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    // Persists the dispatch checkpoint and deletes segments that lie entirely before it.
+    public void writeCheckpoint(OutboxPosition position) throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        Path partial = directory.resolve(CHECKPOINT_FILE + ".part");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((position.segment() + ":" + position.offset()).getBytes()));
+            channel.force(true);
+        }
+        Files.move(partial, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deleteSegmentsBefore(position.segment());
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    private void deleteSegmentsBefore(long segment) throws IOException {
+        lock.lock();
+        try {
+            while (!segments.isEmpty() && segments.first() < segment) {
+                Files.deleteIfExists(segmentPath(segments.pollFirst()));
+            }
+            if (readSegment < segment) {
+                readSegment = -1;
+                readBuffer = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The mapping is shared with the file, so records appended to a segment after it was mapped are visible.
+    private MappedByteBuffer readMapping(long segment) throws IOException {
+        if (readBuffer == null || readSegment != segment) {
+            readBuffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            readSegment = segment;
+        }
+        return readBuffer;
+    }
+
+    private Long nextSegment(long segment) {
+        lock.lock();
+        try {
+            return segments.higher(segment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long firstSegment() {
+        lock.lock();
+        try {
+            return segments.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        lock.lock();
+        try {
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.allocate(1), segmentSize - 1);
+                channel.force(true);
+            }
+            segments.add(segment);
+            activeSegment = segment;
+            activeBuffer = map(segment, FileChannel.MapMode.READ_WRITE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ,
+                mode == FileChannel.MapMode.READ_WRITE ? StandardOpenOption.WRITE : StandardOpenOption.READ)) {
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    // Finds the end of the last complete record and zeroes everything after it, since a crash mid-append
+    // can leave a torn record followed by pages of later, never acknowledged, records.
+    private int recover(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                LOG.warn("Discarding torn outbox record at segment: [{}], offset: [{}]", activeSegment, offset);
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        byte[] zeros = new byte[8192];
+        for (int position = offset; position < segmentSize; position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, segmentSize - position));
+        }
+        buffer.force();
+        return offset;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    public record OutboxRecord(byte[] payload, OutboxPosition next) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.shvmsnha.productservice.events.outbox;
+
+public record OutboxPosition(long segment, int offset) implements Comparable<OutboxPosition> {
+
+    @Override
+    public int compareTo(OutboxPosition other) {
+        int bySegment = Long.compare(segment, other.segment);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+    }
+
+    @Override
+    public String toString() {
+        return segment + ":" + offset;
+    }
+}
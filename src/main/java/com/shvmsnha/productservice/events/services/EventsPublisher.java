@@ -1,8 +1,9 @@
 package com.shvmsnha.productservice.events.services;
 
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.ThreadContext;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,8 +16,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shvmsnha.productservice.events.dto.EventType;
 import com.shvmsnha.productservice.events.dto.ProductEventDto;
 import com.shvmsnha.productservice.events.dto.ProductFailureEventDto;
+import com.shvmsnha.productservice.events.outbox.EventsOutbox;
 import com.shvmsnha.productservice.products.models.Product;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import software.amazon.awssdk.services.sns.SnsAsyncClient;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
@@ -29,14 +35,31 @@ public class EventsPublisher {
     private final SnsAsyncClient snsAsyncClient;
     private final Topic productsEvenetsTopic;
     private final ObjectMapper objectMapper;
+    private final SnsPublishBatcher snsPublishBatcher;
+    private final EventsOutbox eventsOutbox;
+    private final Meter.MeterProvider<Timer> publishTimers;
+    private final AtomicInteger publishesInFlight = new AtomicInteger();
 
     @Autowired
     public EventsPublisher(SnsAsyncClient snsAsyncClient, 
         @Qualifier("productEventsTopic") Topic productsEvenetsTopic, 
-        ObjectMapper objectMapper) {
+        ObjectMapper objectMapper,
+        SnsPublishBatcher snsPublishBatcher,
+        EventsOutbox eventsOutbox,
+        MeterRegistry meterRegistry) {
             this.objectMapper = objectMapper;
             this.productsEvenetsTopic = productsEvenetsTopic;
             this.snsAsyncClient = snsAsyncClient;
+            this.snsPublishBatcher = snsPublishBatcher;
+            this.eventsOutbox = eventsOutbox;
+            // mode is outbox, batched or direct; for the outbox the timer ends at the local fsync, not at SNS
+            this.publishTimers = Timer.builder("products.events.publish")
+                .description("Time until a published event is acknowledged")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+            Gauge.builder("products.events.publish.active", publishesInFlight, AtomicInteger::get)
+                .description("Event publishes in flight")
+                .register(meterRegistry);
     }
 
     public CompletableFuture<PublishResponse> sendProductFailureEvent(ProductFailureEventDto productFailureEventDto) throws JsonProcessingException {
@@ -55,25 +78,58 @@ public class EventsPublisher {
     }
 
     private CompletableFuture<PublishResponse> sendEvents(String data, EventType eventType) {
-        return this.snsAsyncClient.publish(PublishRequest.builder()
-            .message(data)
-            .messageAttributes(Map.of(
-                "eventType", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(eventType.name())
-                        .build(),
-                "requestId",  MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(ThreadContext.get("requestId"))
-                        .build(),
-                    "traceId", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(Objects.requireNonNull( 
-                            AWSXRay.getCurrentSegment()).getTraceId().toString())
-                        .build()
-            ))
-            .topicArn(this.productsEvenetsTopic.topicArn())
+        // request attributes are read here, on the caller's thread, before the event is handed off
+        Map<String, MessageAttributeValue> messageAttributes = messageAttributes(eventType);
+        Timer.Sample sample = Timer.start();
+        publishesInFlight.incrementAndGet();
+        String mode = "direct";
+        CompletableFuture<PublishResponse> published = null;
+        if (this.eventsOutbox.isEnabled()) {
+            mode = "outbox";
+            published = this.eventsOutbox.append(data, messageAttributes);
+        } else if (this.snsPublishBatcher.isEnabled()) {
+            mode = "batched";
+            published = this.snsPublishBatcher.publish(data, messageAttributes);
+        }
+        if (published == null) {
+            mode = "direct";
+            published = this.snsAsyncClient.publish(publishRequest(this.productsEvenetsTopic.topicArn(), data, messageAttributes));
+        }
+        String publishMode = mode;
+        return published.whenComplete((response, throwable) -> {
+            publishesInFlight.decrementAndGet();
+            sample.stop(publishTimers.withTags(
+                "eventType", eventType.name(),
+                "mode", publishMode,
+                "outcome", throwable == null ? "SUCCESS" : "ERROR"));
+        });
+    }
+
+    static Map<String, MessageAttributeValue> messageAttributes(EventType eventType) {
+        Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+        messageAttributes.put("eventType", MessageAttributeValue.builder()
+            .dataType("String")
+            .stringValue(eventType.name())
+            .build());
+        messageAttributes.put("requestId", MessageAttributeValue.builder()
+            .dataType("String")
+            .stringValue(ThreadContext.get("requestId"))
             .build());
+        // absent on threads that carry no request, e.g. a continuation that was not given RequestContextExecutor
+        AWSXRay.getCurrentSegmentOptional().ifPresent(segment -> messageAttributes.put("traceId",
+            MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue(segment.getTraceId().toString())
+                .build()));
+        return messageAttributes;
+    }
+
+    static PublishRequest publishRequest(String topicArn, String data, Map<String, MessageAttributeValue> messageAttributes) {
+        return PublishRequest.builder()
+            .message(data)
+            .messageAttributes(messageAttributes)
+            .topicArn(topicArn)
+            .build();
     }
 
 }
@@ -0,0 +1,205 @@
+package com.shvmsnha.productservice.events.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Entity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.Topic;
+
+// Queues events and publishes them with PublishBatch once `maxBatchSize` events are waiting or the oldest
+// one has waited `lingerMs`. Every caller still gets a future for its own message id.
+@Component
+public class SnsPublishBatcher {
+
+    private static final Logger LOG = LogManager.getLogger(SnsPublishBatcher.class);
+    private static final int SNS_MAX_BATCH_SIZE = 10;
+
+    private final SnsAsyncClient snsAsyncClient;
+    private final Topic productsEventsTopic;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingEvent> pendingEvents;
+    private final DistributionSummary batchFillRatio;
+    private final Timer flushLatency;
+    private final Counter overflows;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    @Autowired
+    public SnsPublishBatcher(SnsAsyncClient snsAsyncClient,
+        @Qualifier("productEventsTopic") Topic productsEventsTopic,
+        MeterRegistry meterRegistry,
+        @Value("${aws.sns.batch.enabled}") boolean enabled,
+        @Value("${aws.sns.batch.max-size}") int maxBatchSize,
+        @Value("${aws.sns.batch.linger-ms}") long lingerMs,
+        @Value("${aws.sns.batch.queue-capacity}") int queueCapacity) {
+        this.snsAsyncClient = snsAsyncClient;
+        this.productsEventsTopic = productsEventsTopic;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, SNS_MAX_BATCH_SIZE));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.pendingEvents = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchFillRatio = DistributionSummary.builder("products.sns.batch.fill.ratio")
+            .description("Entries per PublishBatch call relative to the configured batch size")
+            .register(meterRegistry);
+        this.flushLatency = Timer.builder("products.sns.batch.flush")
+            .description("PublishBatch call latency")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.overflows = Counter.builder("products.sns.batch.overflow")
+            .description("Events published individually because the batch queue was full")
+            .register(meterRegistry);
+        this.flusher = Thread.ofPlatform()
+            .name("sns-publish-batcher")
+            .daemon(true)
+            .unstarted(this::runFlusher);
+        if (enabled) {
+            LOG.info("SNS publish batching - maxBatchSize: [{}], lingerMs: [{}], queueCapacity: [{}]",
+                this.maxBatchSize, lingerMs, queueCapacity);
+            this.flusher.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns null when the queue is full; the caller then publishes the event on its own.
+    public CompletableFuture<PublishResponse> publish(String message, Map<String, MessageAttributeValue> messageAttributes) {
+        PendingEvent pendingEvent = new PendingEvent(message, messageAttributes, AWSXRay.getTraceEntity(),
+            new CompletableFuture<>());
+        if (!running || !pendingEvents.offer(pendingEvent)) {
+            overflows.increment();
+            return null;
+        }
+        return pendingEvent.future();
+    }
+
+    private void runFlusher() {
+        List<PendingEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !pendingEvents.isEmpty()) {
+            try {
+                PendingEvent first = pendingEvents.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEvent next = remaining > 0
+                        ? pendingEvents.poll(remaining, TimeUnit.NANOSECONDS) : pendingEvents.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                LOG.error("Failed to flush SNS publish batch", e);
+                batch.forEach(pendingEvent -> pendingEvent.future().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(PublishBatchRequestEntry.builder()
+                .id(Integer.toString(i))
+                .message(batch.get(i).message())
+                .messageAttributes(batch.get(i).messageAttributes())
+                .build());
+        }
+        batchFillRatio.record((double) batch.size() / maxBatchSize);
+        Timer.Sample sample = Timer.start();
+        // the call is traced under the request that opened the batch
+        Entity traceEntity = batch.get(0).traceEntity();
+        if (traceEntity != null) {
+            AWSXRay.setTraceEntity(traceEntity);
+        }
+        try {
+            snsAsyncClient.publishBatch(PublishBatchRequest.builder()
+                    .topicArn(productsEventsTopic.topicArn())
+                    .publishBatchRequestEntries(entries)
+                    .build())
+                .whenComplete((response, throwable) -> {
+                    sample.stop(flushLatency);
+                    if (throwable != null) {
+                        batch.forEach(pendingEvent -> pendingEvent.future().completeExceptionally(throwable));
+                        return;
+                    }
+                    for (PublishBatchResultEntry successful : response.successful()) {
+                        batch.get(Integer.parseInt(successful.id())).future().complete(PublishResponse.builder()
+                            .messageId(successful.messageId())
+                            .sequenceNumber(successful.sequenceNumber())
+                            .build());
+                    }
+                    for (BatchResultErrorEntry failed : response.failed()) {
+                        batch.get(Integer.parseInt(failed.id())).future().completeExceptionally(SnsException.builder()
+                            .message(failed.code() + ": " + failed.message())
+                            .build());
+                    }
+                    // an entry the response reports neither way would otherwise leave its caller waiting forever
+                    for (PendingEvent pendingEvent : batch) {
+                        if (!pendingEvent.future().isDone()) {
+                            pendingEvent.future().completeExceptionally(SnsException.builder()
+                                .message("PublishBatch returned no result for the entry")
+                                .build());
+                        }
+                    }
+                });
+        } finally {
+            AWSXRay.clearTraceEntity();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher.isAlive()) {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private record PendingEvent(
+        String message,
+        Map<String, MessageAttributeValue> messageAttributes,
+        Entity traceEntity,
+        CompletableFuture<PublishResponse> future
+    ) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.shvmsnha.productservice.interceptors;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Gradient concurrency limit: compares the average latency of the last window (short RTT) with a slow moving
+// average of it (long RTT). While they agree the limit grows by about its square root per window; once
+// requests queue up somewhere and the short RTT rises past `tolerance` times the long one, the limit shrinks
+// in proportion. A window with failed requests always shrinks it. Changes are smoothed, and the limit only
+// grows while it is actually being used.
+public class AdaptiveConcurrencyLimit {
+
+    private static final double LONG_RTT_SMOOTHING = 2.0 / (600 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // a ReentrantLock rather than synchronized, so virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double longRttNanos;
+    private long windowStartNanos = System.nanoTime();
+    private long windowRttSumNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowFailed;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+        long windowNanos, int minWindowSamples) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, this.maxLimit));
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = windowNanos;
+        this.minWindowSamples = Math.max(1, minWindowSamples);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Releases a permit taken with tryAcquire and feeds the request's latency into the limit.
+    public void release(long rttNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        lock.lock();
+        try {
+            windowRttSumNanos += rttNanos;
+            windowSamples++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, current);
+            windowFailed |= failed;
+            long now = System.nanoTime();
+            if (now - windowStartNanos >= windowNanos && windowSamples >= minWindowSamples) {
+                update();
+                windowStartNanos = now;
+                windowRttSumNanos = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+                windowFailed = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update() {
+        double shortRttNanos = (double) windowRttSumNanos / windowSamples;
+        if (longRttNanos == 0) {
+            longRttNanos = shortRttNanos;
+        } else {
+            longRttNanos = longRttNanos * (1 - LONG_RTT_SMOOTHING) + shortRttNanos * LONG_RTT_SMOOTHING;
+        }
+        // once a slowdown is over, the long RTT catches up quickly so the limit can grow back
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        // with less than half the limit in use, latency says nothing about how far the limit could go
+        if (!windowFailed && windowMaxInFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        double newLimit = windowFailed ? limit * Math.min(gradient, 0.9) : limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
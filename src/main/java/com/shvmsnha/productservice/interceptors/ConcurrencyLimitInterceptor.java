@@ -0,0 +1,185 @@
+package com.shvmsnha.productservice.interceptors;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.products.dto.ProductErrorResponse;
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Sheds load once more requests are in flight than an AdaptiveConcurrencyLimit allows, with a 503 and a
+// Retry-After instead of queueing them. Reads (GET, HEAD) and writes have separate limits. A permit is held
+// until the response is complete, async handling included. Streaming responses are not limited, since
+// their duration is the client's download rather than the service's latency.
+@Component
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Logger LOG = LogManager.getLogger(ConcurrencyLimitInterceptor.class);
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final String retryAfterSeconds;
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final Counter readRejections;
+    private final Counter writeRejections;
+
+    @Autowired
+    public ConcurrencyLimitInterceptor(ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${products.limiter.enabled}") boolean enabled,
+        @Value("${products.limiter.reads.initial-limit}") int readInitialLimit,
+        @Value("${products.limiter.reads.max-limit}") int readMaxLimit,
+        @Value("${products.limiter.writes.initial-limit}") int writeInitialLimit,
+        @Value("${products.limiter.writes.max-limit}") int writeMaxLimit,
+        @Value("${products.limiter.min-limit}") int minLimit,
+        @Value("${products.limiter.tolerance}") double tolerance,
+        @Value("${products.limiter.smoothing}") double smoothing,
+        @Value("${products.limiter.window}") Duration window,
+        @Value("${products.limiter.min-window-samples}") int minWindowSamples,
+        @Value("${products.limiter.retry-after}") Duration retryAfter) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        this.readLimit = new AdaptiveConcurrencyLimit(readInitialLimit, minLimit, readMaxLimit, tolerance, smoothing,
+            window.toNanos(), minWindowSamples);
+        this.writeLimit = new AdaptiveConcurrencyLimit(writeInitialLimit, minLimit, writeMaxLimit, tolerance, smoothing,
+            window.toNanos(), minWindowSamples);
+        this.readRejections = register(meterRegistry, "reads", readLimit);
+        this.writeRejections = register(meterRegistry, "writes", writeLimit);
+        LOG.info("Concurrency limiter enabled: [{}], readInitialLimit: [{}], writeInitialLimit: [{}]",
+            enabled, readInitialLimit, writeInitialLimit);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        // async results are dispatched through the interceptors again, the permit was taken on the first pass
+        if (!enabled || request.getDispatcherType() != DispatcherType.REQUEST || isStreaming(handler)) {
+            return true;
+        }
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        AdaptiveConcurrencyLimit limit = read ? readLimit : writeLimit;
+        if (!limit.tryAcquire()) {
+            (read ? readRejections : writeRejections).increment();
+            reject(request, response);
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limit, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit) {
+            // covers async requests that end without being dispatched back, such as timeouts and disconnects
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    permit.release(response.getStatus() >= 500);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    permit.release(true);
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    permit.release(true);
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            @Nullable Exception ex) throws Exception {
+        if (!request.isAsyncStarted() && request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit) {
+            permit.release(ex != null || response.getStatus() >= 500);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ProductErrors error = ProductErrors.OVERLOADED;
+        response.setStatus(error.getHttpStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ProductErrorResponse(error.getMessage(),
+            error.getHttpStatus().value(), request.getHeader("requestId"), null));
+    }
+
+    private static boolean isStreaming(Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return false;
+        }
+        ResolvableType returnType = ResolvableType.forMethodReturnType(handlerMethod.getMethod());
+        if (ResponseEntity.class.isAssignableFrom(returnType.toClass())) {
+            returnType = returnType.getGeneric(0);
+        }
+        return StreamingResponseBody.class.isAssignableFrom(returnType.toClass());
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String endpoints, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("products.limiter.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+            .description("Current concurrency limit")
+            .tag("endpoints", endpoints)
+            .register(meterRegistry);
+        Gauge.builder("products.limiter.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+            .description("Requests holding a concurrency permit")
+            .tag("endpoints", endpoints)
+            .register(meterRegistry);
+        return Counter.builder("products.limiter.rejected")
+            .description("Requests rejected with 503 because the concurrency limit was reached")
+            .tag("endpoints", endpoints)
+            .register(meterRegistry);
+    }
+
+    // released once, by whichever of afterCompletion and the async listener sees the request end first
+    private static final class Permit {
+        private final AdaptiveConcurrencyLimit limit;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AdaptiveConcurrencyLimit limit, long startNanos) {
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+
+        void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - startNanos, failed);
+            }
+        }
+    }
+}
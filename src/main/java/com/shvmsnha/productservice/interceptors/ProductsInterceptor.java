@@ -3,14 +3,14 @@ package com.shvmsnha.productservice.interceptors;
 import org.apache.logging.log4j.ThreadContext;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Component
-public class ProductsInterceptor implements HandlerInterceptor {
+public class ProductsInterceptor implements AsyncHandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
@@ -26,4 +26,18 @@ public class ProductsInterceptor implements HandlerInterceptor {
         ThreadContext.clearAll();
 	}
 
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        // the servlet thread goes back to the pool here; the request context travels with RequestContextExecutor
+        ThreadContext.clearAll();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            @Nullable Exception ex) throws Exception {
+        // postHandle is skipped when the handler throws
+        ThreadContext.clearAll();
+    }
+
 }
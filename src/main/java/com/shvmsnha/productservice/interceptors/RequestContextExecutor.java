@@ -0,0 +1,48 @@
+package com.shvmsnha.productservice.interceptors;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Entity;
+
+// Runs future continuations on whichever thread completes them, with the log4j ThreadContext and
+// X-Ray trace entity of the request that captured it, restoring that thread's own context afterwards.
+public final class RequestContextExecutor implements Executor {
+
+    private final Map<String, String> threadContext;
+    private final Entity traceEntity;
+
+    private RequestContextExecutor(Map<String, String> threadContext, Entity traceEntity) {
+        this.threadContext = threadContext;
+        this.traceEntity = traceEntity;
+    }
+
+    public static Executor capture() {
+        return new RequestContextExecutor(ThreadContext.getImmutableContext(), AWSXRay.getTraceEntity());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Map<String, String> previousThreadContext = ThreadContext.getImmutableContext();
+        Entity previousTraceEntity = AWSXRay.getTraceEntity();
+        apply(this.threadContext, this.traceEntity);
+        try {
+            command.run();
+        } finally {
+            apply(previousThreadContext, previousTraceEntity);
+        }
+    }
+
+    private static void apply(Map<String, String> threadContext, Entity traceEntity) {
+        ThreadContext.clearMap();
+        ThreadContext.putAll(threadContext);
+        if (traceEntity != null) {
+            AWSXRay.setTraceEntity(traceEntity);
+        } else {
+            AWSXRay.clearTraceEntity();
+        }
+    }
+}
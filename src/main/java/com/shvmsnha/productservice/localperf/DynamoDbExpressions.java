@@ -0,0 +1,526 @@
+package com.shvmsnha.productservice.localperf;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+// Parses and evaluates the part of the DynamoDB expression language the enhanced client and ProductsRepository
+// use: conditions, key conditions and filters made of comparisons, BETWEEN, IN, attribute_exists,
+// attribute_not_exists, begins_with and contains joined with AND, OR and NOT; and update expressions with SET
+// (including `+`, `-` and if_not_exists) and REMOVE on top-level attributes. Anything else is rejected with
+// an IllegalArgumentException, which the client reports as a ValidationException. Parsed expressions are
+// cached by their text, since the same few shapes are sent over and over.
+final class DynamoDbExpressions {
+
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, Condition> CONDITIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Update> UPDATES = new ConcurrentHashMap<>();
+
+    private DynamoDbExpressions() {
+    }
+
+    static Condition condition(String expression) {
+        return cached(CONDITIONS, expression, text -> {
+            Parser parser = new Parser(text);
+            Condition condition = parser.or();
+            parser.expectEnd();
+            return condition;
+        });
+    }
+
+    static Update update(String expression) {
+        return cached(UPDATES, expression, text -> {
+            Parser parser = new Parser(text);
+            Update update = parser.update();
+            parser.expectEnd();
+            return update;
+        });
+    }
+
+    private static <T> T cached(Map<String, T> cache, String expression, Function<String, T> parse) {
+        T parsed = cache.get(expression);
+        if (parsed == null) {
+            parsed = parse.apply(expression);
+            if (cache.size() < MAX_CACHED) {
+                cache.put(expression, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    // The placeholders of one request.
+    record Context(Map<String, String> names, Map<String, AttributeValue> values) {
+
+        String attribute(String token) {
+            if (!token.startsWith("#")) {
+                return token;
+            }
+            String name = names.get(token);
+            if (name == null) {
+                throw new IllegalArgumentException("An expression attribute name used in the document path is not defined: " + token);
+            }
+            return name;
+        }
+
+        AttributeValue value(String token) {
+            AttributeValue value = values.get(token);
+            if (value == null) {
+                throw new IllegalArgumentException("An expression attribute value used in expression is not defined: " + token);
+            }
+            return value;
+        }
+    }
+
+    sealed interface Operand permits Path, Value, IfNotExists, Arithmetic {
+        // null when the operand is an attribute the item does not have
+        AttributeValue evaluate(Map<String, AttributeValue> item, Context context);
+    }
+
+    record Path(String token) implements Operand {
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item, Context context) {
+            return item.get(context.attribute(token));
+        }
+    }
+
+    record Value(String token) implements Operand {
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item, Context context) {
+            return context.value(token);
+        }
+    }
+
+    record IfNotExists(Path path, Operand fallback) implements Operand {
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item, Context context) {
+            AttributeValue current = path.evaluate(item, context);
+            return current != null ? current : fallback.evaluate(item, context);
+        }
+    }
+
+    record Arithmetic(Operand left, boolean plus, Operand right) implements Operand {
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item, Context context) {
+            AttributeValue l = left.evaluate(item, context);
+            AttributeValue r = right.evaluate(item, context);
+            if (l == null || r == null || l.n() == null || r.n() == null) {
+                throw new IllegalArgumentException("An operand in the update expression has an incorrect data type");
+            }
+            BigDecimal a = new BigDecimal(l.n());
+            BigDecimal b = new BigDecimal(r.n());
+            return AttributeValue.fromN((plus ? a.add(b) : a.subtract(b)).toPlainString());
+        }
+    }
+
+    sealed interface Condition permits And, Or, Not, Compare, Between, In, AttributeExists, Matches {
+        boolean test(Map<String, AttributeValue> item, Context context);
+    }
+
+    record And(Condition left, Condition right) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            return left.test(item, context) && right.test(item, context);
+        }
+    }
+
+    record Or(Condition left, Condition right) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            return left.test(item, context) || right.test(item, context);
+        }
+    }
+
+    record Not(Condition condition) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            return !condition.test(item, context);
+        }
+    }
+
+    record Compare(Operand left, String operator, Operand right) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            AttributeValue l = left.evaluate(item, context);
+            AttributeValue r = right.evaluate(item, context);
+            if (operator.equals("=")) {
+                return l != null && r != null && equal(l, r);
+            }
+            if (operator.equals("<>")) {
+                return l == null || r == null || !equal(l, r);
+            }
+            Integer order = compare(l, r);
+            if (order == null) {
+                return false;
+            }
+            return switch (operator) {
+                case "<" -> order < 0;
+                case "<=" -> order <= 0;
+                case ">" -> order > 0;
+                default -> order >= 0;
+            };
+        }
+    }
+
+    record Between(Operand operand, Operand low, Operand high) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            AttributeValue value = operand.evaluate(item, context);
+            Integer fromLow = compare(value, low.evaluate(item, context));
+            Integer toHigh = compare(value, high.evaluate(item, context));
+            return fromLow != null && toHigh != null && fromLow >= 0 && toHigh <= 0;
+        }
+    }
+
+    record In(Operand operand, List<Operand> candidates) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            AttributeValue value = operand.evaluate(item, context);
+            if (value == null) {
+                return false;
+            }
+            for (Operand candidate : candidates) {
+                AttributeValue other = candidate.evaluate(item, context);
+                if (other != null && equal(value, other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // attribute_exists, or attribute_not_exists when `exists` is false
+    record AttributeExists(Path path, boolean exists) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            return (path.evaluate(item, context) != null) == exists;
+        }
+    }
+
+    // begins_with and contains
+    record Matches(String name, Path path, Operand operand) implements Condition {
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Context context) {
+            AttributeValue value = path.evaluate(item, context);
+            AttributeValue other = operand.evaluate(item, context);
+            if (value == null || other == null) {
+                return false;
+            }
+            if (name.equals("begins_with")) {
+                return value.s() != null && other.s() != null && value.s().startsWith(other.s());
+            }
+            if (value.s() != null && other.s() != null) {
+                return value.s().contains(other.s());
+            }
+            if (value.hasSs() && other.s() != null) {
+                return value.ss().contains(other.s());
+            }
+            if (value.hasNs() && other.n() != null) {
+                return value.ns().stream().anyMatch(n -> new BigDecimal(n).compareTo(new BigDecimal(other.n())) == 0);
+            }
+            return value.hasL() && value.l().stream().anyMatch(element -> equal(element, other));
+        }
+    }
+
+    record Update(List<Path> setPaths, List<Operand> setValues, List<Path> removePaths) {
+
+        // Applies the update to `item` in place and returns the names of the attributes it touched. Every value
+        // is evaluated against the item as it was before the update.
+        Set<String> apply(Map<String, AttributeValue> item, Context context) {
+            Map<String, AttributeValue> before = new HashMap<>(item);
+            Set<String> updated = new LinkedHashSet<>();
+            for (int i = 0; i < setPaths.size(); i++) {
+                String attribute = context.attribute(setPaths.get(i).token());
+                item.put(attribute, setValues.get(i).evaluate(before, context));
+                updated.add(attribute);
+            }
+            for (Path path : removePaths) {
+                String attribute = context.attribute(path.token());
+                item.remove(attribute);
+                updated.add(attribute);
+            }
+            return updated;
+        }
+    }
+
+    // The value a key condition requires `attribute` to be equal to, or null if it does not pin it down.
+    static AttributeValue requiredValue(Condition condition, String attribute, Context context) {
+        if (condition instanceof And and) {
+            AttributeValue left = requiredValue(and.left(), attribute, context);
+            return left != null ? left : requiredValue(and.right(), attribute, context);
+        }
+        if (condition instanceof Compare compare && compare.operator().equals("=")) {
+            if (compare.left() instanceof Path path && compare.right() instanceof Value value
+                && context.attribute(path.token()).equals(attribute)) {
+                return context.value(value.token());
+            }
+            if (compare.right() instanceof Path path && compare.left() instanceof Value value
+                && context.attribute(path.token()).equals(attribute)) {
+                return context.value(value.token());
+            }
+        }
+        return null;
+    }
+
+    static boolean equal(AttributeValue a, AttributeValue b) {
+        if (a.n() != null && b.n() != null) {
+            return new BigDecimal(a.n()).compareTo(new BigDecimal(b.n())) == 0;
+        }
+        return a.equals(b);
+    }
+
+    // null when the values cannot be ordered: missing, or of different or unordered types
+    private static Integer compare(AttributeValue a, AttributeValue b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        if (a.s() != null && b.s() != null) {
+            return a.s().compareTo(b.s());
+        }
+        if (a.n() != null && b.n() != null) {
+            return new BigDecimal(a.n()).compareTo(new BigDecimal(b.n()));
+        }
+        if (a.b() != null && b.b() != null) {
+            // binary values compare as unsigned bytes
+            return Arrays.compareUnsigned(a.b().asByteArrayUnsafe(), b.b().asByteArrayUnsafe());
+        }
+        return null;
+    }
+
+    private static final class Parser {
+
+        private final String text;
+        private final List<String> tokens;
+        private int position;
+
+        Parser(String text) {
+            if (text == null || text.isBlank()) {
+                throw new IllegalArgumentException("Invalid expression: the expression can not be empty");
+            }
+            this.text = text;
+            this.tokens = tokenize(text);
+        }
+
+        Condition or() {
+            Condition condition = and();
+            while (acceptKeyword("OR")) {
+                condition = new Or(condition, and());
+            }
+            return condition;
+        }
+
+        private Condition and() {
+            Condition condition = not();
+            while (acceptKeyword("AND")) {
+                condition = new And(condition, not());
+            }
+            return condition;
+        }
+
+        private Condition not() {
+            if (acceptKeyword("NOT")) {
+                return new Not(not());
+            }
+            return primary();
+        }
+
+        private Condition primary() {
+            if (accept("(")) {
+                Condition condition = or();
+                expect(")");
+                return condition;
+            }
+            String function = peekFunction();
+            if (function != null) {
+                position += 2;
+                Path path = path();
+                Condition condition = switch (function) {
+                    case "attribute_exists" -> new AttributeExists(path, true);
+                    case "attribute_not_exists" -> new AttributeExists(path, false);
+                    case "begins_with", "contains" -> {
+                        expect(",");
+                        yield new Matches(function, path, operand());
+                    }
+                    default -> throw invalid("unsupported function " + function);
+                };
+                expect(")");
+                return condition;
+            }
+            Operand left = operand();
+            if (acceptKeyword("BETWEEN")) {
+                Operand low = operand();
+                if (!acceptKeyword("AND")) {
+                    throw invalid("BETWEEN without AND");
+                }
+                return new Between(left, low, operand());
+            }
+            if (acceptKeyword("IN")) {
+                expect("(");
+                List<Operand> candidates = new ArrayList<>();
+                do {
+                    candidates.add(operand());
+                } while (accept(","));
+                expect(")");
+                return new In(left, candidates);
+            }
+            String operator = next();
+            if (!List.of("=", "<>", "<", "<=", ">", ">=").contains(operator)) {
+                throw invalid("expected a comparator, found " + operator);
+            }
+            return new Compare(left, operator, operand());
+        }
+
+        Update update() {
+            List<Path> setPaths = new ArrayList<>();
+            List<Operand> setValues = new ArrayList<>();
+            List<Path> removePaths = new ArrayList<>();
+            while (position < tokens.size()) {
+                if (acceptKeyword("SET")) {
+                    do {
+                        setPaths.add(path());
+                        expect("=");
+                        setValues.add(setValue());
+                    } while (accept(","));
+                } else if (acceptKeyword("REMOVE")) {
+                    do {
+                        removePaths.add(path());
+                    } while (accept(","));
+                } else {
+                    throw invalid("unsupported update clause " + tokens.get(position));
+                }
+            }
+            if (setPaths.isEmpty() && removePaths.isEmpty()) {
+                throw invalid("no update actions");
+            }
+            return new Update(setPaths, setValues, removePaths);
+        }
+
+        private Operand setValue() {
+            Operand left = setOperand();
+            if (accept("+")) {
+                return new Arithmetic(left, true, setOperand());
+            }
+            if (accept("-")) {
+                return new Arithmetic(left, false, setOperand());
+            }
+            return left;
+        }
+
+        private Operand setOperand() {
+            if ("if_not_exists".equals(peekFunction())) {
+                position += 2;
+                Path path = path();
+                expect(",");
+                Operand fallback = setValue();
+                expect(")");
+                return new IfNotExists(path, fallback);
+            }
+            return operand();
+        }
+
+        private Operand operand() {
+            String token = peek();
+            if (token != null && token.startsWith(":")) {
+                position++;
+                return new Value(token);
+            }
+            return path();
+        }
+
+        private Path path() {
+            String token = next();
+            if (token.startsWith("#") || Character.isLetter(token.charAt(0)) || token.charAt(0) == '_') {
+                return new Path(token);
+            }
+            throw invalid("expected an attribute, found " + token);
+        }
+
+        // the lower-cased function name when the next tokens are `name (`
+        private String peekFunction() {
+            if (position + 1 < tokens.size() && tokens.get(position + 1).equals("(")
+                && Character.isLetter(tokens.get(position).charAt(0))) {
+                return tokens.get(position).toLowerCase(Locale.ROOT);
+            }
+            return null;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean accept(String token) {
+            if (token.equals(peek())) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw invalid("expected " + token + ", found " + peek());
+            }
+        }
+
+        void expectEnd() {
+            if (position < tokens.size()) {
+                throw invalid("unexpected " + tokens.get(position));
+            }
+        }
+
+        private String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw invalid("unexpected end of expression");
+            }
+            return tokens.get(position++);
+        }
+
+        private IllegalArgumentException invalid(String reason) {
+            return new IllegalArgumentException("Invalid expression: " + reason + " in \"" + text + "\"");
+        }
+
+        private List<String> tokenize(String text) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if ("(),=+-".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '<' || c == '>') {
+                    boolean twoChars = i + 1 < text.length() && (text.charAt(i + 1) == '=' || (c == '<' && text.charAt(i + 1) == '>'));
+                    tokens.add(text.substring(i, twoChars ? i + 2 : i + 1));
+                    i += twoChars ? 2 : 1;
+                } else if (c == '#' || c == ':' || Character.isLetterOrDigit(c) || c == '_') {
+                    int start = i++;
+                    while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                        i++;
+                    }
+                    tokens.add(text.substring(start, i));
+                } else {
+                    throw invalid("unsupported character '" + c + "'");
+                }
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.shvmsnha.productservice.localperf;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Latency and errors for an in-memory client. Every call takes `latency` plus a uniformly random share of
+// `jitter`, and fails with `error` at `errorRate`. Responses complete on `responseExecutor`, as the SDK
+// completes them on its own executor rather than on the caller's thread.
+public class FaultInjection {
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+    private final Executor responseExecutor;
+    private final Supplier<? extends RuntimeException> error;
+
+    public FaultInjection(Duration latency, Duration jitter, double errorRate, Executor responseExecutor,
+        Supplier<? extends RuntimeException> error) {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.errorRate = errorRate;
+        this.responseExecutor = responseExecutor;
+        this.error = error;
+    }
+
+    // Runs `operation` once the latency has passed, unless the call is picked to fail.
+    <T> CompletableFuture<T> call(Supplier<T> operation) {
+        return respond(() -> {
+            if (fails()) {
+                throw error.get();
+            }
+            return operation.get();
+        });
+    }
+
+    // Runs `operation` once the latency has passed. Batch calls go through here: rather than failing as a
+    // whole they leave single items unprocessed, for which they ask fails() item by item.
+    <T> CompletableFuture<T> respond(Supplier<T> operation) {
+        CompletableFuture<T> response = new CompletableFuture<>();
+        long delayNanos = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0);
+        Executor executor = delayNanos > 0
+            ? CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, responseExecutor)
+            : responseExecutor;
+        executor.execute(() -> {
+            try {
+                response.complete(operation.get());
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        });
+        return response;
+    }
+
+    // Whether this call, or one item of a batch, is picked to fail.
+    boolean fails() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+}
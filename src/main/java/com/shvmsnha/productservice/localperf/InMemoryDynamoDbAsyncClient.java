@@ -0,0 +1,654 @@
+package com.shvmsnha.productservice.localperf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.shvmsnha.productservice.localperf.DynamoDbExpressions.Condition;
+import com.shvmsnha.productservice.localperf.DynamoDbExpressions.Context;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.dynamodb.paginators.BatchGetItemPublisher;
+import software.amazon.awssdk.services.dynamodb.paginators.QueryPublisher;
+import software.amazon.awssdk.services.dynamodb.paginators.ScanPublisher;
+
+// DynamoDbAsyncClient over in-memory tables, for the local-perf profile. It implements the calls the enhanced
+// client makes for ProductsRepository: GetItem, PutItem, UpdateItem and DeleteItem with condition expressions,
+// Query on the table or a GSI, segmented and paginated Scan with filters, BatchGetItem, BatchWriteItem and
+// TransactWriteItems, with the errors DynamoDB returns for failed conditions and cancelled transactions.
+// Writes to an item are serialized by a striped lock, and a transaction holds the locks of all its items.
+// Limit counts evaluated items and LastEvaluatedKey is returned while items remain, as in DynamoDB; the 1MB
+// page cap, capacity and sort keys are not modelled. Injected errors stand for failures the SDK would
+// return after its own retries, since there is no SDK retry layer underneath.
+public class InMemoryDynamoDbAsyncClient implements DynamoDbAsyncClient {
+
+    private static final int LOCK_STRIPES = 256;
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_TRANSACT_ITEMS = 100;
+
+    private final Map<String, InMemoryTable> tables = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final FaultInjection faults;
+
+    public InMemoryDynamoDbAsyncClient(FaultInjection faults) {
+        this.faults = faults;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Tables exist up front, as they do when infrastructure is deployed separately from the service.
+    public void createTable(String tableName, String partitionKey, Map<String, String> indexPartitionKeys) {
+        tables.put(tableName, new InMemoryTable(tableName, partitionKey, indexPartitionKeys));
+    }
+
+    // Writes an item without latency or errors, for seeding a table.
+    public void load(String tableName, Map<String, AttributeValue> item) {
+        InMemoryTable table = table(tableName);
+        String key = table.keyOf(item);
+        ReentrantLock lock = lockFor(table, key);
+        lock.lock();
+        try {
+            table.write(key, item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(String tableName) {
+        return table(tableName).size();
+    }
+
+    public static ProvisionedThroughputExceededException throughputExceeded() {
+        String message = "The level of configured provisioned throughput for the table was exceeded";
+        return ProvisionedThroughputExceededException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(errorDetails("ProvisionedThroughputExceededException", message))
+            .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            Map<String, AttributeValue> item = table.get(table.keyOfKey(request.key()));
+            return GetItemResponse.builder()
+                .item(item)
+                .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            String key = table.keyOf(request.item());
+            Condition condition = condition(request.conditionExpression());
+            Context context = new Context(request.expressionAttributeNames(), request.expressionAttributeValues());
+            ReentrantLock lock = lockFor(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> current = table.get(key);
+                checkCondition(condition, current, context, request.returnValuesOnConditionCheckFailure());
+                table.write(key, request.item());
+                return PutItemResponse.builder()
+                    .attributes(request.returnValues() == ReturnValue.ALL_OLD ? current : null)
+                    .build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            String key = table.keyOfKey(request.key());
+            Condition condition = condition(request.conditionExpression());
+            DynamoDbExpressions.Update update = request.updateExpression() == null
+                ? null : DynamoDbExpressions.update(request.updateExpression());
+            Context context = new Context(request.expressionAttributeNames(), request.expressionAttributeValues());
+            ReentrantLock lock = lockFor(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> current = table.get(key);
+                checkCondition(condition, current, context, request.returnValuesOnConditionCheckFailure());
+                Map<String, AttributeValue> updated = new HashMap<>(current == null ? request.key() : current);
+                Set<String> attributes = applyUpdate(table, update, updated, context);
+                table.write(key, updated);
+                ReturnValue returnValues = request.returnValues() == null ? ReturnValue.NONE : request.returnValues();
+                Map<String, AttributeValue> returned = switch (returnValues) {
+                    case ALL_NEW -> updated;
+                    case ALL_OLD -> current;
+                    case UPDATED_NEW -> subset(updated, attributes);
+                    case UPDATED_OLD -> subset(current, attributes);
+                    default -> null;
+                };
+                return UpdateItemResponse.builder()
+                    .attributes(returned)
+                    .build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            String key = table.keyOfKey(request.key());
+            Condition condition = condition(request.conditionExpression());
+            Context context = new Context(request.expressionAttributeNames(), request.expressionAttributeValues());
+            ReentrantLock lock = lockFor(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> current = table.get(key);
+                checkCondition(condition, current, context, request.returnValuesOnConditionCheckFailure());
+                table.write(key, null);
+                return DeleteItemResponse.builder()
+                    .attributes(request.returnValues() == ReturnValue.ALL_OLD ? current : null)
+                    .build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            String index = request.indexName();
+            String partitionKey = index == null ? table.partitionKey() : table.indexPartitionKey(index);
+            if (partitionKey == null) {
+                throw new IllegalArgumentException("The table does not have the specified index: " + index);
+            }
+            Context context = new Context(request.expressionAttributeNames(), request.expressionAttributeValues());
+            Condition keyCondition = DynamoDbExpressions.condition(request.keyConditionExpression());
+            AttributeValue partition = DynamoDbExpressions.requiredValue(keyCondition, partitionKey, context);
+            if (partition == null) {
+                throw new IllegalArgumentException("Query condition missed key schema element: " + partitionKey);
+            }
+            Condition filter = condition(request.filterExpression());
+            String startKey = request.hasExclusiveStartKey() ? table.keyOf(request.exclusiveStartKey()) : null;
+            Iterable<String> keys;
+            if (index != null) {
+                keys = table.indexed(index, partition, startKey);
+            } else {
+                String key = table.keyOf(Map.of(partitionKey, partition));
+                keys = startKey == null ? List.of(key) : List.of();
+            }
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            int limit = request.limit() == null ? Integer.MAX_VALUE : request.limit();
+            int evaluated = 0;
+            Map<String, AttributeValue> last = null;
+            boolean more = false;
+            for (String key : keys) {
+                Map<String, AttributeValue> item = table.get(key);
+                // an index entry may be about to go away with a write that is in progress
+                if (item == null || !keyCondition.test(item, context)) {
+                    continue;
+                }
+                if (evaluated == limit) {
+                    more = true;
+                    break;
+                }
+                evaluated++;
+                last = item;
+                if (filter == null || filter.test(item, context)) {
+                    items.add(item);
+                }
+            }
+            QueryResponse.Builder response = QueryResponse.builder()
+                .items(items)
+                .count(items.size())
+                .scannedCount(evaluated);
+            if (more) {
+                Map<String, AttributeValue> lastKey = new HashMap<>();
+                lastKey.put(table.partitionKey(), last.get(table.partitionKey()));
+                lastKey.put(partitionKey, last.get(partitionKey));
+                response.lastEvaluatedKey(lastKey);
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public QueryPublisher queryPaginator(QueryRequest request) {
+        return new QueryPublisher(this, request);
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return call(() -> {
+            InMemoryTable table = table(request.tableName());
+            Integer totalSegments = request.totalSegments();
+            Integer segment = request.segment();
+            if ((totalSegments == null) != (segment == null)
+                || totalSegments != null && (segment < 0 || segment >= totalSegments)) {
+                throw new IllegalArgumentException("Segment must be set with TotalSegments, and be less than it");
+            }
+            Condition filter = condition(request.filterExpression());
+            Context context = new Context(request.expressionAttributeNames(), request.expressionAttributeValues());
+            String startKey = request.hasExclusiveStartKey() ? table.keyOf(request.exclusiveStartKey()) : null;
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            int limit = request.limit() == null ? Integer.MAX_VALUE : request.limit();
+            int evaluated = 0;
+            long evaluatedBytes = 0;
+            Map<String, AttributeValue> last = null;
+            boolean more = false;
+            for (Map.Entry<String, Map<String, AttributeValue>> entry : table.itemsAfter(startKey).entrySet()) {
+                if (totalSegments != null && Math.floorMod(entry.getKey().hashCode(), totalSegments) != segment) {
+                    continue;
+                }
+                if (evaluated == limit) {
+                    more = true;
+                    break;
+                }
+                evaluated++;
+                last = entry.getValue();
+                evaluatedBytes += itemSize(last);
+                if (filter == null || filter.test(last, context)) {
+                    items.add(last);
+                }
+            }
+            ScanResponse.Builder response = ScanResponse.builder()
+                .items(items)
+                .count(items.size())
+                .scannedCount(evaluated);
+            if (more) {
+                response.lastEvaluatedKey(Map.of(table.partitionKey(), last.get(table.partitionKey())));
+            }
+            if (request.returnConsumedCapacity() == ReturnConsumedCapacity.TOTAL
+                || request.returnConsumedCapacity() == ReturnConsumedCapacity.INDEXES) {
+                // eventually consistent reads cost half a unit per 4KB read
+                double units = Math.ceil(evaluatedBytes / 4096.0) * (Boolean.TRUE.equals(request.consistentRead()) ? 1 : 0.5);
+                response.consumedCapacity(ConsumedCapacity.builder()
+                    .tableName(table.name())
+                    .capacityUnits(units)
+                    .build());
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public ScanPublisher scanPaginator(ScanRequest request) {
+        return new ScanPublisher(this, request);
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return respond(() -> {
+            int keys = request.requestItems().values().stream().mapToInt(keysAndAttributes -> keysAndAttributes.keys().size()).sum();
+            if (keys > MAX_BATCH_GET_KEYS) {
+                throw new IllegalArgumentException("Too many items requested for the BatchGetItem call");
+            }
+            Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+            Map<String, KeysAndAttributes> unprocessedKeys = new HashMap<>();
+            request.requestItems().forEach((tableName, keysAndAttributes) -> {
+                InMemoryTable table = table(tableName);
+                List<Map<String, AttributeValue>> found = new ArrayList<>();
+                List<Map<String, AttributeValue>> unprocessed = new ArrayList<>();
+                for (Map<String, AttributeValue> key : keysAndAttributes.keys()) {
+                    if (faults.fails()) {
+                        unprocessed.add(key);
+                        continue;
+                    }
+                    Map<String, AttributeValue> item = table.get(table.keyOfKey(key));
+                    if (item != null) {
+                        found.add(item);
+                    }
+                }
+                responses.put(tableName, found);
+                if (!unprocessed.isEmpty()) {
+                    unprocessedKeys.put(tableName, keysAndAttributes.toBuilder().keys(unprocessed).build());
+                }
+            });
+            return BatchGetItemResponse.builder()
+                .responses(responses)
+                .unprocessedKeys(unprocessedKeys)
+                .build();
+        });
+    }
+
+    @Override
+    public BatchGetItemPublisher batchGetItemPaginator(BatchGetItemRequest request) {
+        return new BatchGetItemPublisher(this, request);
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return respond(() -> {
+            int writes = request.requestItems().values().stream().mapToInt(List::size).sum();
+            if (writes > MAX_BATCH_WRITE_ITEMS) {
+                throw new IllegalArgumentException("Too many items requested for the BatchWriteItem call");
+            }
+            Set<String> written = new HashSet<>();
+            request.requestItems().forEach((tableName, writeRequests) -> {
+                InMemoryTable table = table(tableName);
+                for (WriteRequest writeRequest : writeRequests) {
+                    String key = writeRequest.putRequest() != null
+                        ? table.keyOf(writeRequest.putRequest().item())
+                        : table.keyOfKey(writeRequest.deleteRequest().key());
+                    if (!written.add(tableName + "/" + key)) {
+                        throw new IllegalArgumentException("Provided list of item keys contains duplicates");
+                    }
+                }
+            });
+            Map<String, List<WriteRequest>> unprocessedItems = new HashMap<>();
+            request.requestItems().forEach((tableName, writeRequests) -> {
+                InMemoryTable table = table(tableName);
+                for (WriteRequest writeRequest : writeRequests) {
+                    if (faults.fails()) {
+                        unprocessedItems.computeIfAbsent(tableName, name -> new ArrayList<>()).add(writeRequest);
+                        continue;
+                    }
+                    Map<String, AttributeValue> item = writeRequest.putRequest() != null ? writeRequest.putRequest().item() : null;
+                    String key = item != null ? table.keyOf(item) : table.keyOfKey(writeRequest.deleteRequest().key());
+                    ReentrantLock lock = lockFor(table, key);
+                    lock.lock();
+                    try {
+                        table.write(key, item);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            return BatchWriteItemResponse.builder()
+                .unprocessedItems(unprocessedItems)
+                .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+        return call(() -> {
+            if (request.transactItems().size() > MAX_TRANSACT_ITEMS) {
+                throw new IllegalArgumentException("Member must have length less than or equal to " + MAX_TRANSACT_ITEMS);
+            }
+            List<TransactAction> actions = new ArrayList<>();
+            Set<String> items = new HashSet<>();
+            for (TransactWriteItem transactItem : request.transactItems()) {
+                TransactAction action = TransactAction.of(transactItem, this::table);
+                if (!items.add(action.table().name() + "/" + action.key())) {
+                    throw new IllegalArgumentException("Transaction request cannot include multiple operations on one item");
+                }
+                actions.add(action);
+            }
+            List<ReentrantLock> held = lockAll(actions);
+            try {
+                List<Map<String, AttributeValue>> currentItems = new ArrayList<>();
+                List<CancellationReason> reasons = new ArrayList<>();
+                boolean cancelled = false;
+                for (TransactAction action : actions) {
+                    Map<String, AttributeValue> current = action.table().get(action.key());
+                    currentItems.add(current);
+                    if (action.condition() == null || action.condition().test(current == null ? Map.of() : current, action.context())) {
+                        reasons.add(CancellationReason.builder().code("None").build());
+                        continue;
+                    }
+                    cancelled = true;
+                    reasons.add(CancellationReason.builder()
+                        .code("ConditionalCheckFailed")
+                        .message("The conditional request failed")
+                        .item(action.returnItem() ? current : null)
+                        .build());
+                }
+                if (cancelled) {
+                    throw transactionCanceled(reasons);
+                }
+                for (int i = 0; i < actions.size(); i++) {
+                    actions.get(i).apply(currentItems.get(i));
+                }
+                return TransactWriteItemsResponse.builder().build();
+            } finally {
+                held.forEach(ReentrantLock::unlock);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> operation) {
+        return faults.call(() -> validated(operation));
+    }
+
+    private <T> CompletableFuture<T> respond(Supplier<T> operation) {
+        return faults.respond(() -> validated(operation));
+    }
+
+    // Malformed requests are IllegalArgumentExceptions in here and ValidationExceptions to the caller.
+    private static <T> T validated(Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (IllegalArgumentException e) {
+            throw DynamoDbException.builder()
+                .message(e.getMessage())
+                .statusCode(400)
+                .awsErrorDetails(errorDetails("ValidationException", e.getMessage()))
+                .build();
+        }
+    }
+
+    private InMemoryTable table(String tableName) {
+        InMemoryTable table = tables.get(tableName);
+        if (table == null) {
+            String message = "Requested resource not found: Table: " + tableName + " not found";
+            throw ResourceNotFoundException.builder()
+                .message(message)
+                .statusCode(400)
+                .awsErrorDetails(errorDetails("ResourceNotFoundException", message))
+                .build();
+        }
+        return table;
+    }
+
+    private ReentrantLock lockFor(InMemoryTable table, String key) {
+        return locks[stripe(table, key)];
+    }
+
+    private int stripe(InMemoryTable table, String key) {
+        return Math.floorMod(Objects.hash(table.name(), key), LOCK_STRIPES);
+    }
+
+    // Locks in stripe order, so two transactions can not each wait for a lock the other holds.
+    private List<ReentrantLock> lockAll(List<TransactAction> actions) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        actions.forEach(action -> stripes.add(stripe(action.table(), action.key())));
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+        return held;
+    }
+
+    private static Condition condition(String expression) {
+        return expression == null ? null : DynamoDbExpressions.condition(expression);
+    }
+
+    private static void checkCondition(Condition condition, Map<String, AttributeValue> current, Context context,
+        ReturnValuesOnConditionCheckFailure returnValues) {
+        if (condition == null || condition.test(current == null ? Map.of() : current, context)) {
+            return;
+        }
+        String message = "The conditional request failed";
+        throw ConditionalCheckFailedException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(errorDetails("ConditionalCheckFailedException", message))
+            .item(returnValues == ReturnValuesOnConditionCheckFailure.ALL_OLD ? current : null)
+            .build();
+    }
+
+    private static Set<String> applyUpdate(InMemoryTable table, DynamoDbExpressions.Update update,
+        Map<String, AttributeValue> item, Context context) {
+        if (update == null) {
+            return Set.of();
+        }
+        Set<String> attributes = update.apply(item, context);
+        if (attributes.contains(table.partitionKey())) {
+            throw new IllegalArgumentException("Cannot update attribute " + table.partitionKey()
+                + ". This attribute is part of the key");
+        }
+        return attributes;
+    }
+
+    private static Map<String, AttributeValue> subset(Map<String, AttributeValue> item, Set<String> attributes) {
+        if (item == null) {
+            return null;
+        }
+        Map<String, AttributeValue> subset = new LinkedHashMap<>();
+        attributes.forEach(attribute -> {
+            if (item.containsKey(attribute)) {
+                subset.put(attribute, item.get(attribute));
+            }
+        });
+        return subset;
+    }
+
+    // Close to DynamoDB's item size: attribute names plus values, without the per-type overheads.
+    private static long itemSize(Map<String, AttributeValue> item) {
+        long bytes = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            AttributeValue value = attribute.getValue();
+            bytes += attribute.getKey().length();
+            if (value.s() != null) {
+                bytes += value.s().length();
+            } else if (value.n() != null) {
+                bytes += value.n().length();
+            } else if (value.b() != null) {
+                bytes += value.b().asByteArrayUnsafe().length;
+            } else {
+                bytes += value.toString().length();
+            }
+        }
+        return bytes;
+    }
+
+    private static TransactionCanceledException transactionCanceled(List<CancellationReason> reasons) {
+        String message = "Transaction cancelled, please refer cancellation reasons for specific reasons "
+            + reasons.stream().map(CancellationReason::code).toList();
+        return TransactionCanceledException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(errorDetails("TransactionCanceledException", message))
+            .cancellationReasons(reasons)
+            .build();
+    }
+
+    private static AwsErrorDetails errorDetails(String errorCode, String message) {
+        return AwsErrorDetails.builder()
+            .errorCode(errorCode)
+            .errorMessage(message)
+            .serviceName("DynamoDb")
+            .build();
+    }
+
+    // One write of a transaction, with its condition parsed and its item's key resolved.
+    private record TransactAction(InMemoryTable table, String key, Map<String, AttributeValue> put,
+        DynamoDbExpressions.Update update, Map<String, AttributeValue> updateKey, boolean delete,
+        Condition condition, Context context, boolean returnItem) {
+
+        static TransactAction of(TransactWriteItem item, Function<String, InMemoryTable> tables) {
+            if (item.put() != null) {
+                InMemoryTable table = tables.apply(item.put().tableName());
+                return new TransactAction(table, table.keyOf(item.put().item()), item.put().item(), null, null, false,
+                    condition(item.put().conditionExpression()),
+                    new Context(item.put().expressionAttributeNames(), item.put().expressionAttributeValues()),
+                    item.put().returnValuesOnConditionCheckFailure() == ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            }
+            if (item.update() != null) {
+                InMemoryTable table = tables.apply(item.update().tableName());
+                return new TransactAction(table, table.keyOfKey(item.update().key()), null,
+                    DynamoDbExpressions.update(item.update().updateExpression()), item.update().key(), false,
+                    condition(item.update().conditionExpression()),
+                    new Context(item.update().expressionAttributeNames(), item.update().expressionAttributeValues()),
+                    item.update().returnValuesOnConditionCheckFailure() == ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            }
+            if (item.delete() != null) {
+                InMemoryTable table = tables.apply(item.delete().tableName());
+                return new TransactAction(table, table.keyOfKey(item.delete().key()), null, null, null, true,
+                    condition(item.delete().conditionExpression()),
+                    new Context(item.delete().expressionAttributeNames(), item.delete().expressionAttributeValues()),
+                    item.delete().returnValuesOnConditionCheckFailure() == ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            }
+            if (item.conditionCheck() != null) {
+                InMemoryTable table = tables.apply(item.conditionCheck().tableName());
+                return new TransactAction(table, table.keyOfKey(item.conditionCheck().key()), null, null, null, false,
+                    condition(item.conditionCheck().conditionExpression()),
+                    new Context(item.conditionCheck().expressionAttributeNames(), item.conditionCheck().expressionAttributeValues()),
+                    item.conditionCheck().returnValuesOnConditionCheckFailure() == ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            }
+            throw new IllegalArgumentException("A transact item must have one of Put, Update, Delete or ConditionCheck");
+        }
+
+        void apply(Map<String, AttributeValue> current) {
+            if (put != null) {
+                table.write(key, put);
+            } else if (update != null) {
+                Map<String, AttributeValue> updated = new HashMap<>(current == null ? updateKey : current);
+                applyUpdate(table, update, updated, context);
+                table.write(key, updated);
+            } else if (delete) {
+                table.write(key, null);
+            }
+        }
+    }
+}
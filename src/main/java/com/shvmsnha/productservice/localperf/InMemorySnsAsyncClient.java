@@ -0,0 +1,94 @@
+package com.shvmsnha.productservice.localperf;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.ThrottledException;
+import software.amazon.awssdk.services.sns.model.TooManyEntriesInBatchRequestException;
+
+// SnsAsyncClient for the local-perf profile that accepts every message and keeps only a count of them.
+// Publish and PublishBatch are what EventsPublisher, SnsPublishBatcher and EventsOutbox call.
+public class InMemorySnsAsyncClient implements SnsAsyncClient {
+
+    private static final int MAX_BATCH_ENTRIES = 10;
+
+    private final FaultInjection faults;
+    private final AtomicLong published = new AtomicLong();
+
+    public InMemorySnsAsyncClient(FaultInjection faults) {
+        this.faults = faults;
+    }
+
+    public long published() {
+        return published.get();
+    }
+
+    public static ThrottledException throttled() {
+        String message = "Rate exceeded";
+        return ThrottledException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(AwsErrorDetails.builder()
+                .errorCode("Throttling")
+                .errorMessage(message)
+                .serviceName("Sns")
+                .build())
+            .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<PublishResponse> publish(PublishRequest request) {
+        return faults.call(() -> {
+            published.incrementAndGet();
+            return PublishResponse.builder()
+                .messageId(UUID.randomUUID().toString())
+                .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest request) {
+        return faults.call(() -> {
+            if (request.publishBatchRequestEntries().size() > MAX_BATCH_ENTRIES) {
+                String message = "The batch request contains more entries than permissible";
+                throw TooManyEntriesInBatchRequestException.builder()
+                    .message(message)
+                    .statusCode(400)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode("TooManyEntriesInBatchRequest")
+                        .errorMessage(message)
+                        .serviceName("Sns")
+                        .build())
+                    .build();
+            }
+            List<PublishBatchResultEntry> successful = request.publishBatchRequestEntries().stream()
+                .map(entry -> PublishBatchResultEntry.builder()
+                    .id(entry.id())
+                    .messageId(UUID.randomUUID().toString())
+                    .build())
+                .toList();
+            published.addAndGet(successful.size());
+            return PublishBatchResponse.builder()
+                .successful(successful)
+                .build();
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.shvmsnha.productservice.localperf;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+// A table with a partition key only, and global secondary indexes with a partition key only, which is all
+// the products table has. Items are immutable maps ordered by key, so scans and index queries can page
+// through them while they change. Writes must hold the item's lock in InMemoryDynamoDbAsyncClient, which
+// is also what keeps an item and its index entries in step.
+final class InMemoryTable {
+
+    private final String name;
+    private final String partitionKey;
+    private final Map<String, String> indexPartitionKeys;
+    private final ConcurrentSkipListMap<String, Map<String, AttributeValue>> items = new ConcurrentSkipListMap<>();
+    // index name -> index key -> keys of the items under it
+    private final Map<String, Map<String, NavigableSet<String>>> indexes = new ConcurrentHashMap<>();
+
+    InMemoryTable(String name, String partitionKey, Map<String, String> indexPartitionKeys) {
+        this.name = name;
+        this.partitionKey = partitionKey;
+        this.indexPartitionKeys = Map.copyOf(indexPartitionKeys);
+        indexPartitionKeys.keySet().forEach(index -> indexes.put(index, new ConcurrentHashMap<>()));
+    }
+
+    String name() {
+        return name;
+    }
+
+    String partitionKey() {
+        return partitionKey;
+    }
+
+    // null for an index the table does not have
+    String indexPartitionKey(String index) {
+        return indexPartitionKeys.get(index);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    // The item's key in `items`, from a whole item.
+    String keyOf(Map<String, AttributeValue> item) {
+        AttributeValue value = item.get(partitionKey);
+        if (value == null) {
+            throw new IllegalArgumentException("One of the required keys was not given a value");
+        }
+        return key(value);
+    }
+
+    // The item's key in `items`, from a request's key, which must hold the partition key and nothing else.
+    String keyOfKey(Map<String, AttributeValue> key) {
+        if (key.size() != 1 || !key.containsKey(partitionKey)) {
+            throw new IllegalArgumentException("The provided key element does not match the schema");
+        }
+        return keyOf(key);
+    }
+
+    Map<String, AttributeValue> get(String key) {
+        return items.get(key);
+    }
+
+    // Items after `exclusiveStartKey`, or all of them when it is null.
+    NavigableMap<String, Map<String, AttributeValue>> itemsAfter(String exclusiveStartKey) {
+        return exclusiveStartKey == null ? items : items.tailMap(exclusiveStartKey, false);
+    }
+
+    // Keys of the items under `indexKey` in `index`, after `exclusiveStartKey` when it is not null.
+    NavigableSet<String> indexed(String index, AttributeValue indexKey, String exclusiveStartKey) {
+        NavigableSet<String> keys = indexes.get(index).get(key(indexKey));
+        if (keys == null) {
+            return new ConcurrentSkipListSet<>();
+        }
+        return exclusiveStartKey == null ? keys : keys.tailSet(exclusiveStartKey, false);
+    }
+
+    // Replaces the item under `key`, or deletes it when `item` is null. Only call with the item's lock held.
+    void write(String key, Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> previous = item == null ? items.remove(key) : items.put(key, Map.copyOf(item));
+        indexPartitionKeys.forEach((index, attribute) -> {
+            AttributeValue before = previous == null ? null : previous.get(attribute);
+            AttributeValue after = item == null ? null : item.get(attribute);
+            if (before != null && !before.equals(after)) {
+                indexes.get(index).computeIfPresent(key(before), (indexKey, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+            if (after != null && !after.equals(before)) {
+                indexes.get(index).compute(key(after), (indexKey, keys) -> {
+                    NavigableSet<String> indexed = keys == null ? new ConcurrentSkipListSet<>() : keys;
+                    indexed.add(key);
+                    return indexed;
+                });
+            }
+        });
+    }
+
+    // Keys are compared as strings, so each type gets its own prefix.
+    private static String key(AttributeValue value) {
+        if (value.s() != null) {
+            return "S" + value.s();
+        }
+        if (value.n() != null) {
+            return "N" + value.n();
+        }
+        if (value.b() != null) {
+            return "B" + Base64.getEncoder().encodeToString(value.b().asByteArray());
+        }
+        throw new IllegalArgumentException("Key attributes must be scalars of type string, number or binary");
+    }
+}
@@ -0,0 +1,49 @@
+package com.shvmsnha.productservice.products.controller;
+
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+
+// A product's ETag is its version attribute, quoted. Products written before versioning have no ETag.
+final class ProductETags {
+
+    private static final String ANY = "*";
+
+    private ProductETags() {
+    }
+
+    static String of(Product product) {
+        return product.getVersion() == null ? null : "\"" + product.getVersion() + "\"";
+    }
+
+    // If-None-Match is a list of ETags, weak ones included, or `*`.
+    static boolean matchesAny(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (ANY.equals(trimmed) || eTag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The version an If-Match header requires, or null when there is no header or it is `*`. Anything that
+    // is not one of our ETags can never match.
+    static Long expectedVersion(String ifMatch, String productId) throws ProductException {
+        if (ifMatch == null || ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException e) {
+                // falls through to the mismatch below
+            }
+        }
+        throw new ProductException(ProductErrors.PRODUCT_VERSION_MISMATCH, productId);
+    }
+}
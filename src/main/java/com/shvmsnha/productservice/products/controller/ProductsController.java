@@ -6,13 +6,26 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.amazonaws.xray.spring.aop.XRayEnabled;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shvmsnha.productservice.events.dto.EventType;
 import com.shvmsnha.productservice.events.services.EventsPublisher;
+import com.shvmsnha.productservice.products.dto.ProductBatchGetDto;
+import com.shvmsnha.productservice.products.dto.ProductBatchItemResultDto;
 import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.dto.ProductPageDto;
+import com.shvmsnha.productservice.products.dto.ProductPatchDto;
+import com.shvmsnha.productservice.products.enums.BatchItemStatus;
 import com.shvmsnha.productservice.products.enums.ProductErrors;
 import com.shvmsnha.productservice.products.exceptions.ProductException;
 import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.replica.ProductsQuery;
+import com.shvmsnha.productservice.products.replica.ProductsReplica;
+import com.shvmsnha.productservice.products.replica.ProductsSearchPage;
+import com.shvmsnha.productservice.products.repositories.ProductsCursor;
 import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+import com.shvmsnha.productservice.products.streaming.ProductsNdjsonStream;
+
+import com.shvmsnha.productservice.interceptors.RequestContextExecutor;
 
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 
@@ -20,21 +33,28 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 
 @RestController
@@ -45,93 +65,257 @@ public class ProductsController {
     private static final Logger LOG = LogManager.getLogger(ProductsController.class);
     private final ProductsRepository productsRepository;
     private final EventsPublisher eventsPublisher;
+    private final ProductsReplica productsReplica;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageLimit;
+    private final int maxPageLimit;
+    private final int streamPageSize;
+    private final int streamPrefetchPages;
+    private final int maxBatchItems;
 
     @Autowired
     public ProductsController(ProductsRepository productsRepository, 
-        EventsPublisher eventsPublisher) {
+        EventsPublisher eventsPublisher,
+        ProductsReplica productsReplica,
+        ObjectMapper objectMapper,
+        @Value("${products.page.default-limit}") int defaultPageLimit,
+        @Value("${products.page.max-limit}") int maxPageLimit,
+        @Value("${products.stream.page-size}") int streamPageSize,
+        @Value("${products.stream.prefetch-pages}") int streamPrefetchPages,
+        @Value("${products.batch.max-items}") int maxBatchItems) {
         this.productsRepository = productsRepository;
         this.eventsPublisher = eventsPublisher;
+        this.productsReplica = productsReplica;
+        this.objectMapper = objectMapper;
+        this.defaultPageLimit = defaultPageLimit;
+        this.maxPageLimit = maxPageLimit;
+        this.streamPageSize = streamPageSize;
+        this.streamPrefetchPages = streamPrefetchPages;
+        this.maxBatchItems = maxBatchItems;
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) String code) throws ProductException {
+    public CompletableFuture<ResponseEntity<?>> getAllProducts(@RequestParam(required = false) String code,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        Executor requestContext = RequestContextExecutor.capture();
         if (code != null) {
             LOG.info("Get Product by code: [{}]", code);
-            Product productByCode = productsRepository.getByCode(code).join();
-            if (productByCode != null) {
-                return new ResponseEntity<>(new ProductDto(productByCode), HttpStatus.OK);
-            }
-            throw new ProductException(ProductErrors.PRODUCT_NOT_FOUND, null);
+            return productsRepository.getByCode(code).thenApplyAsync(productByCode -> {
+                if (productByCode != null) {
+                    return new ResponseEntity<>(new ProductDto(productByCode), HttpStatus.OK);
+                }
+                throw new CompletionException(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, null));
+            }, requestContext);
+        }
+        int pageLimit = limit == null ? defaultPageLimit : Math.max(1, Math.min(limit, maxPageLimit));
+        LOG.info("Get products page - limit: [{}]", pageLimit);
+        return productsRepository.getPage(pageLimit, cursor).thenApply(page -> {
+            List<ProductDto> productDtos = page.items().stream()
+                .map(ProductDto::new)
+                .toList();
+            return new ResponseEntity<>(
+                new ProductPageDto(productDtos, ProductsCursor.encode(page.lastEvaluatedKey())), HttpStatus.OK);
+        });
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        LOG.info("Stream all products");
+        return ResponseEntity.ok()
+            .contentType(ProductsNdjsonStream.APPLICATION_NDJSON)
+            .body(new ProductsNdjsonStream(productsRepository.getAll(streamPageSize), 
+                objectMapper, streamPrefetchPages));
+    }
+
+    @GetMapping(params = "ids")
+    public CompletableFuture<ResponseEntity<ProductBatchGetDto>> getProductsByIds(@RequestParam List<String> ids) {
+        LOG.info("Get products by ids: [{}]", ids.size());
+        if (ids.size() > maxBatchItems) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.BATCH_TOO_LARGE, null));
         }
-        LOG.info("Get all products");
-        List<ProductDto> productDtos = new ArrayList<>();
-        productsRepository.getAll().items().subscribe(product -> {
-            productDtos.add(new ProductDto(product));
-        }).join();
-        return new ResponseEntity<>(productDtos, HttpStatus.OK);
+        return productsRepository.getByIds(ids).thenApply(products -> {
+            Set<String> foundIds = new HashSet<>();
+            List<ProductDto> productDtos = new ArrayList<>(products.size());
+            for (Product product : products) {
+                foundIds.add(product.getId());
+                productDtos.add(new ProductDto(product));
+            }
+            List<String> missingIds = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .toList();
+            return new ResponseEntity<>(new ProductBatchGetDto(productDtos, missingIds), HttpStatus.OK);
+        });
+    }
+
+    // Filtered, paginated search served from the in-memory replica, ordered by price.
+    @GetMapping("search")
+    public ResponseEntity<ProductPageDto> searchProducts(@RequestParam(required = false) Float minPrice,
+            @RequestParam(required = false) Float maxPrice,
+            @RequestParam(required = false) String model,
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) throws ProductException {
+        int pageLimit = limit == null ? defaultPageLimit : Math.max(1, Math.min(limit, maxPageLimit));
+        LOG.info("Search products - minPrice: [{}], maxPrice: [{}], model: [{}], namePrefix: [{}], limit: [{}]",
+            minPrice, maxPrice, model, namePrefix, pageLimit);
+        ProductsSearchPage page = productsReplica.search(new ProductsQuery(minPrice, maxPrice, model, namePrefix), 
+            pageLimit, cursor);
+        List<ProductDto> productDtos = page.items().stream()
+            .map(ProductDto::new)
+            .toList();
+        return new ResponseEntity<>(new ProductPageDto(productDtos, page.nextCursor()), HttpStatus.OK);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<ProductDto> getProductById(@PathVariable("id") String id) throws ProductException {
+    public CompletableFuture<ResponseEntity<ProductDto>> getProductById(@PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         LOG.info("Get product: [{}]", id);
-        Product product = productsRepository.getById(id).join();
-        if (product != null) {
-            LOG.info("Product Fetched - ID: [{}]", id);
-            return new ResponseEntity<>(new ProductDto(product), HttpStatus.OK);
-        }
-        throw new ProductException(ProductErrors.PRODUCT_NOT_FOUND, id);
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.getById(id).thenApplyAsync(product -> {
+            if (product != null) {
+                String eTag = ProductETags.of(product);
+                if (ProductETags.matchesAny(ifNoneMatch, eTag)) {
+                    LOG.info("Product not modified - ID: [{}]", id);
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<ProductDto>build();
+                }
+                LOG.info("Product Fetched - ID: [{}]", id);
+                return ResponseEntity.ok().eTag(eTag).body(new ProductDto(product));
+            }
+            throw new CompletionException(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, id));
+        }, requestContext);
     }
 
     @PostMapping
-    public ResponseEntity<ProductDto> createProduct(@RequestBody ProductDto productDto) throws ProductException, 
-            JsonProcessingException, InterruptedException, ExecutionException {
+    public CompletableFuture<ResponseEntity<ProductDto>> createProduct(@RequestBody ProductDto productDto) {
         LOG.info("Creating product: [{}]", productDto.name());
         Product productCreated = ProductDto.toProduct(productDto);
         productCreated.setId(UUID.randomUUID().toString());
-        CompletableFuture<Void> productCreateFuture = productsRepository.create(productCreated);
-
-
-        CompletableFuture<PublishResponse> responseFuture = eventsPublisher.sendProductEvent(productCreated, 
-                EventType.PRODUCT_CREATED, "shivamtest@test.com");
-        
-        CompletableFuture.allOf(productCreateFuture, responseFuture).join();
-
-        PublishResponse response = responseFuture.get();
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.create(productCreated)
+            .thenComposeAsync(v -> sendProductEvent(productCreated, EventType.PRODUCT_CREATED), requestContext)
+            .thenApplyAsync(response -> {
+                ThreadContext.put("messageId", response.messageId());
+                LOG.info("Publish create message message Id: [{}]", response.messageId());
+                LOG.info("Product created - ID: [{}]", productCreated.getId());
+                return ResponseEntity.status(HttpStatus.CREATED)
+                    .eTag(ProductETags.of(productCreated))
+                    .body(new ProductDto(productCreated));
+            }, requestContext);
+    }
 
-        ThreadContext.put("messageId", response.messageId());
-        LOG.info("Publish create message message Id: [{}]", response.messageId());
-        LOG.info("Product created - ID: [{}]", productCreated.getId());
-        return new ResponseEntity<>(new ProductDto(productCreated), HttpStatus.CREATED);
+    @PostMapping("batch")
+    public CompletableFuture<ResponseEntity<List<ProductBatchItemResultDto>>> createProducts(
+            @RequestBody List<ProductDto> productDtos) {
+        LOG.info("Creating products: [{}]", productDtos.size());
+        if (productDtos.size() > maxBatchItems) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.BATCH_TOO_LARGE, null));
+        }
+        List<Product> products = new ArrayList<>(productDtos.size());
+        for (ProductDto productDto : productDtos) {
+            Product product = ProductDto.toProduct(productDto);
+            product.setId(UUID.randomUUID().toString());
+            products.add(product);
+        }
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.createAll(products).thenComposeAsync(results -> {
+            List<CompletableFuture<PublishResponse>> events = new ArrayList<>();
+            for (ProductBatchItemResultDto result : results) {
+                if (result.status() == BatchItemStatus.CREATED) {
+                    events.add(sendProductEvent(products.get(result.index()), EventType.PRODUCT_CREATED)
+                        .whenComplete((response, throwable) -> {
+                            if (throwable != null) {
+                                LOG.error("Failed to publish create message for product: [{}]", result.id(), throwable);
+                            }
+                        }));
+                }
+            }
+            // the products are written either way, so a failed event does not fail the batch response
+            return CompletableFuture.allOf(events.toArray(CompletableFuture[]::new))
+                .handleAsync((v, throwable) -> {
+                    LOG.info("Products batch created - created: [{}] of [{}]", events.size(), results.size());
+                    return new ResponseEntity<>(results, HttpStatus.OK);
+                }, requestContext);
+        }, requestContext);
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<ProductDto> deleteProduct(@PathVariable("id") String id) throws ProductException, JsonProcessingException {
+    public CompletableFuture<ResponseEntity<ProductDto>> deleteProduct(@PathVariable("id") String id) {
         LOG.info("Delete product: [{}]", id);
-        Product productDeleted = productsRepository.deleteById(id).join();
-        if (productDeleted != null) {
-            PublishResponse response = eventsPublisher.sendProductEvent(productDeleted, 
-                EventType.PRODUCT_DELETED, "shivamtest@test.com").join();
-            ThreadContext.put("messageId", response.messageId());
-            LOG.info("Publish delete message message Id: [{}]", response.messageId());
-            LOG.info("Product created - ID: [{}]", productDeleted.getId());
-            return new ResponseEntity<>(new ProductDto(productDeleted), HttpStatus.OK);
-        }
-        throw new ProductException(ProductErrors.PRODUCT_NOT_FOUND, id);
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.deleteById(id).thenComposeAsync(productDeleted -> {
+            if (productDeleted == null) {
+                throw new CompletionException(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, id));
+            }
+            return sendProductEvent(productDeleted, EventType.PRODUCT_DELETED).thenApplyAsync(response -> {
+                ThreadContext.put("messageId", response.messageId());
+                LOG.info("Publish delete message message Id: [{}]", response.messageId());
+                LOG.info("Product deleted - ID: [{}]", productDeleted.getId());
+                return new ResponseEntity<>(new ProductDto(productDeleted), HttpStatus.OK);
+            }, requestContext);
+        }, requestContext);
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<ProductDto> updateProduct(@PathVariable("id") String id, @RequestBody ProductDto productDto) throws ProductException, JsonProcessingException {
+    public CompletableFuture<ResponseEntity<ProductDto>> updateProduct(@PathVariable("id") String id, 
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody ProductDto productDto) {
+        LOG.info("Updating product: [{}]", id);
+        Long expectedVersion;
+        try {
+            expectedVersion = ProductETags.expectedVersion(ifMatch, id);
+        } catch (ProductException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.update(ProductDto.toProduct(productDto), id, expectedVersion)
+            .thenComposeAsync(productUpdated -> sendProductEvent(productUpdated, EventType.PRODUCT_UPDATED)
+                .thenApplyAsync(response -> {
+                    ThreadContext.put("messageId", response.messageId());
+                    LOG.info("Publish update message message Id: [{}]", response.messageId());
+                    LOG.info("Product updated - ID: [{}]", productUpdated.getId());
+                    return ResponseEntity.ok()
+                        .eTag(ProductETags.of(productUpdated))
+                        .body(new ProductDto(productUpdated));
+                }, requestContext), requestContext);
+    }
+
+    // Responds with only the patched attributes, as now stored, and the new ETag.
+    @PatchMapping("{id}")
+    public CompletableFuture<ResponseEntity<ProductPatchDto>> patchProduct(@PathVariable("id") String id, 
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody ProductPatchDto productPatchDto) {
+        LOG.info("Patching product: [{}]", id);
+        Long expectedVersion;
+        try {
+            if (productPatchDto.isEmpty()) {
+                throw new ProductException(ProductErrors.EMPTY_PATCH, id);
+            }
+            expectedVersion = ProductETags.expectedVersion(ifMatch, id);
+        } catch (ProductException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsRepository.patch(productPatchDto, id, expectedVersion)
+            .thenComposeAsync(productPatched -> sendProductEvent(productPatched, EventType.PRODUCT_UPDATED)
+                .thenApplyAsync(response -> {
+                    ThreadContext.put("messageId", response.messageId());
+                    LOG.info("Publish update message message Id: [{}]", response.messageId());
+                    LOG.info("Product patched - ID: [{}]", productPatched.getId());
+                    return ResponseEntity.ok()
+                        .eTag(ProductETags.of(productPatched))
+                        .body(productPatchDto.updatedIn(productPatched));
+                }, requestContext), requestContext);
+    }
+
+    // Every successful write ends up here, so the replica is kept up to date from the same place.
+    private CompletableFuture<PublishResponse> sendProductEvent(Product product, EventType eventType) {
+        productsReplica.apply(product, eventType);
         try {
-            LOG.info("Updating product: [{}]", id);
-            Product productUpdated = productsRepository.update(ProductDto.toProduct(productDto), id).join();
-            PublishResponse response = eventsPublisher.sendProductEvent(productUpdated, 
-                EventType.PRODUCT_UPDATED, "shivamtest@test.com").join();
-            ThreadContext.put("messageId", response.messageId());
-            LOG.info("Publish update message message Id: [{}]", response.messageId());
-            LOG.info("Product updated - ID: [{}]", productUpdated.getId());
-            return new ResponseEntity<>(new ProductDto(productUpdated), HttpStatus.OK);
-        } catch(CompletionException e) {
-            throw new ProductException(ProductErrors.PRODUCT_NOT_FOUND, id);
+            return eventsPublisher.sendProductEvent(product, eventType, "shivamtest@test.com");
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
     
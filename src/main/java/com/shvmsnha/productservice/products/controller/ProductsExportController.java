@@ -0,0 +1,55 @@
+package com.shvmsnha.productservice.products.controller;
+
+import java.util.concurrent.Callable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.amazonaws.xray.spring.aop.XRayEnabled;
+import com.shvmsnha.productservice.products.dto.ExportReportDto;
+import com.shvmsnha.productservice.products.streaming.ProductsExporter;
+import com.shvmsnha.productservice.products.streaming.ProductsNdjsonStream;
+import com.shvmsnha.productservice.products.streaming.SegmentedScanExport;
+
+@RestController
+@RequestMapping("/api/products/export")
+@XRayEnabled
+public class ProductsExportController {
+
+    private static final Logger LOG = LogManager.getLogger(ProductsExportController.class);
+    private final ProductsExporter productsExporter;
+
+    @Autowired
+    public ProductsExportController(ProductsExporter productsExporter) {
+        this.productsExporter = productsExporter;
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(required = false) Integer segments) {
+        SegmentedScanExport export = productsExporter.newExport(segments);
+        LOG.info("Export products as NDJSON - segments: [{}]", segments);
+        return ResponseEntity.ok()
+            .contentType(ProductsNdjsonStream.APPLICATION_NDJSON)
+            .body(outputStream -> {
+                ExportReportDto report = export.writeTo(outputStream);
+                LOG.info("Products export completed - items: [{}], itemsPerSecond: [{}], consumedCapacity: [{}]",
+                    report.items(), report.itemsPerSecond(), report.consumedCapacity());
+            });
+    }
+
+    @PostMapping
+    public Callable<ResponseEntity<ExportReportDto>> exportProductsToFile(@RequestParam(required = false) Integer segments) {
+        SegmentedScanExport export = productsExporter.newExport(segments);
+        LOG.info("Export products to file - segments: [{}]", segments);
+        return () -> new ResponseEntity<>(productsExporter.exportToFile(export), HttpStatus.OK);
+    }
+}
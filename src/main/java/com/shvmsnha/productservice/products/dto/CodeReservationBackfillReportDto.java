@@ -0,0 +1,11 @@
+package com.shvmsnha.productservice.products.dto;
+
+public record CodeReservationBackfillReportDto(
+    int totalSegments,
+    long products,
+    long reserved,
+    long duplicateCodes,
+    long changed,
+    long durationMs
+) {
+}
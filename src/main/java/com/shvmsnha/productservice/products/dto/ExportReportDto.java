@@ -0,0 +1,21 @@
+package com.shvmsnha.productservice.products.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public record ExportReportDto(
+    int totalSegments,
+    long items,
+    double consumedCapacity,
+    long durationMs,
+    double itemsPerSecond,
+    List<SegmentReportDto> segments,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String file
+) {
+
+    public ExportReportDto withFile(String file) {
+        return new ExportReportDto(totalSegments, items, consumedCapacity, durationMs, itemsPerSecond, segments, file);
+    }
+}
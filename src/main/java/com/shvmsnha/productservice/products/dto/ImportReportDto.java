@@ -0,0 +1,18 @@
+package com.shvmsnha.productservice.products.dto;
+
+public record ImportReportDto(
+    String file,
+    String format,
+    long startOffset,
+    long endOffset,
+    long rows,
+    long created,
+    long updated,
+    long superseded,
+    long codeConflicts,
+    long invalid,
+    long durationMs,
+    double rowsPerSecond
+) {
+
+}
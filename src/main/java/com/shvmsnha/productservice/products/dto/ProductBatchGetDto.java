@@ -0,0 +1,10 @@
+package com.shvmsnha.productservice.products.dto;
+
+import java.util.List;
+
+public record ProductBatchGetDto(
+    List<ProductDto> items,
+    List<String> missingIds
+) {
+
+}
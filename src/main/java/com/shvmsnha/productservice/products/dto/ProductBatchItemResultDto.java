@@ -0,0 +1,15 @@
+package com.shvmsnha.productservice.products.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.shvmsnha.productservice.products.enums.BatchItemStatus;
+
+public record ProductBatchItemResultDto(
+    int index,
+    String id,
+    String code,
+    BatchItemStatus status,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String existingProductId
+) {
+
+}
@@ -0,0 +1,13 @@
+package com.shvmsnha.productservice.products.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public record ProductPageDto(
+    List<ProductDto> items,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String nextCursor
+) {
+
+}
@@ -0,0 +1,36 @@
+package com.shvmsnha.productservice.products.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.shvmsnha.productservice.products.models.Product;
+
+// Body of a PATCH: absent (null) attributes are left as they are.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductPatchDto(
+    String name, String code, Float price, String model, String url
+) {
+    public boolean isEmpty() {
+        return name == null && code == null && price == null && model == null && url == null;
+    }
+
+    public Product applyTo(Product current) {
+        Product product = new Product();
+        product.setId(current.getId());
+        product.setProductName(name != null ? name : current.getProductName());
+        product.setCode(code != null ? code : current.getCode());
+        product.setPrice(price != null ? price : current.getPrice());
+        product.setModel(model != null ? model : current.getModel());
+        product.setProductUrl(url != null ? url : current.getProductUrl());
+        product.setVersion(current.getVersion());
+        return product;
+    }
+
+    // the attributes of this patch as they are now stored in the product
+    public ProductPatchDto updatedIn(Product product) {
+        return new ProductPatchDto(
+            name != null ? product.getProductName() : null,
+            code != null ? product.getCode() : null,
+            price != null ? product.getPrice() : null,
+            model != null ? product.getModel() : null,
+            url != null ? product.getProductUrl() : null);
+    }
+}
@@ -0,0 +1,12 @@
+package com.shvmsnha.productservice.products.dto;
+
+public record SegmentReportDto(
+    int segment,
+    long items,
+    long pages,
+    double consumedCapacity,
+    long durationMs,
+    double itemsPerSecond
+) {
+
+}
@@ -0,0 +1,10 @@
+package com.shvmsnha.productservice.products.enums;
+
+public enum BatchItemStatus {
+    CREATED,
+    UPDATED,
+    CODE_ALREADY_EXISTS,
+    // a later product in the same batch has the same id and replaces it
+    SUPERSEDED,
+    FAILED
+}
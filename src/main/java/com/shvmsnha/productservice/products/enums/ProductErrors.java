@@ -4,7 +4,15 @@ import org.springframework.http.HttpStatus;
 
 public enum ProductErrors {
     PRODUCT_NOT_FOUND("Product not found", HttpStatus.NOT_FOUND),
-    PRODUCT_CODE_ALREADY_EXISTS("Product code already exists", HttpStatus.CONFLICT);
+    PRODUCT_CODE_ALREADY_EXISTS("Product code already exists", HttpStatus.CONFLICT),
+    PRODUCT_CODE_REQUIRED("Product code is required", HttpStatus.BAD_REQUEST),
+    PRODUCT_CONCURRENTLY_MODIFIED("Product was modified by another request, retry the request", HttpStatus.CONFLICT),
+    INVALID_CURSOR("Invalid pagination cursor", HttpStatus.BAD_REQUEST),
+    BATCH_TOO_LARGE("Too many products in one batch", HttpStatus.BAD_REQUEST),
+    EMPTY_PATCH("No product attributes to update", HttpStatus.BAD_REQUEST),
+    SEARCH_UNAVAILABLE("Product search is not available", HttpStatus.SERVICE_UNAVAILABLE),
+    OVERLOADED("Too many requests in progress, retry later", HttpStatus.SERVICE_UNAVAILABLE),
+    PRODUCT_VERSION_MISMATCH("Product was modified since the given version", HttpStatus.PRECONDITION_FAILED);
 
     private final String message;
     private final HttpStatus httpStatus;
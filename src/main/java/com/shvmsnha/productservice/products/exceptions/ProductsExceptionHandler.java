@@ -14,10 +14,9 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.shvmsnha.productservice.events.dto.ProductFailureEventDto;
 import com.shvmsnha.productservice.events.services.EventsPublisher;
+import com.shvmsnha.productservice.interceptors.RequestContextExecutor;
 import com.shvmsnha.productservice.products.dto.ProductErrorResponse;
 
-import software.amazon.awssdk.services.sns.model.PublishResponse;
-
 @RestControllerAdvice
 public class ProductsExceptionHandler extends ResponseEntityExceptionHandler {
 
@@ -45,8 +44,15 @@ public class ProductsExceptionHandler extends ResponseEntityExceptionHandler {
             productException.getProductId()
         );
 
-        PublishResponse response = eventsPublisher.sendProductFailureEvent(productFailureEventDto).join();
-        ThreadContext.put("messageId", response.messageId());
+        // the failure event is published in the background; the error response does not wait for SNS
+        eventsPublisher.sendProductFailureEvent(productFailureEventDto)
+            .whenCompleteAsync((response, throwable) -> {
+                if (throwable != null) {
+                    LOG.error("Failed to publish failure event", throwable);
+                } else {
+                    LOG.info("Publish failure message message Id: [{}]", response.messageId());
+                }
+            }, RequestContextExecutor.capture());
         LOG.error(productException.getProductErrors().getMessage());
         return handleExceptionInternal(
             productException, 
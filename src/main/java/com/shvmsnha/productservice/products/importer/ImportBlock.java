@@ -0,0 +1,10 @@
+package com.shvmsnha.productservice.products.importer;
+
+import java.util.List;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+// The parsed rows between two line boundaries of the file, `end` being where the next block starts.
+record ImportBlock(long start, long end, List<Product> products, int invalid) {
+
+}
@@ -0,0 +1,290 @@
+package com.shvmsnha.productservice.products.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.models.ProductCodeReservation;
+
+// Reads an NDJSON or CSV products file in blocks of whole lines. Each block is memory-mapped rather than
+// read into a buffer, and split at line boundaries into slices that are parsed in parallel. NDJSON lines use
+// the export's ProductDto shape; CSV files need a header row naming the columns (id, name, code, price,
+// model, url) and quoted fields may not contain line breaks.
+class ImportFile implements Closeable {
+
+    private static final Logger LOG = LogManager.getLogger(ImportFile.class);
+    private static final List<String> CSV_COLUMNS = List.of("id", "name", "code", "price", "model", "url");
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final ImportFormat format;
+    private final ObjectReader productReader;
+    private final Map<String, Integer> csvColumns;
+    private final long dataStart;
+
+    private ImportFile(Path path, FileChannel channel, ImportFormat format, ObjectReader productReader,
+        Map<String, Integer> csvColumns, long dataStart) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+        this.format = format;
+        this.productReader = productReader;
+        this.csvColumns = csvColumns;
+        this.dataStart = dataStart;
+    }
+
+    static ImportFile open(Path path, ImportFormat format, ObjectReader productReader) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (format != ImportFormat.CSV) {
+                return new ImportFile(path, channel, format, productReader, Map.of(), 0);
+            }
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 64 * 1024));
+            int headerEnd = indexOf(head, 0, head.limit(), (byte) '\n');
+            if (headerEnd < 0) {
+                throw new IOException("No CSV header row in " + path);
+            }
+            return new ImportFile(path, channel, format, productReader, csvColumns(line(head, 0, headerEnd)),
+                headerEnd + 1);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Where the first row starts, past the CSV header.
+    long dataStart() {
+        return dataStart;
+    }
+
+    // Parses the whole lines in the `blockSize` bytes from `start`, or up to the end of the file.
+    ImportBlock read(long start, int blockSize, int slices, Executor parsers) throws IOException {
+        int length = (int) Math.min(blockSize, size - start);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        int end = length;
+        if (start + length < size) {
+            int lastNewline = lastIndexOf(buffer, length, (byte) '\n');
+            if (lastNewline < 0) {
+                throw new IOException("Line at offset " + start + " of " + path + " is longer than the block size");
+            }
+            end = lastNewline + 1;
+        }
+        List<CompletableFuture<ImportBlock>> parsed = new ArrayList<>(slices);
+        int sliceStart = 0;
+        for (int slice = 0; slice < slices && sliceStart < end; slice++) {
+            int sliceEnd = slice == slices - 1 ? end : nextLineStart(buffer, sliceStart + (end - sliceStart) / (slices - slice), end);
+            int from = sliceStart;
+            parsed.add(CompletableFuture.supplyAsync(() -> parse(buffer, start, from, sliceEnd), parsers));
+            sliceStart = sliceEnd;
+        }
+        List<Product> products = new ArrayList<>();
+        int invalid = 0;
+        try {
+            for (CompletableFuture<ImportBlock> slice : parsed) {
+                ImportBlock sliceBlock = slice.join();
+                products.addAll(sliceBlock.products());
+                invalid += sliceBlock.invalid();
+            }
+        } catch (CompletionException e) {
+            throw new IOException("Failed to parse " + path + " at offset " + start, e.getCause());
+        }
+        return new ImportBlock(start, start + end, products, invalid);
+    }
+
+    // Absolute reads only, so slices of the same mapping can be parsed concurrently.
+    private ImportBlock parse(MappedByteBuffer buffer, long blockStart, int from, int to) {
+        List<Product> products = new ArrayList<>();
+        int invalid = 0;
+        byte[] lineBytes = new byte[1024];
+        int lineStart = from;
+        while (lineStart < to) {
+            int newline = indexOf(buffer, lineStart, to, (byte) '\n');
+            int lineEnd = newline < 0 ? to : newline;
+            int length = lineEnd - lineStart;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                if (lineBytes.length < length) {
+                    lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+                }
+                buffer.get(lineStart, lineBytes, 0, length);
+                try {
+                    Product product = format == ImportFormat.CSV ? csvProduct(lineBytes, length) : jsonProduct(lineBytes, length);
+                    if (product != null) {
+                        products.add(product);
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    invalid++;
+                    LOG.warn("Skipping invalid import row - offset: [{}], error: [{}]", blockStart + lineStart, e.getMessage());
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new ImportBlock(blockStart + from, blockStart + to, products, invalid);
+    }
+
+    private Product jsonProduct(byte[] line, int length) throws IOException {
+        if (isBlank(line, length)) {
+            return null;
+        }
+        ProductDto productDto = productReader.readValue(line, 0, length);
+        return withId(ProductDto.toProduct(productDto));
+    }
+
+    private Product csvProduct(byte[] line, int length) {
+        if (isBlank(line, length)) {
+            return null;
+        }
+        List<String> fields = csvFields(new String(line, 0, length, StandardCharsets.UTF_8));
+        Product product = new Product();
+        product.setId(csvField(fields, "id"));
+        product.setProductName(csvField(fields, "name"));
+        product.setCode(csvField(fields, "code"));
+        String price = csvField(fields, "price");
+        product.setPrice(price == null ? 0 : Float.parseFloat(price));
+        product.setModel(csvField(fields, "model"));
+        product.setProductUrl(csvField(fields, "url"));
+        return withId(product);
+    }
+
+    // Rows without an id get one derived from the code, so importing the same rows again rewrites the
+    // same products instead of creating new ones. Ids of code reservations are not product ids.
+    private static Product withId(Product product) {
+        if (product.getCode() == null || product.getCode().isBlank()) {
+            throw new IllegalArgumentException("Product code is required");
+        }
+        if (product.getId() != null && product.getId().startsWith(ProductCodeReservation.ID_PREFIX)) {
+            throw new IllegalArgumentException("Product id must not start with " + ProductCodeReservation.ID_PREFIX);
+        }
+        if (product.getId() == null || product.getId().isBlank()) {
+            product.setId(UUID.nameUUIDFromBytes(product.getCode().getBytes(StandardCharsets.UTF_8)).toString());
+        }
+        return product;
+    }
+
+    private String csvField(List<String> fields, String column) {
+        Integer index = csvColumns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private static Map<String, Integer> csvColumns(String header) throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = csvFields(header);
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (CSV_COLUMNS.contains(name)) {
+                columns.putIfAbsent(name, i);
+            }
+        }
+        if (!columns.containsKey("code")) {
+            throw new IOException("CSV header has no code column: " + header);
+        }
+        return columns;
+    }
+
+    // RFC 4180 fields: separated by commas, optionally quoted, with "" for a quote inside a quoted field.
+    static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String line(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        // a UTF-8 byte order mark would otherwise end up in the first column name
+        line = line.startsWith("\uFEFF") ? line.substring(1) : line;
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextLineStart(MappedByteBuffer buffer, int from, int to) {
+        int newline = indexOf(buffer, from, to, (byte) '\n');
+        return newline < 0 ? to : newline + 1;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(MappedByteBuffer buffer, int to, byte value) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
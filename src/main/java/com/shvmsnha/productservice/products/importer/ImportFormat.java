@@ -0,0 +1,17 @@
+package com.shvmsnha.productservice.products.importer;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+public enum ImportFormat {
+    NDJSON,
+    CSV;
+
+    // Without an explicit format, files ending in .csv are CSV and everything else is NDJSON.
+    public static ImportFormat of(String format, Path file) {
+        if (format != null && !format.isBlank()) {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        }
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+    }
+}
@@ -0,0 +1,75 @@
+package com.shvmsnha.productservice.products.importer;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Paces import writes to a rate in write capacity units per second, adjusted additive-increase /
+// multiplicative-decrease: every chunk written without unprocessed items raises the rate by a step towards
+// `maxWcuPerSecond`, and throttling cuts it. Cuts are at most one per `cooldownNanos`, so many chunks
+// throttled at once by the same burst only back off once.
+class ImportRateController {
+
+    private static final double DECREASE_FACTOR = 0.7;
+
+    private final double maxWcuPerSecond;
+    private final double minWcuPerSecond;
+    private final double increaseStep;
+    private final long cooldownNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double wcuPerSecond;
+    private long nextFreeNanos = System.nanoTime();
+    private long lastDecreaseNanos;
+
+    ImportRateController(double maxWcuPerSecond, double initialWcuPerSecond, long cooldownNanos) {
+        this.maxWcuPerSecond = maxWcuPerSecond;
+        this.minWcuPerSecond = Math.max(1, maxWcuPerSecond / 100);
+        this.increaseStep = Math.max(1, maxWcuPerSecond / 20);
+        this.cooldownNanos = cooldownNanos;
+        this.wcuPerSecond = Math.max(minWcuPerSecond, Math.min(initialWcuPerSecond, maxWcuPerSecond));
+        this.lastDecreaseNanos = System.nanoTime() - cooldownNanos;
+    }
+
+    // Reserves `wcu` units and returns how long to wait before sending them.
+    long reserve(double wcu) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long sendAt = Math.max(now, nextFreeNanos);
+            nextFreeNanos = sendAt + (long) (wcu / wcuPerSecond * 1_000_000_000L);
+            return sendAt - now;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void succeeded() {
+        lock.lock();
+        try {
+            wcuPerSecond = Math.min(maxWcuPerSecond, wcuPerSecond + increaseStep);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void throttled() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos < cooldownNanos) {
+                return;
+            }
+            lastDecreaseNanos = now;
+            wcuPerSecond = Math.max(minWcuPerSecond, wcuPerSecond * DECREASE_FACTOR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double wcuPerSecond() {
+        lock.lock();
+        try {
+            return wcuPerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
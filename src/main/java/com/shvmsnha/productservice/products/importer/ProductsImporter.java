@@ -0,0 +1,322 @@
+package com.shvmsnha.productservice.products.importer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.amazonaws.xray.AWSXRay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shvmsnha.productservice.interceptors.RequestContextExecutor;
+import com.shvmsnha.productservice.products.dto.ImportReportDto;
+import com.shvmsnha.productservice.products.dto.ProductBatchItemResultDto;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+// Bulk imports a products file through ProductsRepository.importAll, so products and their code reservations
+// go out as conditional TransactWriteItems requests. The file is read block by block, the next block being
+// parsed while the current one is written, and writes are paced by an ImportRateController towards `wcuBudget`.
+// Once every row of a block is written, the offset past it is saved to `<file>.checkpoint`; an import that stops
+// is resumed from there. Rows replace the products with their ids, so rows written again after a resume update
+// those products in place.
+@Service
+public class ProductsImporter {
+
+    private static final Logger LOG = LogManager.getLogger(ProductsImporter.class);
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    // attribute names, the price and the version of a product item
+    private static final int ITEM_OVERHEAD_BYTES = 64;
+
+    private final ProductsRepository productsRepository;
+    private final ObjectReader productReader;
+    private final int blockSize;
+    private final int parseThreads;
+    private final int chunkSize;
+    private final int maxInFlightChunks;
+    private final int maxAttempts;
+    private final double wcuBudget;
+    private final double initialWcu;
+    private final Duration backoffCooldown;
+    private final Duration progressInterval;
+
+    @Autowired
+    public ProductsImporter(ProductsRepository productsRepository,
+        ObjectMapper objectMapper,
+        @Value("${products.import.block-size-bytes}") int blockSize,
+        @Value("${products.import.parse-threads}") int parseThreads,
+        @Value("${products.import.chunk-size}") int chunkSize,
+        @Value("${products.import.max-in-flight-chunks}") int maxInFlightChunks,
+        @Value("${products.import.max-attempts}") int maxAttempts,
+        @Value("${products.import.wcu-budget}") double wcuBudget,
+        @Value("${products.import.initial-wcu}") double initialWcu,
+        @Value("${products.import.backoff-cooldown}") Duration backoffCooldown,
+        @Value("${products.import.progress-interval}") Duration progressInterval) {
+        this.productsRepository = productsRepository;
+        this.productReader = objectMapper.readerFor(ProductDto.class);
+        this.blockSize = blockSize;
+        this.parseThreads = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxInFlightChunks = Math.max(1, maxInFlightChunks);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.wcuBudget = wcuBudget;
+        this.initialWcu = initialWcu;
+        this.backoffCooldown = backoffCooldown;
+        this.progressInterval = progressInterval;
+    }
+
+    public ImportReportDto importFile(Path file, ImportFormat format, boolean resume) throws IOException {
+        Path checkpoint = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        ImportRateController rateController = new ImportRateController(wcuBudget, initialWcu, backoffCooldown.toNanos());
+        ImportProgress progress = new ImportProgress();
+        try (ImportFile importFile = ImportFile.open(file, format, productReader);
+            ExecutorService parsers = Executors.newFixedThreadPool(parseThreads,
+                Thread.ofPlatform().name("products-import-parser-", 0).daemon(true).factory());
+            ExecutorService reader = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("products-import-reader").daemon(true).factory())) {
+            long startOffset = resume ? readCheckpoint(checkpoint, importFile) : importFile.dataStart();
+            LOG.info("Products import started - file: [{}], format: [{}], size: [{}], offset: [{}], wcuBudget: [{}]",
+                file, format, importFile.size(), startOffset, wcuBudget);
+            long offset = startOffset;
+            CompletableFuture<ImportBlock> next = readBlock(importFile, offset, parsers, reader);
+            while (next != null) {
+                ImportBlock block = join(next);
+                next = block.end() < importFile.size() ? readBlock(importFile, block.end(), parsers, reader) : null;
+                progress.invalid.add(block.invalid());
+                writeBlock(block, rateController, progress, importFile.size());
+                offset = block.end();
+                writeCheckpoint(checkpoint, offset, importFile.size());
+            }
+            Files.deleteIfExists(checkpoint);
+            ImportReportDto report = progress.report(file, format, startOffset, offset);
+            LOG.info("Products import completed - rows: [{}], created: [{}], updated: [{}], superseded: [{}], codeConflicts: [{}], invalid: [{}], rowsPerSecond: [{}]",
+                report.rows(), report.created(), report.updated(), report.superseded(), report.codeConflicts(),
+                report.invalid(), report.rowsPerSecond());
+            return report;
+        }
+    }
+
+    private CompletableFuture<ImportBlock> readBlock(ImportFile importFile, long offset, Executor parsers, Executor reader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return importFile.read(offset, blockSize, parseThreads, parsers);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, reader);
+    }
+
+    // Returns once every row of the block is written, or throws if some could not be after all attempts.
+    private void writeBlock(ImportBlock block, ImportRateController rateController, ImportProgress progress,
+        long fileSize) throws IOException {
+        AWSXRay.beginSegment("productsservice-import");
+        try {
+            Executor importContext = RequestContextExecutor.capture();
+            Semaphore chunkPermits = new Semaphore(maxInFlightChunks);
+            AtomicBoolean failed = new AtomicBoolean();
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            List<Product> products = block.products();
+            for (int from = 0; from < products.size() && !failed.get(); from += chunkSize) {
+                List<Product> chunk = products.subList(from, Math.min(products.size(), from + chunkSize));
+                acquire(chunkPermits);
+                sleep(rateController.reserve(writeUnits(chunk)));
+                CompletableFuture<Void> written = writeChunk(chunk, 1, rateController, progress, importContext);
+                written.whenComplete((v, throwable) -> {
+                    if (throwable != null) {
+                        failed.set(true);
+                    }
+                    chunkPermits.release();
+                });
+                chunks.add(written);
+                progress.log(block.start(), fileSize, rateController);
+            }
+            join(CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)));
+            progress.log(block.end(), fileSize, rateController);
+        } finally {
+            AWSXRay.endSegment();
+        }
+    }
+
+    private CompletableFuture<Void> writeChunk(List<Product> chunk, int attempt, ImportRateController rateController,
+        ImportProgress progress, Executor importContext) {
+        return productsRepository.importAll(chunk).handleAsync((results, throwable) -> {
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (!(cause instanceof SdkException sdkException && sdkException.retryable())) {
+                    return CompletableFuture.<Void>failedFuture(cause);
+                }
+                if (cause instanceof AwsServiceException serviceException && serviceException.isThrottlingException()) {
+                    rateController.throttled();
+                }
+                return retry(chunk, attempt, cause, rateController, progress, importContext);
+            }
+            List<Product> unprocessed = new ArrayList<>();
+            for (ProductBatchItemResultDto result : results) {
+                switch (result.status()) {
+                    case CREATED -> progress.created.increment();
+                    case UPDATED -> progress.updated.increment();
+                    case SUPERSEDED -> progress.superseded.increment();
+                    case CODE_ALREADY_EXISTS -> progress.codeConflicts.increment();
+                    case FAILED -> unprocessed.add(chunk.get(result.index()));
+                }
+            }
+            if (unprocessed.isEmpty()) {
+                rateController.succeeded();
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            // FAILED items are mostly the ones still throttled or conflicting after the repository's own retries
+            rateController.throttled();
+            return retry(unprocessed, attempt, null, rateController, progress, importContext);
+        }, importContext).thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Void> retry(List<Product> products, int attempt, Throwable cause,
+        ImportRateController rateController, ImportProgress progress, Executor importContext) {
+        if (attempt >= maxAttempts) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                products.size() + " products could not be written after " + attempt + " attempts", cause));
+        }
+        LOG.info("Retrying products import chunk - products: [{}], attempt: [{}]", products.size(), attempt + 1);
+        long delayNanos = rateController.reserve(writeUnits(products));
+        return CompletableFuture.supplyAsync(() -> writeChunk(products, attempt + 1, rateController, progress, importContext),
+                CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, importContext))
+            .thenCompose(Function.identity());
+    }
+
+    // DynamoDB charges one WCU per started KB of each item, twice within a transaction, and every product
+    // comes with its reservation. A code change also releases the old reservation, which is not counted here.
+    private static double writeUnits(List<Product> products) {
+        double units = 0;
+        for (Product product : products) {
+            int bytes = ITEM_OVERHEAD_BYTES + length(product.getId()) + length(product.getProductName())
+                + length(product.getCode()) + length(product.getModel()) + length(product.getProductUrl());
+            units += 2 * (Math.ceil(bytes / 1024.0) + 1);
+        }
+        return units;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // The checkpoint holds the offset to resume from and the size of the file it was written for.
+    private static long readCheckpoint(Path checkpoint, ImportFile importFile) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return importFile.dataStart();
+        }
+        String[] parts = Files.readString(checkpoint).trim().split(":");
+        long offset = Long.parseLong(parts[0]);
+        long fileSize = Long.parseLong(parts[1]);
+        if (fileSize != importFile.size() || offset < importFile.dataStart() || offset > fileSize) {
+            throw new IOException("Checkpoint " + checkpoint + " was written for a different file, delete it to import from the start");
+        }
+        return offset;
+    }
+
+    private static void writeCheckpoint(Path checkpoint, long offset, long fileSize) throws IOException {
+        Path partial = checkpoint.resolveSibling(checkpoint.getFileName() + ".part");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((offset + ":" + fileSize).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(partial, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("Products import failed", e.getCause());
+        }
+    }
+
+    private static void acquire(Semaphore permits) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an import chunk to complete");
+        }
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while pacing import writes");
+        }
+    }
+
+    private final class ImportProgress {
+        private final long startNanos = System.nanoTime();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder updated = new LongAdder();
+        private final LongAdder superseded = new LongAdder();
+        private final LongAdder codeConflicts = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+        private long lastLogNanos = startNanos;
+
+        private long rows() {
+            return created.sum() + updated.sum() + superseded.sum() + codeConflicts.sum() + invalid.sum();
+        }
+
+        private double rowsPerSecond(long nowNanos) {
+            double seconds = (nowNanos - startNanos) / 1e9;
+            return seconds > 0 ? Math.round(rows() / seconds * 10) / 10.0 : 0;
+        }
+
+        private void log(long offset, long fileSize, ImportRateController rateController) {
+            long now = System.nanoTime();
+            if (now - lastLogNanos < progressInterval.toNanos()) {
+                return;
+            }
+            lastLogNanos = now;
+            LOG.info("Products import progress - offset: [{}/{}], percent: [{}], rows: [{}], rowsPerSecond: [{}], wcuPerSecond: [{}]",
+                offset, fileSize, fileSize == 0 ? 100 : offset * 100 / fileSize, rows(), rowsPerSecond(now),
+                Math.round(rateController.wcuPerSecond()));
+        }
+
+        private ImportReportDto report(Path file, ImportFormat format, long startOffset, long endOffset) {
+            long now = System.nanoTime();
+            return new ImportReportDto(file.toString(), format.name(), startOffset, endOffset, rows(), created.sum(),
+                updated.sum(), superseded.sum(), codeConflicts.sum(), invalid.sum(), TimeUnit.NANOSECONDS.toMillis(now - startNanos), rowsPerSecond(now));
+        }
+    }
+}
@@ -1,19 +1,52 @@
 package com.shvmsnha.productservice.products.models;
 
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.extensions.VersionedRecordExtension.AttributeTags.versionAttribute;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
 
-@DynamoDbBean
 public class Product {
+    // Mapped explicitly instead of with TableSchema.fromBean, which introspects the class at startup and
+    // converts every item through generated bean accessors. Attribute names match the bean property names.
+    public static final StaticTableSchema<Product> TABLE_SCHEMA = StaticTableSchema.builder(Product.class)
+        .newItemSupplier(Product::new)
+        .addAttribute(String.class, attribute -> attribute.name("id")
+            .getter(Product::getId)
+            .setter(Product::setId)
+            .tags(primaryPartitionKey()))
+        .addAttribute(String.class, attribute -> attribute.name("productName")
+            .getter(Product::getProductName)
+            .setter(Product::setProductName))
+        .addAttribute(String.class, attribute -> attribute.name("code")
+            .getter(Product::getCode)
+            .setter(Product::setCode)
+            .tags(secondaryPartitionKey("codeIdx")))
+        .addAttribute(Float.class, attribute -> attribute.name("price")
+            .getter(Product::getPrice)
+            .setter((product, price) -> product.setPrice(price == null ? 0f : price)))
+        .addAttribute(String.class, attribute -> attribute.name("model")
+            .getter(Product::getModel)
+            .setter(Product::setModel))
+        .addAttribute(String.class, attribute -> attribute.name("productUrl")
+            .getter(Product::getProductUrl)
+            .setter(Product::setProductUrl))
+        // VersionedRecordExtension conditions every put and update on this and increments it; it only
+        // changes the written item, so callers keep the Product in step themselves
+        .addAttribute(Long.class, attribute -> attribute.name("version")
+            .getter(Product::getVersion)
+            .setter(Product::setVersion)
+            .tags(versionAttribute()))
+        .build();
+
     private String id;
     private String productName;
     private String code;
     private float price;
     private String model;
     private String productUrl;
+    private Long version;
 
-    @DynamoDbPartitionKey
     public String getId() {
         return id;
     }
@@ -30,7 +63,6 @@ public class Product {
         this.productName = productName;
     }
 
-    @DynamoDbSecondaryPartitionKey(indexNames = "codeIdx")
     public String getCode() {
         return code;
     }
@@ -63,4 +95,12 @@ public class Product {
         this.productUrl = productUrl;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
 }
@@ -0,0 +1,52 @@
+package com.shvmsnha.productservice.products.models;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+
+// Lives in the products table under id CODE#<code>; it owns the code for productId.
+public class ProductCodeReservation {
+    public static final String ID_PREFIX = "CODE#";
+    public static final StaticTableSchema<ProductCodeReservation> TABLE_SCHEMA =
+        StaticTableSchema.builder(ProductCodeReservation.class)
+            .newItemSupplier(ProductCodeReservation::new)
+            .addAttribute(String.class, attribute -> attribute.name("id")
+                .getter(ProductCodeReservation::getId)
+                .setter(ProductCodeReservation::setId)
+                .tags(primaryPartitionKey()))
+            .addAttribute(String.class, attribute -> attribute.name("productId")
+                .getter(ProductCodeReservation::getProductId)
+                .setter(ProductCodeReservation::setProductId))
+            .build();
+
+    private String id;
+    private String productId;
+
+    public static ProductCodeReservation of(String code, String productId) {
+        ProductCodeReservation reservation = new ProductCodeReservation();
+        reservation.setId(idFor(code));
+        reservation.setProductId(productId);
+        return reservation;
+    }
+
+    public static String idFor(String code) {
+        return ID_PREFIX + code;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+}
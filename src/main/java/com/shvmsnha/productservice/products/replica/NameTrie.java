@@ -0,0 +1,97 @@
+package com.shvmsnha.productservice.products.replica;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Product ids by lower-cased product name, for prefix lookups. Not thread-safe.
+final class NameTrie {
+
+    private final Node root = new Node();
+
+    void add(String name, String productId) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.child(name.charAt(i), true);
+        }
+        if (node.productIds == null) {
+            node.productIds = new HashSet<>(2);
+        }
+        node.productIds.add(productId);
+    }
+
+    void remove(String name, String productId) {
+        Deque<Node> path = new ArrayDeque<>(name.length() + 1);
+        Node node = root;
+        path.push(node);
+        for (int i = 0; i < name.length(); i++) {
+            node = node.child(name.charAt(i), false);
+            if (node == null) {
+                return;
+            }
+            path.push(node);
+        }
+        if (node.productIds == null || !node.productIds.remove(productId)) {
+            return;
+        }
+        // prune the nodes this name no longer needs, deepest first
+        for (int i = name.length() - 1; i >= 0; i--) {
+            Node child = path.pop();
+            if (!child.isEmpty()) {
+                break;
+            }
+            path.peek().children.remove(name.charAt(i));
+        }
+    }
+
+    // true once every name has been removed again, as removing a name prunes the nodes only it used
+    boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    Set<String> withPrefix(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i), false);
+        }
+        Set<String> productIds = new HashSet<>();
+        if (node == null) {
+            return productIds;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node next = pending.pop();
+            if (next.productIds != null) {
+                productIds.addAll(next.productIds);
+            }
+            if (next.children != null) {
+                next.children.values().forEach(pending::push);
+            }
+        }
+        return productIds;
+    }
+
+    // most nodes only lead on to one child, so the collections are created on first use
+    private static final class Node {
+        private Map<Character, Node> children;
+        private Set<String> productIds;
+
+        Node child(char c, boolean create) {
+            if (children == null) {
+                if (!create) {
+                    return null;
+                }
+                children = new HashMap<>(2);
+            }
+            return create ? children.computeIfAbsent(c, key -> new Node()) : children.get(c);
+        }
+
+        boolean isEmpty() {
+            return (productIds == null || productIds.isEmpty()) && (children == null || children.isEmpty());
+        }
+    }
+}
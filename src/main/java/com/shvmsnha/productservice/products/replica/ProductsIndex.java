@@ -0,0 +1,150 @@
+package com.shvmsnha.productservice.products.replica;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+// The replicated products with a price-ordered index, a model index and a name prefix trie. Search results
+// are ordered by price, then id. Not thread-safe; ProductsReplica guards it.
+final class ProductsIndex {
+
+    static final Comparator<Product> BY_PRICE = Comparator.comparingDouble(Product::getPrice)
+        .thenComparing(Product::getId);
+
+    private final Map<String, Product> productsById = new HashMap<>();
+    private final NavigableSet<Product> productsByPrice = new TreeSet<>(BY_PRICE);
+    private final Map<String, Set<String>> productIdsByModel = new HashMap<>();
+    private final NameTrie productIdsByName = new NameTrie();
+
+    int size() {
+        return productsById.size();
+    }
+
+    // Keeps the copy with the higher version, since a scan and a write can deliver the same product out of order.
+    void put(Product product) {
+        Product existing = productsById.get(product.getId());
+        if (existing != null) {
+            if (existing.getVersion() != null && product.getVersion() != null
+                && existing.getVersion() > product.getVersion()) {
+                return;
+            }
+            remove(existing);
+        }
+        Product copy = copyOf(product);
+        productsById.put(copy.getId(), copy);
+        productsByPrice.add(copy);
+        if (copy.getModel() != null) {
+            productIdsByModel.computeIfAbsent(copy.getModel(), model -> new HashSet<>()).add(copy.getId());
+        }
+        if (copy.getProductName() != null) {
+            productIdsByName.add(copy.getProductName().toLowerCase(Locale.ROOT), copy.getId());
+        }
+    }
+
+    void remove(String productId) {
+        Product existing = productsById.get(productId);
+        if (existing != null) {
+            remove(existing);
+        }
+    }
+
+    // Up to `limit` matching products ordered after `after` (null for the first page).
+    List<Product> search(ProductsQuery query, Product after, int limit) {
+        Set<String> candidateIds = null;
+        if (query.model() != null) {
+            candidateIds = productIdsByModel.getOrDefault(query.model(), Set.of());
+        }
+        if (query.namePrefix() != null) {
+            Set<String> byName = productIdsByName.withPrefix(query.namePrefix().toLowerCase(Locale.ROOT));
+            candidateIds = smaller(candidateIds, byName);
+        }
+        if (candidateIds == null) {
+            return scanByPrice(query, after, limit);
+        }
+        // a model or name narrows the products down most, the rest is filtered and sorted
+        List<Product> matching = new ArrayList<>();
+        for (String productId : candidateIds) {
+            Product product = productsById.get(productId);
+            if (query.matches(product) && (after == null || BY_PRICE.compare(product, after) > 0)) {
+                matching.add(product);
+            }
+        }
+        matching.sort(BY_PRICE);
+        return matching.size() > limit ? matching.subList(0, limit) : matching;
+    }
+
+    // the smaller of two candidate sets, `candidateIds` being null when there is only `others`
+    static Set<String> smaller(Set<String> candidateIds, Set<String> others) {
+        return candidateIds == null || others.size() < candidateIds.size() ? others : candidateIds;
+    }
+
+    private List<Product> scanByPrice(ProductsQuery query, Product after, int limit) {
+        Collection<Product> from;
+        if (after != null) {
+            from = productsByPrice.tailSet(after, false);
+        } else if (query.minPrice() != null) {
+            from = productsByPrice.tailSet(probe(query.minPrice()), true);
+        } else {
+            from = productsByPrice;
+        }
+        List<Product> page = new ArrayList<>(limit);
+        for (Product product : from) {
+            if (page.size() == limit || (query.maxPrice() != null && product.getPrice() > query.maxPrice())) {
+                break;
+            }
+            if (query.matches(product)) {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    private void remove(Product existing) {
+        productsById.remove(existing.getId());
+        productsByPrice.remove(existing);
+        if (existing.getModel() != null) {
+            Set<String> productIds = productIdsByModel.get(existing.getModel());
+            if (productIds != null && productIds.remove(existing.getId()) && productIds.isEmpty()) {
+                productIdsByModel.remove(existing.getModel());
+            }
+        }
+        if (existing.getProductName() != null) {
+            productIdsByName.remove(existing.getProductName().toLowerCase(Locale.ROOT), existing.getId());
+        }
+    }
+
+    // sorts before every product with this price, since no id is smaller than the empty string
+    static Product probe(float price) {
+        return position(price, "");
+    }
+
+    static Product position(float price, String productId) {
+        Product product = new Product();
+        product.setPrice(price);
+        product.setId(productId);
+        return product;
+    }
+
+    // the index must not see later changes to a product it was given, the price orders it
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setProductName(product.getProductName());
+        copy.setCode(product.getCode());
+        copy.setPrice(product.getPrice());
+        copy.setModel(product.getModel());
+        copy.setProductUrl(product.getProductUrl());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,18 @@
+package com.shvmsnha.productservice.products.replica;
+
+import java.util.Locale;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+// Filters of a replica search; null filters match every product.
+public record ProductsQuery(
+    Float minPrice, Float maxPrice, String model, String namePrefix
+) {
+    boolean matches(Product product) {
+        return (minPrice == null || product.getPrice() >= minPrice)
+            && (maxPrice == null || product.getPrice() <= maxPrice)
+            && (model == null || model.equals(product.getModel()))
+            && (namePrefix == null || (product.getProductName() != null
+                && product.getProductName().toLowerCase(Locale.ROOT).startsWith(namePrefix.toLowerCase(Locale.ROOT))));
+    }
+}
@@ -0,0 +1,222 @@
+package com.shvmsnha.productservice.products.replica;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.amazonaws.xray.AWSXRay;
+import com.shvmsnha.productservice.events.dto.EventType;
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Opt-in in-memory copy of the products table for filtered searches. It is loaded with a segmented scan
+// once the application is ready and reloaded every `refreshInterval` to pick up writes made elsewhere;
+// this service's own writes are applied as they publish their product events.
+@Component
+public class ProductsReplica {
+
+    private static final Logger LOG = LogManager.getLogger(ProductsReplica.class);
+
+    private final ProductsRepository productsRepository;
+    private final boolean enabled;
+    private final Duration refreshInterval;
+    private final int loadSegments;
+    private final int loadPageSize;
+    private final Timer reloadLatency;
+    // searches share the read lock; writes and the swap after a reload take the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService refresher;
+    private ProductsIndex index = new ProductsIndex();
+    // writes applied while a reload is scanning, replayed onto the reloaded index; null when not reloading
+    private List<Change> changesDuringReload;
+    private volatile boolean ready;
+
+    @Autowired
+    public ProductsReplica(ProductsRepository productsRepository,
+        MeterRegistry meterRegistry,
+        @Value("${products.replica.enabled}") boolean enabled,
+        @Value("${products.replica.refresh-interval}") Duration refreshInterval,
+        @Value("${products.replica.load-segments}") int loadSegments,
+        @Value("${products.replica.load-page-size}") int loadPageSize) {
+        this.productsRepository = productsRepository;
+        this.enabled = enabled;
+        this.refreshInterval = refreshInterval;
+        this.loadSegments = Math.max(1, loadSegments);
+        this.loadPageSize = loadPageSize;
+        this.reloadLatency = Timer.builder("products.replica.reload")
+            .description("Time to reload the products replica from a full scan")
+            .register(meterRegistry);
+        Gauge.builder("products.replica.size", this, ProductsReplica::size)
+            .description("Products held by the replica")
+            .register(meterRegistry);
+        this.refresher = enabled
+            ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("products-replica").daemon(true).factory())
+            : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            LOG.info("Products replica - refreshInterval: [{}], loadSegments: [{}]", refreshInterval, loadSegments);
+            refresher.scheduleWithFixedDelay(this::reload, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Searches are served once the first load has completed.
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void apply(Product product, EventType eventType) {
+        if (!enabled) {
+            return;
+        }
+        Change change = new Change(product.getId(), eventType == EventType.PRODUCT_DELETED ? null : product);
+        lock.writeLock().lock();
+        try {
+            change.applyTo(index);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ProductsSearchPage search(ProductsQuery query, int limit, String cursor) throws ProductException {
+        if (!ready) {
+            throw new ProductException(ProductErrors.SEARCH_UNAVAILABLE, null);
+        }
+        Product after = decodeCursor(cursor);
+        List<Product> items;
+        lock.readLock().lock();
+        try {
+            // one extra to tell whether there is a next page
+            items = index.search(query, after, limit + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (items.size() <= limit) {
+            return new ProductsSearchPage(items, null);
+        }
+        List<Product> page = items.subList(0, limit);
+        return new ProductsSearchPage(page, encodeCursor(page.get(limit - 1)));
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void reload() {
+        lock.writeLock().lock();
+        try {
+            changesDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Timer.Sample sample = Timer.start();
+        ProductsIndex reloaded = new ProductsIndex();
+        AWSXRay.beginSegment("productsservice-replica");
+        try {
+            Queue<Product> scanned = new ConcurrentLinkedQueue<>();
+            List<CompletableFuture<Void>> segments = new ArrayList<>(loadSegments);
+            for (int segment = 0; segment < loadSegments; segment++) {
+                segments.add(productsRepository.scanSegment(segment, loadSegments, loadPageSize)
+                    .items()
+                    .subscribe(scanned::add));
+            }
+            CompletableFuture.allOf(segments.toArray(CompletableFuture[]::new)).join();
+            scanned.forEach(reloaded::put);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to reload the products replica, keeping the current one", e);
+            lock.writeLock().lock();
+            try {
+                changesDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        } finally {
+            AWSXRay.endSegment();
+        }
+        lock.writeLock().lock();
+        try {
+            changesDuringReload.forEach(change -> change.applyTo(reloaded));
+            changesDuringReload = null;
+            index = reloaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long elapsedNanos = sample.stop(reloadLatency);
+        LOG.info("Products replica reloaded - products: [{}], elapsedMs: [{}]", reloaded.size(),
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    // The cursor is the price and id of the last product of the page.
+    private static String encodeCursor(Product last) {
+        String position = Integer.toHexString(Float.floatToIntBits(last.getPrice())) + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Product decodeCursor(String cursor) throws ProductException {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            float price = Float.intBitsToFloat(Integer.parseUnsignedInt(position.substring(0, separator), 16));
+            return ProductsIndex.position(price, position.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ProductException(ProductErrors.INVALID_CURSOR, null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    // a product written by this service; a null product is a delete
+    private record Change(String productId, Product product) {
+        void applyTo(ProductsIndex index) {
+            if (product == null) {
+                index.remove(productId);
+            } else {
+                index.put(product);
+            }
+        }
+    }
+}
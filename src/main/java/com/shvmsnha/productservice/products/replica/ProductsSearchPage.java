@@ -0,0 +1,12 @@
+package com.shvmsnha.productservice.products.replica;
+
+import java.util.List;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+public record ProductsSearchPage(
+    List<Product> items,
+    String nextCursor
+) {
+
+}
@@ -0,0 +1,107 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.amazonaws.xray.AWSXRay;
+import com.shvmsnha.productservice.interceptors.RequestContextExecutor;
+import com.shvmsnha.productservice.products.dto.CodeReservationBackfillReportDto;
+import com.shvmsnha.productservice.products.models.Product;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+// Writes the CODE# reservation of every product written before code reservations existed. Segments are
+// scanned in parallel, one page at a time, and the codes of a page are reserved before the next page is read.
+// Running it again only reserves what is still missing. Two legacy products with the same code are logged and
+// left as they are: the first one reserved keeps the code. Once it has run, products.reservations.code-index-check
+// can be turned off.
+@Service
+public class CodeReservationBackfill {
+
+    private static final Logger LOG = LogManager.getLogger(CodeReservationBackfill.class);
+
+    private final ProductsRepository productsRepository;
+    private final int totalSegments;
+    private final int pageSize;
+
+    @Autowired
+    public CodeReservationBackfill(ProductsRepository productsRepository,
+        @Value("${products.reservations.backfill.segments}") int totalSegments,
+        @Value("${products.reservations.backfill.page-size}") int pageSize) {
+        this.productsRepository = productsRepository;
+        this.totalSegments = Math.max(1, totalSegments);
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    public CodeReservationBackfillReportDto run() {
+        AWSXRay.beginSegment("productsservice-backfill");
+        try {
+            Executor backfillContext = RequestContextExecutor.capture();
+            long startNanos = System.nanoTime();
+            LOG.info("Code reservation backfill started - segments: [{}], pageSize: [{}]", totalSegments, pageSize);
+            BackfillProgress progress = new BackfillProgress();
+            List<CompletableFuture<Void>> segments = new ArrayList<>();
+            for (int segment = 0; segment < totalSegments; segment++) {
+                segments.add(backfillSegment(segment, null, progress, backfillContext));
+            }
+            CompletableFuture.allOf(segments.toArray(CompletableFuture[]::new)).join();
+            CodeReservationBackfillReportDto report = new CodeReservationBackfillReportDto(totalSegments,
+                progress.products.sum(), progress.reserved.sum(), progress.duplicateCodes.sum(), progress.changed.sum(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+            LOG.info("Code reservation backfill completed - products: [{}], reserved: [{}], duplicateCodes: [{}], changed: [{}]",
+                report.products(), report.reserved(), report.duplicateCodes(), report.changed());
+            return report;
+        } finally {
+            AWSXRay.endSegment();
+        }
+    }
+
+    private CompletableFuture<Void> backfillSegment(int segment, Map<String, AttributeValue> exclusiveStartKey,
+        BackfillProgress progress, Executor backfillContext) {
+        return productsRepository.scanSegmentPage(segment, totalSegments, pageSize, exclusiveStartKey)
+            .thenComposeAsync(page -> {
+                List<CompletableFuture<Void>> reservations = new ArrayList<>();
+                for (Product product : page.items()) {
+                    progress.products.increment();
+                    if (product.getCode() != null) {
+                        reservations.add(productsRepository.reserveExistingCode(product)
+                            .thenAccept(ownerId -> progress.record(product, ownerId)));
+                    }
+                }
+                Map<String, AttributeValue> lastEvaluatedKey = page.lastEvaluatedKey();
+                return CompletableFuture.allOf(reservations.toArray(CompletableFuture[]::new))
+                    .thenComposeAsync(v -> lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : backfillSegment(segment, lastEvaluatedKey, progress, backfillContext), backfillContext);
+            }, backfillContext);
+    }
+
+    private static final class BackfillProgress {
+        private final LongAdder products = new LongAdder();
+        private final LongAdder reserved = new LongAdder();
+        private final LongAdder duplicateCodes = new LongAdder();
+        private final LongAdder changed = new LongAdder();
+
+        private void record(Product product, String ownerId) {
+            if (ownerId == null) {
+                changed.increment();
+            } else if (ownerId.equals(product.getId())) {
+                reserved.increment();
+            } else {
+                duplicateCodes.increment();
+                LOG.error("Duplicate product code - code: [{}], productId: [{}], ownerId: [{}]",
+                    product.getCode(), product.getId(), ownerId);
+            }
+        }
+    }
+}
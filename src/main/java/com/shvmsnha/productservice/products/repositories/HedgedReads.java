@@ -0,0 +1,164 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Entity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Sends a second, identical read when the first has not completed within the `percentile` latency of recent
+// reads, and completes with whichever succeeds first. Every read adds `budgetPercent` / 100 of a hedge to a
+// small budget and every hedge spends a whole one, so hedges stay within that share of the reads. No read is
+// hedged until `minSamples` latencies have been seen.
+class HedgedReads {
+
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final long BUDGET_UNIT = 1000;
+    private static final long MAX_BUDGET = 10 * BUDGET_UNIT;
+
+    private final boolean enabled;
+    private final ScheduledExecutorService scheduler;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final long budgetPerRead;
+    private final AtomicLong budget = new AtomicLong(MAX_BUDGET);
+    private final ReentrantLock samplesLock = new ReentrantLock();
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private long sampleCount;
+    private volatile long hedgeDelayNanos = -1;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Timer latencySaved;
+
+    HedgedReads(boolean enabled, ScheduledExecutorService scheduler, MeterRegistry meterRegistry, String operation,
+        double percentile, long minDelayNanos, int minSamples, double budgetPercent) {
+        this.enabled = enabled;
+        this.scheduler = scheduler;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelayNanos;
+        this.minSamples = Math.min(minSamples, LATENCY_SAMPLES);
+        this.budgetPerRead = Math.round(budgetPercent / 100 * BUDGET_UNIT);
+        this.hedgesSent = Counter.builder("products.hedge.sent")
+            .description("Second reads sent because the first was slower than the hedge delay")
+            .tag("operation", operation)
+            .register(meterRegistry);
+        this.hedgesWon = Counter.builder("products.hedge.won")
+            .description("Hedged reads that completed before the first read")
+            .tag("operation", operation)
+            .register(meterRegistry);
+        this.latencySaved = Timer.builder("products.hedge.saved")
+            .description("How much earlier a winning hedge completed than the first read")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    <T> CompletableFuture<T> read(Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        long startNanos = System.nanoTime();
+        budget.getAndUpdate(current -> Math.min(MAX_BUDGET, current + budgetPerRead));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // calls that have not completed yet; a failure only fails the read once no other call can succeed
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicLong hedgeWonAtNanos = new AtomicLong();
+        CompletableFuture<T> primary = call.get();
+        long delayNanos = hedgeDelayNanos;
+        ScheduledFuture<?> hedge = null;
+        if (delayNanos > 0) {
+            Entity traceEntity = AWSXRay.getTraceEntity();
+            hedge = scheduler.schedule(() -> {
+                if (result.isDone() || !spendBudget()) {
+                    return;
+                }
+                pending.incrementAndGet();
+                hedgesSent.increment();
+                if (traceEntity != null) {
+                    AWSXRay.setTraceEntity(traceEntity);
+                }
+                try {
+                    call.get().whenComplete((value, throwable) -> {
+                        if (complete(result, pending, value, throwable)) {
+                            hedgesWon.increment();
+                            hedgeWonAtNanos.set(System.nanoTime());
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // a hedge that throws rather than returning a failed future has still completed
+                    complete(result, pending, null, e);
+                } finally {
+                    AWSXRay.clearTraceEntity();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+        ScheduledFuture<?> scheduledHedge = hedge;
+        primary.whenComplete((value, throwable) -> {
+            long completedAtNanos = System.nanoTime();
+            if (scheduledHedge != null) {
+                scheduledHedge.cancel(false);
+            }
+            if (throwable == null) {
+                recordLatency(completedAtNanos - startNanos);
+            }
+            complete(result, pending, value, throwable);
+            long wonAtNanos = hedgeWonAtNanos.get();
+            if (wonAtNanos != 0) {
+                latencySaved.record(completedAtNanos - wonAtNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        return result;
+    }
+
+    private static <T> boolean complete(CompletableFuture<T> result, AtomicInteger pending, T value, Throwable throwable) {
+        boolean last = pending.decrementAndGet() == 0;
+        if (throwable == null) {
+            return result.complete(value);
+        }
+        if (last) {
+            result.completeExceptionally(throwable);
+        }
+        return false;
+    }
+
+    private boolean spendBudget() {
+        while (true) {
+            long current = budget.get();
+            if (current < BUDGET_UNIT) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - BUDGET_UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    private void recordLatency(long latencyNanos) {
+        samplesLock.lock();
+        try {
+            latencySamples[(int) (sampleCount % LATENCY_SAMPLES)] = latencyNanos;
+            sampleCount++;
+            if (sampleCount % RECOMPUTE_EVERY != 0 || sampleCount < minSamples) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(latencySamples, (int) Math.min(sampleCount, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1);
+            hedgeDelayNanos = Math.max(minDelayNanos, sorted[index]);
+        } finally {
+            samplesLock.unlock();
+        }
+    }
+}
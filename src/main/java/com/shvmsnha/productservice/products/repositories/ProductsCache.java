@@ -0,0 +1,129 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.shvmsnha.productservice.products.models.Product;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Per-task cache of products by id and of product ids by code. Writes through this task update it, but writes
+// of other tasks do not, so a read here can be up to `products.cache.ttl` behind them. Writes planned against
+// a cached product are conditioned on its code and version, so a stale entry costs them a retry, not an update.
+// Code mappings are checked against the product they lead to, so they can live longer than products.
+@Component
+public class ProductsCache {
+
+    private static final Logger LOG = LogManager.getLogger(ProductsCache.class);
+    // rough per-entry overhead of the cache node, the Product object and its boxed fields
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    // cached in place of a product id for codes that have no product
+    private static final String NO_PRODUCT = "";
+
+    private final AsyncCache<String, Product> productsById;
+    private final AsyncCache<String, String> productIdsByCode;
+
+    @Autowired
+    public ProductsCache(MeterRegistry meterRegistry,
+        @Value("${products.cache.enabled}") boolean enabled,
+        @Value("${products.cache.max-weight-bytes}") long maxWeightBytes,
+        @Value("${products.cache.ttl}") Duration ttl,
+        @Value("${products.cache.codes.max-size}") long maxCodes,
+        @Value("${products.cache.codes.ttl}") Duration codeTtl,
+        @Value("${products.cache.codes.negative-ttl}") Duration negativeCodeTtl
+    ) {
+        LOG.info("Products cache enabled: [{}], maxWeightBytes: [{}], ttl: [{}]", enabled, maxWeightBytes, ttl);
+        if (!enabled) {
+            this.productsById = null;
+            this.productIdsByCode = null;
+            return;
+        }
+        this.productsById = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .weigher((String id, Product product) -> weigh(product))
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.productsById.synchronous(), "products.byId");
+
+        this.productIdsByCode = Caffeine.newBuilder()
+            .maximumSize(maxCodes)
+            .expireAfter(Expiry.writing((String code, String productId) -> 
+                NO_PRODUCT.equals(productId) ? negativeCodeTtl : codeTtl))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.productIdsByCode.synchronous(), "products.codeToId");
+    }
+
+    public CompletableFuture<Product> getById(String productId, Function<String, CompletableFuture<Product>> loader) {
+        if (productsById == null) {
+            return loader.apply(productId);
+        }
+        return productsById.get(productId, (id, executor) -> loader.apply(id));
+    }
+
+    public Product getIfCached(String productId) {
+        if (productsById == null) {
+            return null;
+        }
+        CompletableFuture<Product> cached = productsById.getIfPresent(productId);
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return null;
+        }
+        return cached.join();
+    }
+
+    public void put(Product product) {
+        if (productsById != null) {
+            productsById.put(product.getId(), CompletableFuture.completedFuture(product));
+        }
+    }
+
+    public void invalidate(String productId) {
+        if (productsById != null) {
+            productsById.synchronous().invalidate(productId);
+        }
+    }
+
+    public CompletableFuture<String> getIdByCode(String code, Function<String, CompletableFuture<String>> loader) {
+        if (productIdsByCode == null) {
+            return loader.apply(code);
+        }
+        return productIdsByCode.get(code, (key, executor) -> loader.apply(key)
+                .thenApply(productId -> productId == null ? NO_PRODUCT : productId))
+            .thenApply(productId -> NO_PRODUCT.equals(productId) ? null : productId);
+    }
+
+    public void putCode(String code, String productId) {
+        if (productIdsByCode != null && code != null) {
+            productIdsByCode.put(code, CompletableFuture.completedFuture(productId == null ? NO_PRODUCT : productId));
+        }
+    }
+
+    public void invalidateCode(String code) {
+        if (productIdsByCode != null && code != null) {
+            productIdsByCode.synchronous().invalidate(code);
+        }
+    }
+
+    private static int weigh(Product product) {
+        return ENTRY_OVERHEAD_BYTES
+            + 2 * (length(product.getId()) + length(product.getProductName()) + length(product.getCode())
+                + length(product.getModel()) + length(product.getProductUrl()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,35 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import org.springframework.lang.Nullable;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public final class ProductsCursor {
+
+    private static final String PARTITION_KEY = "id";
+
+    private ProductsCursor() {
+    }
+
+    @Nullable
+    public static String encode(@Nullable Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || !lastEvaluatedKey.containsKey(PARTITION_KEY)) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(lastEvaluatedKey.get(PARTITION_KEY).s().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    public static Map<String, AttributeValue> decode(@Nullable String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String productId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        return Map.of(PARTITION_KEY, AttributeValue.fromS(productId));
+    }
+}
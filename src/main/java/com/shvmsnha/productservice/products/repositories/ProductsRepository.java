@@ -1,118 +1,1087 @@
 package com.shvmsnha.productservice.products.repositories;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import com.amazonaws.xray.spring.aop.XRayEnabled;
+import com.shvmsnha.productservice.interceptors.RequestContextExecutor;
+import com.shvmsnha.productservice.products.dto.ProductBatchItemResultDto;
+import com.shvmsnha.productservice.products.dto.ProductPatchDto;
+import com.shvmsnha.productservice.products.enums.BatchItemStatus;
 import com.shvmsnha.productservice.products.enums.ProductErrors;
 import com.shvmsnha.productservice.products.exceptions.ProductException;
 import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.models.ProductCodeReservation;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.DeleteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PagePublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactDeleteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactPutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactUpdateItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.UpdateItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
-
-import java.util.List;
-import java.util.ArrayList;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 @Repository
 @XRayEnabled
 public class ProductsRepository {
 
     private static final Logger LOG = LogManager.getLogger(ProductsRepository.class);
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    private static final int MAX_TRANSACT_ACTIONS = 100;
+    // the cancellation reason of an action that did not fail itself
+    private static final String NO_CANCELLATION = "None";
+    private static final Set<String> RETRYABLE_CANCELLATIONS = Set.of(
+        "TransactionConflict", "ThrottlingError", "ProvisionedThroughputExceeded");
+    private static final Expression ITEM_NOT_EXISTS = Expression.builder()
+        .expression("attribute_not_exists(id)")
+        .build();
+    // code reservations share the table with products and must not show up in scans
+    private static final Expression PRODUCTS_ONLY = Expression.builder()
+        .expression("NOT begins_with(id, :reservationPrefix)")
+        .putExpressionValue(":reservationPrefix", AttributeValue.fromS(ProductCodeReservation.ID_PREFIX))
+        .build();
     private final DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient;
     private final DynamoDbAsyncTable<Product> productsTable;
+    private final DynamoDbAsyncTable<ProductCodeReservation> reservationsTable;
+    // batch writes go through a client without VersionedRecordExtension and set the version themselves
+    private final DynamoDbEnhancedAsyncClient batchWriteClient;
+    private final DynamoDbAsyncTable<Product> batchProductsTable;
+    private final DynamoDbAsyncTable<ProductCodeReservation> batchReservationsTable;
+    // partial updates are written as plain UpdateItem expressions, which the enhanced client cannot express
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final String productsDdbName;
+    private final ProductsCache productsCache;
+    // the cache already shares a load between callers; these also cover a disabled cache and reads past it
+    private final SingleFlight<String, Product> idLookups;
+    private final SingleFlight<String, String> codeLookups;
+    private final HedgedReads itemReads;
+    private final HedgedReads codeQueries;
+    private final int batchMaxAttempts;
+    private final long batchBaseBackoffMs;
+    private final long batchMaxBackoffMs;
+    private final int batchParallelChunks;
+    // whether codes are also checked against codeIdx, see legacyCodeOwner
+    private final boolean codeIndexCheck;
 
     @Autowired
     public ProductsRepository(DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient, 
-        @Value("${aws.productsddb.name}") String productsDdbName
+        @Qualifier("unversionedDynamoDbEnhancedAsyncClient") DynamoDbEnhancedAsyncClient batchWriteClient,
+        DynamoDbAsyncClient dynamoDbAsyncClient,
+        ProductsCache productsCache,
+        MeterRegistry meterRegistry,
+        @Value("${aws.productsddb.name}") String productsDdbName,
+        @Value("${products.batch.max-attempts}") int batchMaxAttempts,
+        @Value("${products.batch.base-backoff-ms}") long batchBaseBackoffMs,
+        @Value("${products.batch.max-backoff-ms}") long batchMaxBackoffMs,
+        @Value("${products.batch.parallel-chunks}") int batchParallelChunks,
+        @Value("${products.hedging.enabled}") boolean hedgingEnabled,
+        @Value("${products.hedging.percentile}") double hedgingPercentile,
+        @Value("${products.hedging.min-delay}") Duration hedgingMinDelay,
+        @Value("${products.hedging.min-samples}") int hedgingMinSamples,
+        @Value("${products.hedging.budget-percent}") double hedgingBudgetPercent,
+        @Value("${products.reservations.code-index-check}") boolean codeIndexCheck
     ) {
         this.dynamoDbEnhancedAsyncClient = dynamoDbEnhancedAsyncClient;
-        this.productsTable = this.dynamoDbEnhancedAsyncClient.table(productsDdbName, TableSchema.fromBean(Product.class));
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.productsDdbName = productsDdbName;
+        this.productsCache = productsCache;
+        this.idLookups = new SingleFlight<>(meterRegistry, "id");
+        this.codeLookups = new SingleFlight<>(meterRegistry, "code");
+        ScheduledThreadPoolExecutor hedgeScheduler = new ScheduledThreadPoolExecutor(1, 
+            Thread.ofPlatform().name("products-hedging").daemon(true).factory());
+        // most hedges are cancelled because the first read completed in time
+        hedgeScheduler.setRemoveOnCancelPolicy(true);
+        this.itemReads = new HedgedReads(hedgingEnabled, hedgeScheduler, meterRegistry, "getItem", hedgingPercentile,
+            hedgingMinDelay.toNanos(), hedgingMinSamples, hedgingBudgetPercent);
+        this.codeQueries = new HedgedReads(hedgingEnabled, hedgeScheduler, meterRegistry, "codeIdx", hedgingPercentile,
+            hedgingMinDelay.toNanos(), hedgingMinSamples, hedgingBudgetPercent);
+        LOG.info("Hedged reads enabled: {}, percentile: {}, budgetPercent: {}", 
+            hedgingEnabled, hedgingPercentile, hedgingBudgetPercent);
+        this.batchMaxAttempts = Math.max(1, batchMaxAttempts);
+        this.batchBaseBackoffMs = batchBaseBackoffMs;
+        this.batchMaxBackoffMs = batchMaxBackoffMs;
+        this.batchParallelChunks = Math.max(1, batchParallelChunks);
+        this.codeIndexCheck = codeIndexCheck;
+        this.productsTable = this.dynamoDbEnhancedAsyncClient.table(productsDdbName, Product.TABLE_SCHEMA);
+        this.reservationsTable = this.dynamoDbEnhancedAsyncClient.table(productsDdbName, 
+            ProductCodeReservation.TABLE_SCHEMA);
+        this.batchWriteClient = batchWriteClient;
+        this.batchProductsTable = batchWriteClient.table(productsDdbName, Product.TABLE_SCHEMA);
+        this.batchReservationsTable = batchWriteClient.table(productsDdbName, ProductCodeReservation.TABLE_SCHEMA);
     }
 
     private CompletableFuture<Product> checkIfCodeExists(String code) {
-        List<Product> products = new ArrayList<>();
-        productsTable.index("codeIdx").query(QueryEnhancedRequest.builder()
+        AtomicReference<Product> productWithCode = new AtomicReference<>();
+        return productsTable.index("codeIdx").query(QueryEnhancedRequest.builder()
+                .limit(1)
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder()
+                    .partitionValue(code)
+                    .build()))
+                .build())
             .limit(1)
-            .queryConditional(QueryConditional.keyEqualTo(Key.builder()
-                .partitionValue(code)
-                .build()))
-            .build()
-        ).subscribe(productPage -> {
-            products.addAll(productPage.items());
-        }).join();
+            .subscribe(productPage -> productPage.items().stream()
+                .findFirst()
+                .ifPresent(productWithCode::set))
+            .thenApply(v -> productWithCode.get());
+    }
+
+    private CompletableFuture<String> queryIdByCode(String code) {
+        return codeLookups.load(code, key -> codeQueries.read(() -> checkIfCodeExists(key))
+            .thenApply(product -> product == null ? null : product.getId()));
+    }
 
-        if (products.size() > 0) {
-            return CompletableFuture.supplyAsync(() -> products.get(0));
+    // Products written before code reservations existed have their code only in codeIdx. Until
+    // CodeReservationBackfill has reserved those codes, a new code is also looked up there, and this returns
+    // the id of another product that has it. The index is eventually consistent, so this is the check the
+    // service made before reservations; the reservation written with the product stays the one that counts.
+    private CompletableFuture<String> legacyCodeOwner(String code, String productId) {
+        if (!codeIndexCheck || code == null) {
+            return CompletableFuture.completedFuture(null);
         }
-        return CompletableFuture.supplyAsync(() -> null);
+        return queryIdByCode(code)
+            .thenApply(ownerId -> ownerId == null || ownerId.equals(productId) ? null : ownerId);
     }
 
     public CompletableFuture<Product> getByCode(String code) {
         LOG.info("Get ProductId By Code: {}", code);
-        Product productByCode = checkIfCodeExists(code).join();
-        if (productByCode != null) {
-            return getById(productByCode.getId());
-        } 
-        return CompletableFuture.supplyAsync(() -> null);
+        Executor requestContext = RequestContextExecutor.capture();
+        return productsCache.getIdByCode(code, this::queryIdByCode)
+            .thenComposeAsync(productId -> getByCodeAndId(code, productId, true, requestContext), requestContext);
+    }
+
+    // The code mapping may be stale if the product was changed elsewhere, so the item must still carry the code.
+    private CompletableFuture<Product> getByCodeAndId(String code, String productId, boolean retryIfStale, 
+        Executor requestContext) {
+        if (productId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return getById(productId).thenComposeAsync(product -> {
+            if (product != null && code.equals(product.getCode())) {
+                return CompletableFuture.completedFuture(product);
+            }
+            productsCache.invalidateCode(code);
+            if (!retryIfStale) {
+                return CompletableFuture.completedFuture(null);
+            }
+            LOG.info("Stale code mapping, querying code index again: {}", code);
+            return queryIdByCode(code).thenComposeAsync(freshProductId -> {
+                productsCache.putCode(code, freshProductId);
+                return getByCodeAndId(code, freshProductId, false, requestContext);
+            }, requestContext);
+        }, requestContext);
+    }
+
+    public PagePublisher<Product> getAll(int pageSize) {
+        LOG.info("Get All Products - pageSize: {}", pageSize);
+        return productsTable.scan(ScanEnhancedRequest.builder()
+            .limit(pageSize)
+            .filterExpression(PRODUCTS_ONLY)
+            .build());
+    }
+
+    public PagePublisher<Product> scanSegment(int segment, int totalSegments, int pageSize) {
+        LOG.info("Scan Products Segment: {}/{}", segment, totalSegments);
+        return productsTable.scan(ScanEnhancedRequest.builder()
+            .segment(segment)
+            .totalSegments(totalSegments)
+            .limit(pageSize)
+            .filterExpression(PRODUCTS_ONLY)
+            .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+            .build());
     }
 
-    public PagePublisher<Product> getAll() {
-        // DO NOT DO THIS IN PRODUCTION
-        LOG.info("Get All Products");
-        return productsTable.scan();
+    public CompletableFuture<Page<Product>> getPage(int limit, String cursor) {
+        LOG.info("Get Products Page - limit: {}", limit);
+        Map<String, AttributeValue> exclusiveStartKey;
+        try {
+            exclusiveStartKey = ProductsCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.INVALID_CURSOR, null));
+        }
+        AtomicReference<Page<Product>> firstPage = new AtomicReference<>();
+        return productsTable.scan(ScanEnhancedRequest.builder()
+                .limit(limit)
+                .exclusiveStartKey(exclusiveStartKey)
+                .filterExpression(PRODUCTS_ONLY)
+                .build())
+            .limit(1)
+            .subscribe(firstPage::set)
+            .thenApply(v -> firstPage.get());
     }
 
     public CompletableFuture<Product> getById(String productId) {
         LOG.info("Get ProductId: {}", productId);
-        return productsTable.getItem(Key.builder()
-            .partitionValue(productId)
+        if (isReservationId(productId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return productsCache.getById(productId, this::loadById);
+    }
+
+    // Consistent reads are never coalesced: they must not return what an earlier, shared read saw.
+    private CompletableFuture<Product> loadById(String productId) {
+        return idLookups.load(productId, id -> itemReads.read(() -> loadById(id, false)));
+    }
+
+    private CompletableFuture<Product> loadById(String productId, boolean consistentRead) {
+        return productsTable.getItem(GetItemEnhancedRequest.builder()
+            .key(Key.builder()
+                .partitionValue(productId)
+                .build())
+            .consistentRead(consistentRead)
             .build());
     }
 
-    public CompletableFuture<Void> create(Product product) throws ProductException {
+    public CompletableFuture<Void> create(Product product) {
         LOG.info("Create Product");
-        Product productWithSameCode = checkIfCodeExists(product.getCode()).join();
-        if (productWithSameCode != null) {
-            LOG.error("Can not create a product with same code.");
-            throw new ProductException(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS, productWithSameCode.getId());
+        if (isBlank(product.getCode())) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.PRODUCT_CODE_REQUIRED, product.getId()));
         }
-        return productsTable.putItem(product);
+        product.setVersion(null);
+        return legacyCodeOwner(product.getCode(), product.getId())
+            .thenCompose(ownerId -> {
+                if (ownerId != null) {
+                    throw new CompletionException(new ProductException(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS, ownerId));
+                }
+                return dynamoDbEnhancedAsyncClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                    .addPutItem(productsTable, TransactPutItemEnhancedRequest.builder(Product.class)
+                        .item(product)
+                        .conditionExpression(ITEM_NOT_EXISTS)
+                        .build())
+                    .addPutItem(reservationsTable, reserveCode(product.getCode(), product.getId()))
+                    .build());
+            })
+            .exceptionally(throwable -> {
+                if (isConditionFailure(throwable, 1)) {
+                    LOG.error("Can not create a product with same code.");
+                    throw codeAlreadyExists(throwable, 1);
+                }
+                throw asCompletionException(throwable);
+            })
+            .thenRun(() -> {
+                product.setVersion(nextVersion(null));
+                productsCache.put(product);
+                productsCache.putCode(product.getCode(), product.getId());
+            });
     }
 
     public CompletableFuture<Product> deleteById(String productId) {
         LOG.info("Delete ProductId: {}", productId);
-        return productsTable.deleteItem(Key.builder()
-            .partitionValue(productId)
-            .build());
+        if (isReservationId(productId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Executor requestContext = RequestContextExecutor.capture();
+        return writeCurrent(productId, null, (current, consistentRead) -> deleteWithReservation(current), requestContext)
+            .whenComplete((productDeleted, throwable) -> {
+                productsCache.invalidate(productId);
+                if (productDeleted != null) {
+                    productsCache.invalidateCode(productDeleted.getCode());
+                }
+            });
     }
 
-    public CompletableFuture<Product> update(Product product, String productId) throws ProductException {
-        LOG.info("Update ProductId: {}", productId);
+    // With an expectedVersion the update only applies to that version of the product (If-Match).
+    public CompletableFuture<Product> update(Product product, String productId, Long expectedVersion) {
+        LOG.info("Update ProductId: {}, expectedVersion: {}", productId, expectedVersion);
+        if (isReservationId(productId)) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, productId));
+        }
+        if (isBlank(product.getCode())) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.PRODUCT_CODE_REQUIRED, productId));
+        }
         product.setId(productId);
-        Product productWithSameCode = checkIfCodeExists(product.getCode()).join();
-        if (productWithSameCode != null && !productWithSameCode.getId().equals(productId)) {
-            throw new ProductException(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS, productWithSameCode.getId());
+        return updateCurrent(productId, expectedVersion, current -> product);
+    }
+
+    // Writes only the attributes present in the patch. Without a code there is no reservation to move, so the
+    // patch is a single UpdateItem that neither reads the product nor looks the code up first.
+    public CompletableFuture<Product> patch(ProductPatchDto patch, String productId, Long expectedVersion) {
+        LOG.info("Patch ProductId: {}, expectedVersion: {}", productId, expectedVersion);
+        if (isReservationId(productId)) {
+            return CompletableFuture.failedFuture(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, productId));
+        }
+        if (patch.code() != null) {
+            if (patch.code().isBlank()) {
+                return CompletableFuture.failedFuture(new ProductException(ProductErrors.PRODUCT_CODE_REQUIRED, productId));
+            }
+            return updateCurrent(productId, expectedVersion, patch::applyTo);
+        }
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> assignments = new ArrayList<>();
+        setIfPresent("productName", patch.name() == null ? null : AttributeValue.fromS(patch.name()), 
+            assignments, names, values);
+        setIfPresent("price", patch.price() == null ? null : AttributeValue.fromN(patch.price().toString()), 
+            assignments, names, values);
+        setIfPresent("model", patch.model() == null ? null : AttributeValue.fromS(patch.model()), 
+            assignments, names, values);
+        setIfPresent("productUrl", patch.url() == null ? null : AttributeValue.fromS(patch.url()), 
+            assignments, names, values);
+        // bumped like VersionedRecordExtension does, so conditional writes planned against the old version fail
+        names.put("#version", "version");
+        values.put(":zero", AttributeValue.fromN("0"));
+        values.put(":one", AttributeValue.fromN("1"));
+        assignments.add("#version = if_not_exists(#version, :zero) + :one");
+        String condition = "attribute_exists(id)";
+        if (expectedVersion != null) {
+            condition += " AND #version = :expectedVersion";
+            values.put(":expectedVersion", AttributeValue.fromN(expectedVersion.toString()));
         }
-        return productsTable.updateItem(
-            UpdateItemEnhancedRequest.builder(Product.class)
+        return dynamoDbAsyncClient.updateItem(UpdateItemRequest.builder()
+                .tableName(productsDdbName)
+                .key(Map.of("id", AttributeValue.fromS(productId)))
+                .updateExpression("SET " + String.join(", ", assignments))
+                .conditionExpression(condition)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .returnValues(ReturnValue.ALL_NEW)
+                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                .build())
+            .handle((response, throwable) -> {
+                if (throwable == null) {
+                    Product productPatched = Product.TABLE_SCHEMA.mapToItem(response.attributes());
+                    productsCache.put(productPatched);
+                    return productPatched;
+                }
+                productsCache.invalidate(productId);
+                if (unwrap(throwable) instanceof ConditionalCheckFailedException failed) {
+                    ProductErrors error = failed.hasItem() && !failed.item().isEmpty() 
+                        ? ProductErrors.PRODUCT_VERSION_MISMATCH : ProductErrors.PRODUCT_NOT_FOUND;
+                    throw new CompletionException(new ProductException(error, productId));
+                }
+                throw asCompletionException(throwable);
+            });
+    }
+
+    private CompletableFuture<Product> updateCurrent(String productId, Long expectedVersion, 
+        Function<Product, Product> updated) {
+        Executor requestContext = RequestContextExecutor.capture();
+        return writeCurrent(productId, expectedVersion, (current, consistentRead) -> {
+                if (current == null) {
+                    throw new CompletionException(new ProductException(ProductErrors.PRODUCT_NOT_FOUND, productId));
+                }
+                if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                    // a cached product may just be behind, only a consistent read settles the mismatch
+                    if (!consistentRead) {
+                        throw new StaleProductException();
+                    }
+                    throw new CompletionException(new ProductException(ProductErrors.PRODUCT_VERSION_MISMATCH, productId));
+                }
+                return updateWithReservation(current, updated.apply(current));
+            }, requestContext)
+            .whenComplete((productUpdated, throwable) -> {
+                if (throwable == null) {
+                    productsCache.put(productUpdated);
+                    productsCache.putCode(productUpdated.getCode(), productId);
+                } else {
+                    productsCache.invalidate(productId);
+                }
+            });
+    }
+
+    // Writes are conditioned on the code and version of the product they were planned against. That product
+    // comes from the cache first; if the condition fails it may have been stale, so the write is planned once
+    // more against a consistent read. The write is told which of the two it got. If the product changes again
+    // between that read and the write, the write lost a race with another one and is rejected as a conflict,
+    // or as a version mismatch when it was made for an expected version.
+    private <T> CompletableFuture<T> writeCurrent(String productId, Long expectedVersion,
+        BiFunction<Product, Boolean, CompletableFuture<T>> write, Executor requestContext) {
+        return getById(productId)
+            .thenComposeAsync(current -> write.apply(current, false), requestContext)
+            .<CompletableFuture<T>>handleAsync((result, throwable) -> {
+                if (throwable == null) {
+                    return CompletableFuture.completedFuture(result);
+                }
+                if (!(unwrap(throwable) instanceof StaleProductException)) {
+                    return CompletableFuture.failedFuture(unwrap(throwable));
+                }
+                LOG.info("Product changed since it was read, retrying with a consistent read: {}", productId);
+                productsCache.invalidate(productId);
+                return loadById(productId, true)
+                    .thenComposeAsync(current -> write.apply(current, true), requestContext)
+                    .exceptionally(retryThrowable -> {
+                        if (unwrap(retryThrowable) instanceof StaleProductException) {
+                            ProductErrors error = expectedVersion != null 
+                                ? ProductErrors.PRODUCT_VERSION_MISMATCH : ProductErrors.PRODUCT_CONCURRENTLY_MODIFIED;
+                            throw new CompletionException(new ProductException(error, productId));
+                        }
+                        throw asCompletionException(retryThrowable);
+                    });
+            }, requestContext)
+            .thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Product> updateWithReservation(Product current, Product product) {
+        Expression currentCode = codeCondition(current.getCode());
+        product.setVersion(current.getVersion());
+        if (Objects.equals(current.getCode(), product.getCode())) {
+            return productsTable.updateItem(UpdateItemEnhancedRequest.builder(Product.class)
+                    .item(product)
+                    .conditionExpression(currentCode)
+                    .build())
+                .exceptionally(throwable -> {
+                    if (unwrap(throwable) instanceof ConditionalCheckFailedException) {
+                        throw new StaleProductException();
+                    }
+                    throw asCompletionException(throwable);
+                });
+        }
+        TransactWriteItemsEnhancedRequest.Builder transaction = TransactWriteItemsEnhancedRequest.builder()
+            .addUpdateItem(productsTable, TransactUpdateItemEnhancedRequest.builder(Product.class)
                 .item(product)
-                .conditionExpression(Expression.builder()
-                    .expression("attribute_exists(id)")
+                .conditionExpression(currentCode)
+                .build())
+            .addPutItem(reservationsTable, reserveCode(product.getCode(), product.getId()));
+        if (current.getCode() != null) {
+            transaction.addDeleteItem(reservationsTable, releaseCode(current.getCode(), current.getId()));
+        }
+        return legacyCodeOwner(product.getCode(), product.getId())
+            .thenCompose(ownerId -> {
+                if (ownerId != null) {
+                    throw new CompletionException(new ProductException(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS, ownerId));
+                }
+                return dynamoDbEnhancedAsyncClient.transactWriteItems(transaction.build());
+            })
+            .handle((v, throwable) -> {
+                if (throwable == null) {
+                    product.setVersion(nextVersion(current.getVersion()));
+                    return product;
+                }
+                if (isConditionFailure(throwable, 0)) {
+                    throw new StaleProductException();
+                }
+                if (isConditionFailure(throwable, 1)) {
+                    throw codeAlreadyExists(throwable, 1);
+                }
+                throw asCompletionException(throwable);
+            });
+    }
+
+    private CompletableFuture<Product> deleteWithReservation(Product current) {
+        if (current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        TransactWriteItemsEnhancedRequest.Builder transaction = TransactWriteItemsEnhancedRequest.builder()
+            .addDeleteItem(productsTable, TransactDeleteItemEnhancedRequest.builder()
+                .key(Key.builder()
+                    .partitionValue(current.getId())
                     .build())
+                .conditionExpression(codeCondition(current.getCode()))
+                .build());
+        if (current.getCode() != null) {
+            transaction.addDeleteItem(reservationsTable, releaseCode(current.getCode(), current.getId()));
+        }
+        return dynamoDbEnhancedAsyncClient.transactWriteItems(transaction.build())
+            .handle((v, throwable) -> {
+                if (throwable == null) {
+                    return current;
+                }
+                if (isConditionFailure(throwable, 0)) {
+                    throw new StaleProductException();
+                }
+                throw asCompletionException(throwable);
+            });
+    }
+
+    public CompletableFuture<List<Product>> getByIds(List<String> productIds) {
+        LOG.info("Get ProductIds: {}", productIds.size());
+        Executor requestContext = RequestContextExecutor.capture();
+        List<Product> products = new ArrayList<>();
+        List<Key> keysToLoad = new ArrayList<>();
+        for (String productId : new LinkedHashSet<>(productIds)) {
+            if (isReservationId(productId)) {
+                continue;
+            }
+            Product cached = productsCache.getIfCached(productId);
+            if (cached != null) {
+                products.add(cached);
+            } else {
+                keysToLoad.add(Key.builder()
+                    .partitionValue(productId)
+                    .build());
+            }
+        }
+        return batchGet(productsTable, keysToLoad, false, requestContext).thenApply(loaded -> {
+            loaded.forEach(productsCache::put);
+            products.addAll(loaded);
+            return products;
+        });
+    }
+
+    // Each product is written together with its code reservation, both conditioned on attribute_not_exists(id),
+    // so a code repeated within the batch or already reserved by another product is reported instead of written,
+    // however the batch races with other writes. A product without a code is reported as FAILED.
+    public CompletableFuture<List<ProductBatchItemResultDto>> createAll(List<Product> products) {
+        LOG.info("Create Products: {}", products.size());
+        return writeAll(products, false);
+    }
+
+    // Creates products or replaces them by id, as a bulk import does. A replaced product is written with the
+    // next version, on the condition that it is still the version read, and the code it no longer has is
+    // released in the same transaction. Only the last of the products with the same id is written; the
+    // earlier ones are reported as SUPERSEDED.
+    public CompletableFuture<List<ProductBatchItemResultDto>> importAll(List<Product> products) {
+        LOG.info("Import Products: {}", products.size());
+        return writeAll(products, true);
+    }
+
+    private CompletableFuture<List<ProductBatchItemResultDto>> writeAll(List<Product> products, boolean upsert) {
+        Executor requestContext = RequestContextExecutor.capture();
+        ProductBatchItemResultDto[] results = new ProductBatchItemResultDto[products.size()];
+        Map<String, Integer> lastIndexById = new HashMap<>();
+        for (int i = 0; i < products.size(); i++) {
+            lastIndexById.put(products.get(i).getId(), i);
+        }
+        Map<String, Product> firstByCode = new HashMap<>();
+        List<PendingWrite> pending = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (isReservationId(product.getId()) || isBlank(product.getCode())) {
+                results[i] = batchResult(i, product, BatchItemStatus.FAILED, null);
+                continue;
+            }
+            if (upsert && lastIndexById.get(product.getId()) != i) {
+                results[i] = batchResult(i, product, BatchItemStatus.SUPERSEDED, null);
+                continue;
+            }
+            Product first = firstByCode.putIfAbsent(product.getCode(), product);
+            if (first != null) {
+                results[i] = batchResult(i, product, BatchItemStatus.CODE_ALREADY_EXISTS, first.getId());
+            } else {
+                pending.add(new PendingWrite(i, product, 0, null));
+            }
+        }
+        return writeRound(pending, upsert, results, requestContext).thenApply(v -> List.of(results));
+    }
+
+    // A round reads the products an upsert replaces, packs the pending products into transactions of up to MAX_TRANSACT_ACTIONS actions, runs them
+    // `batchParallelChunks` at a time and leaves for the next round the products that have to be written again.
+    // DynamoDB rejects a transaction that touches an item twice, so no two products of a round share an item:
+    // a product that would is put off to the next round as well.
+    private CompletableFuture<Void> writeRound(List<PendingWrite> pending, boolean upsert, 
+        ProductBatchItemResultDto[] results, Executor requestContext) {
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return currentProducts(pending, upsert, requestContext).thenComposeAsync(currentById -> {
+            List<PendingWrite> writes = pending.stream()
+                .map(write -> write.against(currentById.get(write.product().getId())))
+                .toList();
+            Map<Integer, CompletableFuture<String>> legacyOwners = new HashMap<>();
+            for (PendingWrite write : writes) {
+                legacyOwners.put(write.index(), write.changesCode() 
+                    ? legacyCodeOwner(write.product().getCode(), write.product().getId())
+                    : CompletableFuture.completedFuture(null));
+            }
+            return CompletableFuture.allOf(legacyOwners.values().toArray(CompletableFuture[]::new))
+                .thenComposeAsync(v -> writeTransactions(writes, legacyOwners, upsert, results, requestContext), requestContext);
+        }, requestContext);
+    }
+
+    // Consistent reads, so that a product written in an earlier round is read with the version it was written with.
+    private CompletableFuture<Map<String, Product>> currentProducts(List<PendingWrite> pending, boolean upsert, 
+        Executor requestContext) {
+        if (!upsert) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        List<Key> keys = pending.stream()
+            .map(write -> Key.builder()
+                .partitionValue(write.product().getId())
+                .build())
+            .toList();
+        return batchGet(productsTable, keys, true, requestContext).thenApply(currents -> {
+            Map<String, Product> currentById = new HashMap<>();
+            currents.forEach(current -> currentById.put(current.getId(), current));
+            return currentById;
+        });
+    }
+
+    private CompletableFuture<Void> writeTransactions(List<PendingWrite> pending, 
+        Map<Integer, CompletableFuture<String>> legacyOwners, boolean upsert, ProductBatchItemResultDto[] results, 
+        Executor requestContext) {
+        WriteRound round = new WriteRound(results, upsert);
+        List<List<PendingWrite>> transactions = new ArrayList<>();
+        Set<String> roundKeys = new HashSet<>();
+        List<PendingWrite> transaction = null;
+        int transactionActions = 0;
+        for (PendingWrite write : pending) {
+            String ownerId = legacyOwners.get(write.index()).join();
+            if (ownerId != null) {
+                round.result(write, BatchItemStatus.CODE_ALREADY_EXISTS, ownerId);
+                continue;
+            }
+            List<String> keys = write.keys();
+            if (keys.stream().anyMatch(roundKeys::contains)) {
+                round.next.add(write.reread());
+                continue;
+            }
+            roundKeys.addAll(keys);
+            if (transaction == null || transactionActions + keys.size() > MAX_TRANSACT_ACTIONS) {
+                transaction = new ArrayList<>();
+                transactions.add(transaction);
+                transactionActions = 0;
+            }
+            transaction.add(write);
+            transactionActions += keys.size();
+        }
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < batchParallelChunks; lane++) {
+            lanes.add(CompletableFuture.completedFuture(null));
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            List<PendingWrite> writes = transactions.get(i);
+            int lane = i % batchParallelChunks;
+            lanes.set(lane, lanes.get(lane).thenComposeAsync(ignored -> writeTransaction(writes, round), requestContext));
+        }
+        return CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+            .thenComposeAsync(ignored -> round.backoffAttempt < 0 
+                ? CompletableFuture.<Void>completedFuture(null) : backoff(round.backoffAttempt), requestContext)
+            .thenComposeAsync(ignored -> writeRound(round.next, upsert, results, requestContext), requestContext);
+    }
+
+    private CompletableFuture<Void> writeTransaction(List<PendingWrite> writes, WriteRound round) {
+        TransactWriteItemsEnhancedRequest.Builder transaction = TransactWriteItemsEnhancedRequest.builder();
+        for (PendingWrite write : writes) {
+            Product product = write.product();
+            Product current = write.current();
+            product.setVersion(nextVersion(current == null ? null : current.getVersion()));
+            transaction.addPutItem(batchProductsTable, TransactPutItemEnhancedRequest.builder(Product.class)
+                    .item(product)
+                    .conditionExpression(current == null ? ITEM_NOT_EXISTS : currentCondition(current))
+                    .build())
+                .addPutItem(batchReservationsTable, round.upsert 
+                    ? keepCode(product.getCode(), product.getId()) : reserveCode(product.getCode(), product.getId()));
+            if (write.releasesCode()) {
+                transaction.addDeleteItem(batchReservationsTable, releaseCode(current.getCode(), current.getId()));
+            }
+        }
+        return batchWriteClient.transactWriteItems(transaction.build()).handle((v, throwable) -> {
+            if (throwable == null) {
+                for (PendingWrite write : writes) {
+                    productsCache.put(write.product());
+                    productsCache.putCode(write.product().getCode(), write.product().getId());
+                    if (write.releasesCode()) {
+                        productsCache.invalidateCode(write.current().getCode());
+                    }
+                    round.result(write, write.current() == null ? BatchItemStatus.CREATED : BatchItemStatus.UPDATED, null);
+                }
+                return null;
+            }
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof TransactionCanceledException canceled && canceled.hasCancellationReasons()) {
+                List<CancellationReason> reasons = canceled.cancellationReasons();
+                // products cancelled only because another one failed are written again as they are
+                boolean othersFailed = !reasons.stream().allMatch(ProductsRepository::notCancelled);
+                int action = 0;
+                for (PendingWrite write : writes) {
+                    List<CancellationReason> productReasons = reasons.subList(action, action + write.keys().size());
+                    action += write.keys().size();
+                    cancelled(write, productReasons, othersFailed, round);
+                }
+                return null;
+            }
+            if (cause instanceof SdkException sdkException && sdkException.retryable()) {
+                LOG.info("TransactWriteItems failed, products: {}", writes.size(), cause);
+                writes.forEach(write -> round.retry(write, true));
+                return null;
+            }
+            throw asCompletionException(throwable);
+        });
+    }
+
+    // The reasons are in the order of the product's actions: the product, its code reservation and, when the
+    // code changes, the release of its old code.
+    private void cancelled(PendingWrite write, List<CancellationReason> reasons, boolean othersFailed, WriteRound round) {
+        CancellationReason reservation = reasons.get(1);
+        if (CONDITIONAL_CHECK_FAILED.equals(reservation.code())) {
+            String existingProductId = reservation.hasItem() && reservation.item().containsKey("productId") 
+                ? reservation.item().get("productId").s() : null;
+            round.result(write, BatchItemStatus.CODE_ALREADY_EXISTS, existingProductId);
+            return;
+        }
+        if (CONDITIONAL_CHECK_FAILED.equals(reasons.get(0).code()) && !round.upsert) {
+            LOG.error("Can not create a product that already exists - productId: [{}]", write.product().getId());
+            round.result(write, BatchItemStatus.FAILED, null);
+            return;
+        }
+        // the product, or the owner of its old code, changed since it was read, so it is read again
+        if (reasons.stream().anyMatch(reason -> CONDITIONAL_CHECK_FAILED.equals(reason.code()))) {
+            round.retry(write, true);
+            return;
+        }
+        if (reasons.stream().allMatch(ProductsRepository::notCancelled)) {
+            round.retry(write, !othersFailed);
+            return;
+        }
+        if (reasons.stream().allMatch(reason -> notCancelled(reason) || RETRYABLE_CANCELLATIONS.contains(reason.code()))) {
+            round.retry(write, true);
+            return;
+        }
+        LOG.error("Product write cancelled - productId: [{}], reasons: [{}]", write.product().getId(), reasons);
+        round.result(write, BatchItemStatus.FAILED, null);
+    }
+
+    // One page of a scan segment, for jobs that page through the table at their own pace.
+    public CompletableFuture<Page<Product>> scanSegmentPage(int segment, int totalSegments, int pageSize,
+        Map<String, AttributeValue> exclusiveStartKey) {
+        AtomicReference<Page<Product>> firstPage = new AtomicReference<>();
+        return productsTable.scan(ScanEnhancedRequest.builder()
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .limit(pageSize)
+                .exclusiveStartKey(exclusiveStartKey)
+                .filterExpression(PRODUCTS_ONLY)
+                .build())
+            .limit(1)
+            .subscribe(firstPage::set)
+            .thenApply(v -> firstPage.get());
+    }
+
+    // Reserves the code of a product written before code reservations existed. Returns the id of the product
+    // that holds the reservation, which is this product's own id once reserved, or null if the product was
+    // deleted or its code changed since it was read, in which case no reservation is left behind for it.
+    public CompletableFuture<String> reserveExistingCode(Product product) {
+        Executor requestContext = RequestContextExecutor.capture();
+        return reservationsTable.putItem(PutItemEnhancedRequest.builder(ProductCodeReservation.class)
+                .item(ProductCodeReservation.of(product.getCode(), product.getId()))
+                .conditionExpression(ITEM_NOT_EXISTS)
+                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                .build())
+            .handle((v, throwable) -> {
+                if (throwable == null) {
+                    return null;
+                }
+                if (unwrap(throwable) instanceof ConditionalCheckFailedException failed) {
+                    return failed.hasItem() && failed.item().containsKey("productId") 
+                        ? failed.item().get("productId").s() : product.getId();
+                }
+                throw asCompletionException(throwable);
+            })
+            .thenComposeAsync(ownerId -> {
+                if (ownerId != null) {
+                    return CompletableFuture.completedFuture(ownerId);
+                }
+                // an update that changed the code before the reservation was written had none to release
+                return loadById(product.getId(), true).thenCompose(current -> {
+                    if (current != null && product.getCode().equals(current.getCode())) {
+                        return CompletableFuture.completedFuture(product.getId());
+                    }
+                    LOG.info("Product changed while reserving its code - productId: [{}], code: [{}]", 
+                        product.getId(), product.getCode());
+                    return reservationsTable.deleteItem(DeleteItemEnhancedRequest.builder()
+                            .key(Key.builder()
+                                .partitionValue(ProductCodeReservation.idFor(product.getCode()))
+                                .build())
+                            .conditionExpression(Expression.builder()
+                                .expression("productId = :productId")
+                                .putExpressionValue(":productId", AttributeValue.fromS(product.getId()))
+                                .build())
+                            .build())
+                        .<String>handle((deleted, deleteThrowable) -> {
+                            if (deleteThrowable != null 
+                                && !(unwrap(deleteThrowable) instanceof ConditionalCheckFailedException)) {
+                                throw asCompletionException(deleteThrowable);
+                            }
+                            return null;
+                        });
+                });
+            }, requestContext);
+    }
+
+    private <T> CompletableFuture<List<T>> batchGet(DynamoDbAsyncTable<T> table, List<Key> keys, boolean consistentRead, 
+        Executor requestContext) {
+        List<CompletableFuture<List<T>>> chunks = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += MAX_BATCH_GET_KEYS) {
+            List<Key> chunk = keys.subList(from, Math.min(keys.size(), from + MAX_BATCH_GET_KEYS));
+            chunks.add(batchGetChunk(table, chunk, consistentRead, 0, requestContext));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+            .thenApply(v -> chunks.stream()
+                .flatMap(chunk -> chunk.join().stream())
+                .toList());
+    }
+
+    private <T> CompletableFuture<List<T>> batchGetChunk(DynamoDbAsyncTable<T> table, List<Key> keys, 
+        boolean consistentRead, int attempt, Executor requestContext) {
+        ReadBatch.Builder<T> readBatch = ReadBatch.builder(table.tableSchema().itemType().rawClass())
+            .mappedTableResource(table);
+        keys.forEach(key -> readBatch.addGetItem(GetItemEnhancedRequest.builder()
+            .key(key)
+            .consistentRead(consistentRead)
+            .build()));
+        List<T> found = new ArrayList<>();
+        List<Key> unprocessed = new ArrayList<>();
+        // only the first page: unprocessed keys are retried here, with backoff, instead of by the paginator
+        return dynamoDbEnhancedAsyncClient.batchGetItem(BatchGetItemEnhancedRequest.builder()
+                .readBatches(readBatch.build())
+                .build())
+            .limit(1)
+            .subscribe(page -> {
+                found.addAll(page.resultsForTable(table));
+                unprocessed.addAll(page.unprocessedKeysForTable(table));
+            })
+            .thenComposeAsync(v -> {
+                if (unprocessed.isEmpty()) {
+                    return CompletableFuture.completedFuture(found);
+                }
+                if (attempt + 1 >= batchMaxAttempts) {
+                    return CompletableFuture.failedFuture(new IllegalStateException(
+                        "BatchGetItem left " + unprocessed.size() + " keys unprocessed"));
+                }
+                LOG.info("BatchGetItem unprocessed keys: {}, attempt: {}", unprocessed.size(), attempt + 1);
+                return backoff(attempt)
+                    .thenComposeAsync(ignored -> batchGetChunk(table, unprocessed, consistentRead, attempt + 1, requestContext), requestContext)
+                    .thenApply(rest -> {
+                        found.addAll(rest);
+                        return found;
+                    });
+            }, requestContext);
+    }
+
+    private CompletableFuture<Void> backoff(int attempt) {
+        long delayMs = Math.min(batchMaxBackoffMs, batchBaseBackoffMs << Math.min(attempt, 20));
+        long jitteredDelayMs = ThreadLocalRandom.current().nextLong(delayMs / 2, delayMs + 1);
+        return CompletableFuture.runAsync(() -> { }, 
+            CompletableFuture.delayedExecutor(jitteredDelayMs, TimeUnit.MILLISECONDS));
+    }
+
+    private static ProductBatchItemResultDto batchResult(int index, Product product, BatchItemStatus status, 
+        String existingProductId) {
+        return new ProductBatchItemResultDto(index, product.getId(), product.getCode(), status, existingProductId);
+    }
+
+    private TransactPutItemEnhancedRequest<ProductCodeReservation> reserveCode(String code, String productId) {
+        return TransactPutItemEnhancedRequest.builder(ProductCodeReservation.class)
+            .item(ProductCodeReservation.of(code, productId))
+            .conditionExpression(ITEM_NOT_EXISTS)
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build();
+    }
+
+    // For writes that replace a product by id, a reservation the product already holds is written again.
+    private TransactPutItemEnhancedRequest<ProductCodeReservation> keepCode(String code, String productId) {
+        return TransactPutItemEnhancedRequest.builder(ProductCodeReservation.class)
+            .item(ProductCodeReservation.of(code, productId))
+            .conditionExpression(Expression.builder()
+                .expression("attribute_not_exists(id) OR productId = :productId")
+                .putExpressionValue(":productId", AttributeValue.fromS(productId))
+                .build())
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build();
+    }
+
+    // Products written before reservations existed have none, so a missing reservation is fine to release.
+    private TransactDeleteItemEnhancedRequest releaseCode(String code, String productId) {
+        return TransactDeleteItemEnhancedRequest.builder()
+            .key(Key.builder()
+                .partitionValue(ProductCodeReservation.idFor(code))
+                .build())
+            .conditionExpression(Expression.builder()
+                .expression("attribute_not_exists(id) OR productId = :productId")
+                .putExpressionValue(":productId", AttributeValue.fromS(productId))
+                .build())
+            .build();
+    }
+
+    // Code reservations share the table with products, so no by-id entry point may reach one: reading it
+    // would return a reservation as a product, and writing or deleting it would free its code.
+    private static boolean isReservationId(String productId) {
+        return productId.startsWith(ProductCodeReservation.ID_PREFIX);
+    }
+
+    // Every product reserves its code, so one without a code would reserve `CODE#null` for all such products.
+    private static boolean isBlank(String code) {
+        return code == null || code.isBlank();
+    }
+
+    // the version VersionedRecordExtension writes after `version`; items from before versioning have none
+    private static Long nextVersion(Long version) {
+        return version == null ? 1L : version + 1;
+    }
+
+    private static void setIfPresent(String attribute, AttributeValue value, List<String> assignments, 
+        Map<String, String> names, Map<String, AttributeValue> values) {
+        if (value == null) {
+            return;
+        }
+        names.put("#" + attribute, attribute);
+        values.put(":" + attribute, value);
+        assignments.add("#" + attribute + " = :" + attribute);
+    }
+
+    private static Expression codeCondition(String code) {
+        if (code == null) {
+            return Expression.builder()
+                .expression("attribute_exists(id) AND attribute_not_exists(#code)")
+                .putExpressionName("#code", "code")
+                .build();
+        }
+        return Expression.builder()
+            .expression("attribute_exists(id) AND #code = :currentCode")
+            .putExpressionName("#code", "code")
+            .putExpressionValue(":currentCode", AttributeValue.fromS(code))
+            .build();
+    }
+
+    // The product is still the one read: same code and version, or no version for items from before versioning.
+    private static Expression currentCondition(Product current) {
+        Expression version = current.getVersion() == null
+            ? Expression.builder()
+                .expression("attribute_not_exists(#version)")
+                .putExpressionName("#version", "version")
                 .build()
-        );
+            : Expression.builder()
+                .expression("#version = :currentVersion")
+                .putExpressionName("#version", "version")
+                .putExpressionValue(":currentVersion", AttributeValue.fromN(current.getVersion().toString()))
+                .build();
+        return Expression.join(codeCondition(current.getCode()), version, " AND ");
+    }
+
+    private static boolean isConditionFailure(Throwable throwable, int actionIndex) {
+        if (unwrap(throwable) instanceof TransactionCanceledException canceled && canceled.hasCancellationReasons()) {
+            List<CancellationReason> reasons = canceled.cancellationReasons();
+            return reasons.size() > actionIndex 
+                && CONDITIONAL_CHECK_FAILED.equals(reasons.get(actionIndex).code());
+        }
+        return false;
+    }
+
+    private static boolean notCancelled(CancellationReason reason) {
+        return reason.code() == null || NO_CANCELLATION.equals(reason.code());
+    }
+
+    private static CompletionException codeAlreadyExists(Throwable throwable, int actionIndex) {
+        CancellationReason reason = ((TransactionCanceledException) unwrap(throwable))
+            .cancellationReasons().get(actionIndex);
+        String existingProductId = reason.hasItem() && reason.item().containsKey("productId") 
+            ? reason.item().get("productId").s() : null;
+        return new CompletionException(new ProductException(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS, existingProductId));
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null 
+            ? throwable.getCause() : throwable;
+    }
+
+    private static CompletionException asCompletionException(Throwable throwable) {
+        return throwable instanceof CompletionException completionException 
+            ? completionException : new CompletionException(throwable);
+    }
+
+    // A product of a batch write still to be written, the number of times writing it has failed so far and,
+    // for an upsert, the product it replaces as read in the current round.
+    private record PendingWrite(int index, Product product, int attempt, Product current) {
+
+        PendingWrite against(Product current) {
+            return new PendingWrite(index, product, attempt, current);
+        }
+
+        PendingWrite reread() {
+            return new PendingWrite(index, product, attempt, null);
+        }
+
+        boolean changesCode() {
+            return current == null || !Objects.equals(current.getCode(), product.getCode());
+        }
+
+        boolean releasesCode() {
+            return current != null && current.getCode() != null && changesCode();
+        }
+
+        // the items the product's transaction actions write
+        List<String> keys() {
+            return releasesCode()
+                ? List.of(product.getId(), ProductCodeReservation.idFor(product.getCode()), 
+                    ProductCodeReservation.idFor(current.getCode()))
+                : List.of(product.getId(), ProductCodeReservation.idFor(product.getCode()));
+        }
+    }
+
+    // What the transactions of one batch write round leave behind: results, and the products for the next round.
+    private final class WriteRound {
+        private final ProductBatchItemResultDto[] results;
+        private final boolean upsert;
+        private final List<PendingWrite> next = new ArrayList<>();
+        // the attempt the next round backs off for, -1 if no write failed in a way worth backing off for
+        private int backoffAttempt = -1;
+
+        private WriteRound(ProductBatchItemResultDto[] results, boolean upsert) {
+            this.results = results;
+            this.upsert = upsert;
+        }
+
+        private synchronized void result(PendingWrite write, BatchItemStatus status, String existingProductId) {
+            results[write.index()] = batchResult(write.index(), write.product(), status, existingProductId);
+        }
+
+        private synchronized void retry(PendingWrite write, boolean failed) {
+            if (!failed) {
+                next.add(write.reread());
+                return;
+            }
+            if (write.attempt() + 1 >= batchMaxAttempts) {
+                LOG.error("Product could not be written after {} attempts - productId: [{}]", 
+                    write.attempt() + 1, write.product().getId());
+                result(write, BatchItemStatus.FAILED, null);
+                return;
+            }
+            next.add(new PendingWrite(write.index(), write.product(), write.attempt() + 1, null));
+            backoffAttempt = Math.max(backoffAttempt, write.attempt());
+        }
+    }
+
+    // Signals that a conditional write found the product different from what the write was planned against.
+    private static final class StaleProductException extends RuntimeException {
+        StaleProductException() {
+            super(null, null, false, false);
+        }
     }
 }
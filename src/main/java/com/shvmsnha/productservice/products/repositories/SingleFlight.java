@@ -0,0 +1,57 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Coalesces concurrent loads of the same key: while a load is in flight, callers for that key get a copy of
+// its future instead of starting another one, so one caller cancelling does not affect the others. The key
+// is released as soon as the load completes, so nothing is cached. Counted as `products.singleflight.calls`,
+// tagged with the lookup and whether the call was issued or coalesced.
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter issued;
+    private final Counter coalesced;
+
+    SingleFlight(MeterRegistry meterRegistry, String lookup) {
+        this.issued = counter(meterRegistry, lookup, "issued");
+        this.coalesced = counter(meterRegistry, lookup, "coalesced");
+    }
+
+    CompletableFuture<V> load(K key, Function<K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+        issued.increment();
+        try {
+            loader.apply(key).whenComplete((value, throwable) -> {
+                inFlight.remove(key, call);
+                if (throwable != null) {
+                    call.completeExceptionally(throwable);
+                } else {
+                    call.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+        }
+        return call.copy();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String lookup, String outcome) {
+        return Counter.builder("products.singleflight.calls")
+            .description("DynamoDB lookups issued, or coalesced into one already in flight")
+            .tag("lookup", lookup)
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,77 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+// Hands scan pages over to the writing thread, never requesting more than `prefetch` pages ahead of it.
+class PageQueueSubscriber implements Subscriber<Page<Product>> {
+
+    private static final Object COMPLETE = new Object();
+
+    private final int prefetch;
+    private final BlockingQueue<Object> signals;
+    private volatile Subscription subscription;
+
+    PageQueueSubscriber(int prefetch) {
+        this.prefetch = prefetch;
+        // one extra slot for the terminal signal
+        this.signals = new ArrayBlockingQueue<>(prefetch + 1);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(this.prefetch);
+    }
+
+    @Override
+    public void onNext(Page<Product> page) {
+        this.signals.offer(page);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.signals.offer(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.signals.offer(COMPLETE);
+    }
+
+    @SuppressWarnings("unchecked")
+    Page<Product> next() throws IOException {
+        Object signal;
+        try {
+            signal = this.signals.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new InterruptedIOException("Interrupted while waiting for the next products page");
+        }
+        if (signal == COMPLETE) {
+            return null;
+        }
+        if (signal instanceof Throwable throwable) {
+            throw new IOException("Products scan failed", throwable);
+        }
+        this.subscription.request(1);
+        return (Page<Product>) signal;
+    }
+
+    void cancel() {
+        Subscription current = this.subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
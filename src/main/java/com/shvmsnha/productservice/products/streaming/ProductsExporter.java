@@ -0,0 +1,80 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.shvmsnha.productservice.products.dto.ExportReportDto;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+@Service
+public class ProductsExporter {
+
+    private static final Logger LOG = LogManager.getLogger(ProductsExporter.class);
+    private static final int FILE_BUFFER_SIZE = 1 << 16;
+
+    private final ProductsRepository productsRepository;
+    private final ObjectWriter productWriter;
+    private final Semaphore segmentPermits;
+    private final int defaultSegments;
+    private final int maxSegments;
+    private final int pageSize;
+    private final Path exportDirectory;
+
+    @Autowired
+    public ProductsExporter(ProductsRepository productsRepository,
+        ObjectMapper objectMapper,
+        @Value("${products.export.max-concurrent-segments}") int maxConcurrentSegments,
+        @Value("${products.export.default-segments}") int defaultSegments,
+        @Value("${products.export.max-segments}") int maxSegments,
+        @Value("${products.export.page-size}") int pageSize,
+        @Value("${products.export.directory}") String exportDirectory
+    ) {
+        this.productsRepository = productsRepository;
+        this.productWriter = ProductsNdjsonStream.productLineWriter(objectMapper);
+        this.segmentPermits = new Semaphore(Math.max(1, maxConcurrentSegments));
+        this.defaultSegments = defaultSegments;
+        this.maxSegments = maxSegments;
+        this.pageSize = pageSize;
+        this.exportDirectory = Path.of(exportDirectory);
+    }
+
+    public SegmentedScanExport newExport(Integer segments) {
+        int totalSegments = segments == null ? defaultSegments : Math.max(1, Math.min(segments, maxSegments));
+        return new SegmentedScanExport(
+            segment -> productsRepository.scanSegment(segment, totalSegments, pageSize),
+            totalSegments, segmentPermits, productWriter);
+    }
+
+    public ExportReportDto exportToFile(SegmentedScanExport export) throws IOException {
+        Files.createDirectories(exportDirectory);
+        // exports started in the same millisecond must not write to the same file
+        Path target = exportDirectory.resolve("products-" + Instant.now().toEpochMilli() + "-" + UUID.randomUUID() + ".ndjson");
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        ExportReportDto report;
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(partial), FILE_BUFFER_SIZE)) {
+            report = export.writeTo(outputStream);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Products exported to file: [{}] - items: [{}], itemsPerSecond: [{}]",
+            target, report.items(), report.itemsPerSecond());
+        return report.withFile(target.toString());
+    }
+}
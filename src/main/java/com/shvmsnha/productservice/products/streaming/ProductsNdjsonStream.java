@@ -0,0 +1,77 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Entity;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.models.Product;
+
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+public class ProductsNdjsonStream implements StreamingResponseBody {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final Logger LOG = LogManager.getLogger(ProductsNdjsonStream.class);
+    static final byte NEWLINE = '\n';
+
+    private final SdkPublisher<Page<Product>> pages;
+    private final ObjectWriter productWriter;
+    private final int prefetchPages;
+    private final Entity traceEntity;
+
+    public ProductsNdjsonStream(SdkPublisher<Page<Product>> pages, ObjectMapper objectMapper, int prefetchPages) {
+        this.pages = pages;
+        this.productWriter = productLineWriter(objectMapper);
+        this.prefetchPages = prefetchPages;
+        this.traceEntity = AWSXRay.getTraceEntity();
+    }
+
+    // Writes one product per call without closing or flushing the target; callers flush per page.
+    static ObjectWriter productLineWriter(ObjectMapper objectMapper) {
+        return objectMapper.writerFor(ProductDto.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (this.traceEntity != null) {
+            AWSXRay.setTraceEntity(this.traceEntity);
+        }
+        PageQueueSubscriber subscriber = new PageQueueSubscriber(this.prefetchPages);
+        long itemsWritten = 0;
+        try {
+            this.pages.subscribe(subscriber);
+            Page<Product> page;
+            while ((page = subscriber.next()) != null) {
+                for (Product product : page.items()) {
+                    this.productWriter.writeValue(outputStream, new ProductDto(product));
+                    outputStream.write(NEWLINE);
+                    itemsWritten++;
+                }
+                outputStream.flush();
+            }
+            LOG.info("Products stream completed - items: [{}]", itemsWritten);
+        } catch (IOException | RuntimeException e) {
+            // a client that went away or a product that failed to serialize: stop the scan either way
+            subscriber.cancel();
+            LOG.error("Products stream aborted after [{}] items", itemsWritten);
+            throw e;
+        } finally {
+            AWSXRay.clearTraceEntity();
+        }
+    }
+}
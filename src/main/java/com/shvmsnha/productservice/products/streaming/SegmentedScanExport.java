@@ -0,0 +1,211 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.amazonaws.xray.AWSXRay;
+import com.amazonaws.xray.entities.Entity;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.shvmsnha.productservice.products.dto.ExportReportDto;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.dto.SegmentReportDto;
+import com.shvmsnha.productservice.products.models.Product;
+
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+// Runs a parallel scan split into `totalSegments` segments and merges every page into a single NDJSON output.
+// Each segment keeps at most one page in flight, and segments only start while permits are available,
+// so the number of concurrent scan requests never exceeds the shared concurrency cap.
+public class SegmentedScanExport {
+
+    private static final Logger LOG = LogManager.getLogger(SegmentedScanExport.class);
+    private static final Object COMPLETE = new Object();
+
+    private final IntFunction<SdkPublisher<Page<Product>>> segmentScan;
+    private final int totalSegments;
+    private final Semaphore segmentPermits;
+    private final ObjectWriter productWriter;
+    private final Entity traceEntity;
+    private final BlockingQueue<SegmentSignal> signals;
+
+    public SegmentedScanExport(IntFunction<SdkPublisher<Page<Product>>> segmentScan, int totalSegments,
+        Semaphore segmentPermits, ObjectWriter productWriter) {
+        this.segmentScan = segmentScan;
+        this.totalSegments = totalSegments;
+        this.segmentPermits = segmentPermits;
+        this.productWriter = productWriter;
+        this.traceEntity = AWSXRay.getTraceEntity();
+        // each segment holds at most one page plus its terminal signal
+        this.signals = new ArrayBlockingQueue<>(totalSegments * 2);
+    }
+
+    public ExportReportDto writeTo(OutputStream outputStream) throws IOException {
+        if (this.traceEntity != null) {
+            AWSXRay.setTraceEntity(this.traceEntity);
+        }
+        long startNanos = System.nanoTime();
+        List<SegmentSubscriber> running = new ArrayList<>();
+        List<SegmentReportDto> reports = new ArrayList<>();
+        int nextSegment = 0;
+        try {
+            while (nextSegment < this.totalSegments || !running.isEmpty()) {
+                while (nextSegment < this.totalSegments && acquirePermit(running.isEmpty())) {
+                    SegmentSubscriber subscriber = new SegmentSubscriber(nextSegment++);
+                    running.add(subscriber);
+                    this.segmentScan.apply(subscriber.segment).subscribe(subscriber);
+                }
+                SegmentSignal signal = takeSignal(running);
+                SegmentSubscriber source = signal.source();
+                if (signal.payload() instanceof Page<?> page) {
+                    writePage(outputStream, source, page);
+                    source.subscription.request(1);
+                    continue;
+                }
+                running.remove(source);
+                this.segmentPermits.release();
+                if (signal.payload() instanceof Throwable throwable) {
+                    throw new IOException("Products scan segment " + source.segment + " failed", throwable);
+                }
+                SegmentReportDto report = source.report();
+                LOG.info("Export segment [{}/{}] completed - items: [{}], consumedCapacity: [{}], itemsPerSecond: [{}]",
+                    report.segment(), this.totalSegments, report.items(), report.consumedCapacity(), report.itemsPerSecond());
+                reports.add(report);
+            }
+            outputStream.flush();
+        } catch (IOException | RuntimeException e) {
+            // a write or a scan that fails must not keep the other segments running or their permits taken
+            for (SegmentSubscriber subscriber : running) {
+                subscriber.cancel();
+                this.segmentPermits.release();
+            }
+            throw e;
+        } finally {
+            AWSXRay.clearTraceEntity();
+        }
+        return summarize(reports, System.nanoTime() - startNanos);
+    }
+
+    private boolean acquirePermit(boolean idle) throws InterruptedIOException {
+        if (!idle) {
+            return this.segmentPermits.tryAcquire();
+        }
+        // nothing in flight to drain, so it is safe to wait for another export to free a permit
+        try {
+            this.segmentPermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an export segment permit");
+        }
+    }
+
+    private SegmentSignal takeSignal(List<SegmentSubscriber> running) throws InterruptedIOException {
+        try {
+            return this.signals.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (SegmentSubscriber subscriber : running) {
+                subscriber.cancel();
+                this.segmentPermits.release();
+            }
+            running.clear();
+            throw new InterruptedIOException("Interrupted while waiting for the next export page");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writePage(OutputStream outputStream, SegmentSubscriber source, Page<?> page) throws IOException {
+        Page<Product> productsPage = (Page<Product>) page;
+        for (Product product : productsPage.items()) {
+            this.productWriter.writeValue(outputStream, new ProductDto(product));
+            outputStream.write(ProductsNdjsonStream.NEWLINE);
+        }
+        outputStream.flush();
+        source.items += productsPage.items().size();
+        source.pages++;
+        if (productsPage.consumedCapacity() != null && productsPage.consumedCapacity().capacityUnits() != null) {
+            source.consumedCapacity += productsPage.consumedCapacity().capacityUnits();
+        }
+    }
+
+    private ExportReportDto summarize(List<SegmentReportDto> reports, long elapsedNanos) {
+        long items = 0;
+        double consumedCapacity = 0;
+        for (SegmentReportDto report : reports) {
+            items += report.items();
+            consumedCapacity += report.consumedCapacity();
+        }
+        long durationMs = elapsedNanos / 1_000_000;
+        return new ExportReportDto(this.totalSegments, items, consumedCapacity, durationMs,
+            itemsPerSecond(items, elapsedNanos), List.copyOf(reports), null);
+    }
+
+    private static double itemsPerSecond(long items, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : items * 1_000_000_000d / elapsedNanos;
+    }
+
+    private record SegmentSignal(SegmentSubscriber source, Object payload) {
+    }
+
+    private class SegmentSubscriber implements Subscriber<Page<Product>> {
+
+        private final int segment;
+        private final long startNanos = System.nanoTime();
+        private volatile Subscription subscription;
+        // only touched by the writing thread
+        private long items;
+        private long pages;
+        private double consumedCapacity;
+
+        SegmentSubscriber(int segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Page<Product> page) {
+            signals.offer(new SegmentSignal(this, page));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signals.offer(new SegmentSignal(this, throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            signals.offer(new SegmentSignal(this, COMPLETE));
+        }
+
+        void cancel() {
+            Subscription current = this.subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        SegmentReportDto report() {
+            long elapsedNanos = System.nanoTime() - this.startNanos;
+            return new SegmentReportDto(this.segment, this.items, this.pages, this.consumedCapacity,
+                elapsedNanos / 1_000_000, itemsPerSecond(this.items, elapsedNanos));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.shvmsnha.productservice;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Starts the unpacked application RUNS times per startup mode and prints the time from process start to
+// the first 200 from /actuator/health. Skipped unless `./gradlew cdsArchive` has created the unpacked app
+// and its archive; run with `./gradlew cdsArchive benchmark --tests '*StartupBenchmark'`.
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = 5;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+    private static Path appDir;
+    private static Path cdsArchive;
+    private static String java;
+    private static HttpClient httpClient;
+
+    @BeforeAll
+    static void locateApp() {
+        appDir = Path.of(System.getProperty("startup.app.dir", "build/libs/app"));
+        cdsArchive = Path.of(System.getProperty("startup.cds.archive", "build/libs/app.jsa"));
+        java = System.getProperty("startup.java", Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        assumeTrue(Files.exists(appDir.resolve("app.jar")) && Files.exists(cdsArchive),
+            "Run ./gradlew cdsArchive first, " + appDir + " or " + cdsArchive + " is missing");
+        httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(100))
+            .build();
+    }
+
+    @Test
+    void jit() throws Exception {
+        run("JIT, no AOT, no AppCDS");
+    }
+
+    @Test
+    void aot() throws Exception {
+        run("Spring AOT", "-Dspring.aot.enabled=true");
+    }
+
+    @Test
+    void aotWithAppCds() throws Exception {
+        run("Spring AOT + AppCDS", "-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + cdsArchive.toAbsolutePath());
+    }
+
+    private void run(String name, String... jvmArgs) throws Exception {
+        long[] startupNanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            startupNanos[i] = timeToFirstSuccessfulRequest(jvmArgs);
+        }
+        Arrays.sort(startupNanos);
+        System.out.printf("[%s] time to first successful request over %d runs: min %.0f ms, median %.0f ms, max %.0f ms%n",
+            name, RUNS, startupNanos[0] / 1e6, startupNanos[RUNS / 2] / 1e6, startupNanos[RUNS - 1] / 1e6);
+    }
+
+    private static long timeToFirstSuccessfulRequest(String... jvmArgs) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(List.of(jvmArgs));
+        command.addAll(List.of("-jar", "app.jar", "--server.port=" + port));
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+            .timeout(Duration.ofSeconds(1))
+            .build();
+        long startNanos = System.nanoTime();
+        Process app = new ProcessBuilder(command)
+            .directory(appDir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            while (System.nanoTime() - startNanos < STARTUP_TIMEOUT.toNanos()) {
+                if (!app.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + app.exitValue() + " during startup");
+                }
+                try {
+                    if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return System.nanoTime() - startNanos;
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Application did not answer within " + STARTUP_TIMEOUT);
+        } finally {
+            app.destroy();
+            if (!app.waitFor(10, TimeUnit.SECONDS)) {
+                app.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.shvmsnha.productservice.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.xray.strategy.sampling.SamplingRequest;
+
+class AdaptiveSamplingStrategyTests {
+
+    private static final int TARGET = 5;
+    // many times the target, and quickly enough that they all land in the same second
+    private static final int BURST = 1000;
+
+    private final AdaptiveSamplingStrategy strategy =
+        new AdaptiveSamplingStrategy(TARGET, Set.of("/actuator/health", "/actuator/prometheus"));
+
+    @Test
+    void ignoredPathsAreNeverSampled() {
+        assertThat(IntStream.range(0, BURST).filter(i -> trace("/actuator/health"))).isEmpty();
+        // and they do not use up the traces of the second
+        assertThat(trace("/api/products")).isTrue();
+    }
+
+    @Test
+    void firstRequestsOfASecondAreTracedUpToTheTarget() {
+        // nothing was seen before, so every request is traced until the target is reached
+        for (int i = 0; i < TARGET; i++) {
+            assertThat(trace("/api/products")).isTrue();
+        }
+
+        assertThat(traced(BURST)).isZero();
+    }
+
+    @Test
+    void windowRollsOverAfterASecond() throws InterruptedException {
+        traced(BURST);
+
+        Thread.sleep(1100);
+
+        // the first request of the next second is always traced, whatever the rate before it
+        assertThat(trace("/api/products")).isTrue();
+        assertThat(traced(BURST)).isLessThan(TARGET);
+    }
+
+    @Test
+    void requestsWithoutAUrlAreSampled() {
+        assertThat(strategy.shouldTrace(new SamplingRequest("productsservice", null, null, null, null))
+            .isSampled()).isTrue();
+    }
+
+    private boolean trace(String url) {
+        return strategy.shouldTrace(new SamplingRequest("productsservice", "localhost", url, "GET", null)).isSampled();
+    }
+
+    private long traced(int requests) {
+        return IntStream.range(0, requests).filter(i -> trace("/api/products")).count();
+    }
+}
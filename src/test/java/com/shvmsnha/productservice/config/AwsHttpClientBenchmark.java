@@ -0,0 +1,198 @@
+package com.shvmsnha.productservice.config;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.ResourceInUseException;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+
+// GetItem load against DynamoDB Local (-Ddynamodb.endpoint, default http://localhost:8000) at CONCURRENCY
+// in-flight calls, once per transport setting, printing throughput, p99 and failed calls.
+// Skipped when DynamoDB Local is not reachable; run with `./gradlew benchmark`.
+@Tag("benchmark")
+class AwsHttpClientBenchmark {
+
+    private static final String TABLE = "products-transport-benchmark";
+    private static final int ITEMS = 100;
+    private static final int CONCURRENCY = 500;
+    private static final int WARMUP_REQUESTS = 2000;
+    private static final int REQUESTS = 20000;
+    private static final AwsHttpClientSettings BASELINE = new AwsHttpClientSettings("netty", 50, 10000,
+        Duration.ofSeconds(10), Duration.ofSeconds(2), Duration.ofSeconds(60), false, Duration.ofSeconds(30));
+
+    private static URI endpoint;
+
+    @BeforeAll
+    static void createTable() {
+        endpoint = URI.create(System.getProperty("dynamodb.endpoint", "http://localhost:8000"));
+        SdkAsyncHttpClient httpClient = BASELINE.build();
+        try (DynamoDbAsyncClient client = client(httpClient)) {
+            try {
+                client.listTables().get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                assumeTrue(false, "DynamoDB Local is not reachable at " + endpoint);
+            }
+            try {
+                client.createTable(builder -> builder.tableName(TABLE)
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .keySchema(KeySchemaElement.builder().attributeName("id").keyType(KeyType.HASH).build())
+                    .attributeDefinitions(AttributeDefinition.builder()
+                        .attributeName("id")
+                        .attributeType(ScalarAttributeType.S)
+                        .build()))
+                    .join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof ResourceInUseException)) {
+                    throw e;
+                }
+            }
+            List<CompletableFuture<?>> puts = new ArrayList<>();
+            for (int i = 0; i < ITEMS; i++) {
+                Map<String, AttributeValue> item = item(Integer.toString(i));
+                puts.add(client.putItem(builder -> builder.tableName(TABLE).item(item)));
+            }
+            CompletableFuture.allOf(puts.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @AfterAll
+    static void deleteTable() {
+        if (endpoint == null) {
+            return;
+        }
+        SdkAsyncHttpClient httpClient = BASELINE.build();
+        try (DynamoDbAsyncClient client = client(httpClient)) {
+            client.deleteTable(builder -> builder.tableName(TABLE)).exceptionally(throwable -> null).join();
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    void nettySdkDefaultPool() {
+        run("netty, maxConcurrency 50 (SDK default)", BASELINE);
+    }
+
+    @Test
+    void nettyLargerPool() {
+        run("netty, maxConcurrency 200", BASELINE.withMaxConcurrency(200));
+    }
+
+    @Test
+    void nettyBoundedPendingAcquires() {
+        run("netty, maxConcurrency 200, maxPendingConnectionAcquires 100, acquisition timeout 100ms",
+            new AwsHttpClientSettings("netty", 200, 100, Duration.ofMillis(100), Duration.ofSeconds(2),
+                Duration.ofSeconds(60), false, Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void nettyKeepAliveShortIdle() {
+        run("netty, maxConcurrency 200, tcpKeepAlive, connectionMaxIdleTime 1s",
+            new AwsHttpClientSettings("netty", 200, 10000, Duration.ofSeconds(10), Duration.ofSeconds(2),
+                Duration.ofSeconds(1), true, Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void crt() {
+        run("crt, maxConcurrency 200, tcpKeepAlive",
+            new AwsHttpClientSettings("crt", 200, 10000, Duration.ofSeconds(10), Duration.ofSeconds(2),
+                Duration.ofSeconds(60), true, Duration.ofSeconds(30)));
+    }
+
+    private void run(String name, AwsHttpClientSettings settings) {
+        SdkAsyncHttpClient httpClient = settings.build();
+        try (DynamoDbAsyncClient client = client(httpClient)) {
+            load(client, WARMUP_REQUESTS);
+            AtomicInteger failures = new AtomicInteger();
+            long startNanos = System.nanoTime();
+            long[] latenciesNanos = load(client, REQUESTS, failures);
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            Arrays.sort(latenciesNanos);
+            System.out.printf("[%s] %d GetItem at concurrency %d: %.0f req/s, p50 %.1f ms, p99 %.1f ms, failed %d%n",
+                name, REQUESTS, CONCURRENCY, REQUESTS / elapsedSeconds, percentileMs(latenciesNanos, 0.50),
+                percentileMs(latenciesNanos, 0.99), failures.get());
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    private static long[] load(DynamoDbAsyncClient client, int requests) {
+        return load(client, requests, new AtomicInteger());
+    }
+
+    private static long[] load(DynamoDbAsyncClient client, int requests, AtomicInteger failures) {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        long[] latenciesNanos = new long[requests];
+        List<CompletableFuture<?>> calls = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquireUninterruptibly();
+            int index = i;
+            long sentNanos = System.nanoTime();
+            calls.add(client.getItem(builder -> builder.tableName(TABLE)
+                    .key(Map.of("id", AttributeValue.fromS(Integer.toString(index % ITEMS)))))
+                .whenComplete((response, throwable) -> {
+                    latenciesNanos[index] = System.nanoTime() - sentNanos;
+                    if (throwable != null) {
+                        failures.incrementAndGet();
+                    }
+                    inFlight.release();
+                }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(throwable -> null).join();
+        return latenciesNanos;
+    }
+
+    private static DynamoDbAsyncClient client(SdkAsyncHttpClient httpClient) {
+        return DynamoDbAsyncClient.builder()
+            .endpointOverride(endpoint)
+            .region(Region.AP_NORTHEAST_2)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+            .httpClient(httpClient)
+            .overrideConfiguration(ClientOverrideConfiguration.builder()
+                .apiCallAttemptTimeout(Duration.ofSeconds(2))
+                .build())
+            .build();
+    }
+
+    private static Map<String, AttributeValue> item(String id) {
+        return Map.of(
+            "id", AttributeValue.fromS(id),
+            "productName", AttributeValue.fromS("product " + id),
+            "code", AttributeValue.fromS("code" + id),
+            "price", AttributeValue.fromN("10.5"));
+    }
+
+    private static double percentileMs(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,148 @@
+package com.shvmsnha.productservice.events.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.Topic;
+
+class EventsOutboxTests {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    @TempDir
+    Path directory;
+
+    private final SnsAsyncClient snsAsyncClient = mock(SnsAsyncClient.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EventsOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        outbox = new EventsOutbox(snsAsyncClient, Topic.builder().topicArn("arn:aws:sns:us-east-1:1:products").build(),
+            objectMapper, meterRegistry, true, directory.toString(), 4096, Duration.ofMillis(5), 10,
+            Duration.ofMillis(10), MAX_ATTEMPTS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        outbox.shutdown();
+    }
+
+    @Test
+    void appendedEventIsPublishedWithItsEventIdAndCheckpointed() throws Exception {
+        when(snsAsyncClient.publish(any(PublishRequest.class))).thenReturn(published());
+
+        PublishResponse response = outbox.append("created", Map.of(
+            "eventType", MessageAttributeValue.builder().dataType("String").stringValue("PRODUCT_CREATED").build(),
+            "requestId", MessageAttributeValue.builder().dataType("String").build())).join();
+
+        ArgumentCaptor<PublishRequest> request = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(snsAsyncClient, timeout(5000)).publish(request.capture());
+        assertThat(request.getValue().message()).isEqualTo("created");
+        assertThat(request.getValue().messageAttributes()).containsOnlyKeys("eventType", "eventId");
+        assertThat(request.getValue().messageAttributes().get("eventId").stringValue()).isEqualTo(response.messageId());
+
+        // nothing before the checkpoint is published again after a restart
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.exists(directory.resolve("checkpoint")));
+        outbox.shutdown();
+        OutboxLog reopened = new OutboxLog(directory, 4096);
+        assertThat(reopened.read(reopened.readCheckpoint(), 10)).isEmpty();
+    }
+
+    @Test
+    void rejectedEventIsDeadLetteredWithoutHoldingUpTheNext() throws Exception {
+        when(snsAsyncClient.publish(any(PublishRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(error(400, "InvalidParameter")))
+            .thenReturn(published());
+
+        outbox.append("invalid", Map.of()).join();
+        outbox.append("valid", Map.of()).join();
+
+        verify(snsAsyncClient, timeout(5000).times(2)).publish(any(PublishRequest.class));
+        await().atMost(Duration.ofSeconds(5)).until(() -> deadLettered("rejected") == 1);
+        assertThat(deadLetteredMessages()).containsExactly("invalid");
+    }
+
+    @Test
+    void eventIsDeadLetteredOnceItsAttemptsAreExhausted() throws Exception {
+        when(snsAsyncClient.publish(any(PublishRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(error(500, "InternalError")));
+
+        outbox.append("unlucky", Map.of()).join();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> deadLettered("exhausted") == 1);
+        verify(snsAsyncClient, timeout(5000).times(MAX_ATTEMPTS)).publish(any(PublishRequest.class));
+        assertThat(deadLettered("rejected")).isZero();
+        assertThat(deadLetteredMessages()).containsExactly("unlucky");
+    }
+
+    // throttling is a 4xx, but the event itself is fine and is retried
+    @Test
+    void throttledEventIsRetried() {
+        when(snsAsyncClient.publish(any(PublishRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(error(429, "Throttling")))
+            .thenReturn(published());
+
+        outbox.append("throttled", Map.of()).join();
+
+        verify(snsAsyncClient, timeout(5000).times(2)).publish(any(PublishRequest.class));
+        assertThat(deadLettered("rejected")).isZero();
+        assertThat(deadLettered("exhausted")).isZero();
+    }
+
+    private double deadLettered(String reason) {
+        return meterRegistry.counter("products.events.outbox.dead.letter", "reason", reason).count();
+    }
+
+    private List<String> deadLetteredMessages() throws Exception {
+        outbox.shutdown();
+        OutboxLog deadLetterLog = new OutboxLog(directory.resolve("dead-letter"), 4096);
+        List<String> messages = new ArrayList<>();
+        for (OutboxLog.OutboxRecord record : deadLetterLog.read(deadLetterLog.readCheckpoint(), 10)) {
+            messages.add(objectMapper.readValue(record.payload(), EventsOutbox.OutboxEvent.class).message());
+        }
+        return messages;
+    }
+
+    private static CompletableFuture<PublishResponse> published() {
+        return CompletableFuture.completedFuture(PublishResponse.builder().messageId("sns-id").build());
+    }
+
+    private static AwsServiceException error(int statusCode, String errorCode) {
+        return SnsException.builder()
+            .statusCode(statusCode)
+            .awsErrorDetails(AwsErrorDetails.builder().errorCode(errorCode).errorMessage(errorCode).build())
+            .build();
+    }
+}
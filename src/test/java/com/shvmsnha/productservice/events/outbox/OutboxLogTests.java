@@ -0,0 +1,149 @@
+package com.shvmsnha.productservice.events.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxLogTests {
+
+    private static final int HEADER_BYTES = 8;
+    // room for two 16 byte records, so the third rolls over to a new segment
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReadOnceForced() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+        log.append(payload(1));
+        OutboxPosition start = log.readCheckpoint();
+
+        assertThat(log.read(start, 10)).isEmpty();
+        OutboxPosition durable = log.force();
+
+        List<OutboxLog.OutboxRecord> records = log.read(start, 10);
+        assertThat(records).extracting(record -> text(record.payload())).containsExactly(text(payload(1)));
+        assertThat(records.get(0).next()).isEqualTo(durable);
+    }
+
+    @Test
+    void recordsRollOverToANewSegment() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+        List<OutboxPosition> positions = List.of(log.append(payload(1)), log.append(payload(2)),
+            log.append(payload(3)), log.append(payload(4)), log.append(payload(5)));
+        log.force();
+
+        assertThat(positions).containsExactly(new OutboxPosition(0, 0), new OutboxPosition(0, 24),
+            new OutboxPosition(1, 0), new OutboxPosition(1, 24), new OutboxPosition(2, 0));
+        assertThat(Files.exists(segment(2))).isTrue();
+        assertThat(log.read(log.readCheckpoint(), 10)).extracting(record -> text(record.payload()))
+            .containsExactly(text(payload(1)), text(payload(2)), text(payload(3)), text(payload(4)), text(payload(5)));
+    }
+
+    @Test
+    void recordThatDoesNotFitASegmentIsRejected() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+
+        IOException exception = catchThrowableOfType(() -> log.append(new byte[SEGMENT_SIZE]), IOException.class);
+
+        assertThat(exception).hasMessageContaining("does not fit a segment");
+    }
+
+    @Test
+    void corruptRecordFailsTheCrcCheck() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+        log.append(payload(1));
+        OutboxPosition second = log.append(payload(2));
+        log.force();
+
+        overwrite(segment(0), second.offset() + HEADER_BYTES, (byte) 'x');
+
+        IOException exception = catchThrowableOfType(() -> log.read(log.readCheckpoint(), 10), IOException.class);
+        assertThat(exception).hasMessageStartingWith("Corrupt outbox record");
+    }
+
+    @Test
+    void tornTailIsDiscardedWhenTheLogIsReopened() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+        log.append(payload(1));
+        OutboxPosition torn = log.append(payload(2));
+        log.close();
+        overwrite(segment(0), torn.offset() + HEADER_BYTES, (byte) 'x');
+
+        OutboxLog reopened = new OutboxLog(directory, SEGMENT_SIZE);
+
+        assertThat(reopened.durablePosition()).isEqualTo(torn);
+        // the next record takes the place of the torn one
+        assertThat(reopened.append(payload(3))).isEqualTo(torn);
+        reopened.force();
+        assertThat(reopened.read(reopened.readCheckpoint(), 10)).extracting(record -> text(record.payload()))
+            .containsExactly(text(payload(1)), text(payload(3)));
+    }
+
+    @Test
+    void checkpointSurvivesReopeningAndDeletesTheSegmentsBeforeIt() throws IOException {
+        OutboxLog log = new OutboxLog(directory, SEGMENT_SIZE);
+        for (int i = 1; i <= 5; i++) {
+            log.append(payload(i));
+        }
+        log.force();
+
+        List<OutboxLog.OutboxRecord> first = log.read(log.readCheckpoint(), 3);
+        log.writeCheckpoint(first.get(2).next());
+        log.close();
+
+        assertThat(Files.exists(segment(0))).isFalse();
+        assertThat(Files.exists(segment(1))).isTrue();
+        OutboxLog reopened = new OutboxLog(directory, SEGMENT_SIZE);
+        assertThat(reopened.readCheckpoint()).isEqualTo(new OutboxPosition(1, 24));
+        assertThat(reopened.read(reopened.readCheckpoint(), 10)).extracting(record -> text(record.payload()))
+            .containsExactly(text(payload(4)), text(payload(5)));
+    }
+
+    @Test
+    void readsContinueFromTheReturnedPosition() throws IOException {
+        OutboxLog log = new OutboxLog(directory, 4096);
+        log.append(payload(1));
+        log.append(payload(2));
+        log.force();
+        List<OutboxLog.OutboxRecord> first = log.read(log.readCheckpoint(), 1);
+
+        // records appended to the segment being read after the first read are still found
+        log.append(payload(3));
+        log.force();
+        List<OutboxLog.OutboxRecord> rest = log.read(first.get(0).next(), 10);
+
+        assertThat(rest).extracting(record -> text(record.payload())).containsExactly(text(payload(2)), text(payload(3)));
+    }
+
+    private Path segment(long segment) {
+        return directory.resolve(String.format("outbox-%020d.log", segment));
+    }
+
+    private static void overwrite(Path file, int offset, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { value }), offset);
+        }
+    }
+
+    // 16 bytes, so every record takes 24 bytes with its header
+    private static byte[] payload(int number) {
+        return String.format("event-%010d", number).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
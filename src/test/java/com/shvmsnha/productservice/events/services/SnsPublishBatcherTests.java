@@ -0,0 +1,151 @@
+package com.shvmsnha.productservice.events.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.Topic;
+
+class SnsPublishBatcherTests {
+
+    private static final Topic TOPIC = Topic.builder().topicArn("arn:aws:sns:us-east-1:1:products").build();
+    // long enough that a batch is only flushed early because it is full
+    private static final long LONG_LINGER_MS = Duration.ofSeconds(30).toMillis();
+
+    private final SnsAsyncClient snsAsyncClient = mock(SnsAsyncClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SnsPublishBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.shutdown();
+    }
+
+    @Test
+    void fullBatchIsFlushedWithoutWaitingForTheLinger() {
+        acceptEverything();
+        batcher = batcher(3, LONG_LINGER_MS);
+
+        List<CompletableFuture<PublishResponse>> published = List.of(publish("a"), publish("b"), publish("c"));
+
+        ArgumentCaptor<PublishBatchRequest> request = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsAsyncClient, timeout(5000)).publishBatch(request.capture());
+        assertThat(request.getValue().topicArn()).isEqualTo(TOPIC.topicArn());
+        assertThat(request.getValue().publishBatchRequestEntries()).extracting(PublishBatchRequestEntry::message)
+            .containsExactly("a", "b", "c");
+        assertThat(published).extracting(future -> future.join().messageId())
+            .containsExactly("id-a", "id-b", "id-c");
+    }
+
+    @Test
+    void partialBatchIsFlushedOnceTheLingerHasPassed() {
+        acceptEverything();
+        batcher = batcher(10, 50);
+
+        CompletableFuture<PublishResponse> first = publish("a");
+        CompletableFuture<PublishResponse> second = publish("b");
+
+        assertThat(first.join().messageId()).isEqualTo("id-a");
+        assertThat(second.join().messageId()).isEqualTo("id-b");
+        ArgumentCaptor<PublishBatchRequest> request = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsAsyncClient).publishBatch(request.capture());
+        assertThat(request.getValue().publishBatchRequestEntries()).hasSize(2);
+        assertThat(meterRegistry.summary("products.sns.batch.fill.ratio").mean()).isEqualTo(0.2);
+    }
+
+    @Test
+    void everyEntryIsCompletedWithItsOwnResult() {
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class))).thenReturn(CompletableFuture.completedFuture(
+            PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("0").messageId("id-a").build())
+                .failed(BatchResultErrorEntry.builder().id("1").code("InvalidParameter").message("bad attribute")
+                    .senderFault(true).build())
+                .build()));
+        batcher = batcher(3, LONG_LINGER_MS);
+
+        CompletableFuture<PublishResponse> accepted = publish("a");
+        CompletableFuture<PublishResponse> rejected = publish("b");
+        // SNS reported this one neither way
+        CompletableFuture<PublishResponse> missing = publish("c");
+
+        assertThat(accepted.join().messageId()).isEqualTo("id-a");
+        assertThat(catchThrowable(rejected::join)).isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(SnsException.class).hasMessageContaining("InvalidParameter: bad attribute");
+        assertThat(catchThrowable(missing::join)).isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(SnsException.class);
+    }
+
+    @Test
+    void failedCallFailsEveryEntry() {
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("unreachable")));
+        batcher = batcher(2, LONG_LINGER_MS);
+
+        List<CompletableFuture<PublishResponse>> published = List.of(publish("a"), publish("b"));
+
+        for (CompletableFuture<PublishResponse> future : published) {
+            assertThat(catchThrowable(future::join)).isInstanceOf(CompletionException.class)
+                .hasRootCauseMessage("unreachable");
+        }
+    }
+
+    @Test
+    void shutdownPublishesWhatIsStillQueued() throws InterruptedException {
+        acceptEverything();
+        batcher = batcher(2, 200);
+        List<CompletableFuture<PublishResponse>> published = List.of(publish("a"), publish("b"), publish("c"));
+
+        batcher.shutdown();
+
+        assertThat(published).allMatch(CompletableFuture::isDone);
+        assertThat(published).extracting(future -> future.join().messageId()).containsExactly("id-a", "id-b", "id-c");
+        // once shut down, callers publish on their own
+        assertThat(batcher.publish("d", Map.of())).isNull();
+        assertThat(meterRegistry.counter("products.sns.batch.overflow").count()).isEqualTo(1);
+    }
+
+    private SnsPublishBatcher batcher(int maxBatchSize, long lingerMs) {
+        return new SnsPublishBatcher(snsAsyncClient, TOPIC, meterRegistry, true, maxBatchSize, lingerMs, 100);
+    }
+
+    private CompletableFuture<PublishResponse> publish(String message) {
+        return batcher.publish(message, Map.of());
+    }
+
+    private void acceptEverything() {
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            PublishBatchRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                .successful(request.publishBatchRequestEntries().stream()
+                    .map(entry -> PublishBatchResultEntry.builder()
+                        .id(entry.id())
+                        .messageId("id-" + entry.message())
+                        .build())
+                    .toList())
+                .build());
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.shvmsnha.productservice.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void permitsAreRefusedAtTheLimitUntilOneIsReleased() {
+        AdaptiveConcurrencyLimit limit = limit(2, 1, 100);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release(FAST, false);
+        assertThat(limit.getInFlight()).isEqualTo(1);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void limitGrowsBySquareRootWhileFullyUsedAndLatencyIsSteady() {
+        AdaptiveConcurrencyLimit limit = limit(16, 1, 100);
+        acquire(limit, 16);
+
+        limit.release(FAST, false);
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostOfItIsUnused() {
+        AdaptiveConcurrencyLimit limit = limit(16, 1, 100);
+        acquire(limit, 7);
+
+        limit.release(FAST, false);
+
+        assertThat(limit.getLimit()).isEqualTo(16);
+    }
+
+    @Test
+    void limitShrinksOnceLatencyRisesPastTheTolerance() {
+        AdaptiveConcurrencyLimit limit = limit(16, 1, 100);
+        acquire(limit, 16);
+        limit.release(FAST, false);
+        int grown = limit.getLimit();
+        acquire(limit, grown - limit.getInFlight());
+
+        limit.release(SLOW, false);
+
+        // at most halved, plus the square root
+        assertThat(limit.getLimit()).isLessThan(grown).isGreaterThanOrEqualTo(grown / 2);
+    }
+
+    @Test
+    void failedWindowShrinksTheLimitEvenWhenItIsUnused() {
+        AdaptiveConcurrencyLimit limit = limit(20, 1, 100);
+        acquire(limit, 1);
+
+        limit.release(FAST, true);
+
+        assertThat(limit.getLimit()).isEqualTo(18);
+    }
+
+    @Test
+    void limitStaysWithinTheMinimumAndMaximum() {
+        AdaptiveConcurrencyLimit shrinking = limit(5, 5, 100);
+        for (int i = 0; i < 10; i++) {
+            acquire(shrinking, 1);
+            shrinking.release(FAST, true);
+        }
+        assertThat(shrinking.getLimit()).isEqualTo(5);
+
+        AdaptiveConcurrencyLimit growing = limit(10, 1, 12);
+        for (int i = 0; i < 10; i++) {
+            acquire(growing, growing.getLimit() - growing.getInFlight());
+            growing.release(FAST, false);
+        }
+        assertThat(growing.getLimit()).isEqualTo(12);
+    }
+
+    @Test
+    void initialLimitIsClamped() {
+        assertThat(limit(0, 5, 100).getLimit()).isEqualTo(5);
+        assertThat(limit(500, 5, 100).getLimit()).isEqualTo(100);
+        // a maximum below the minimum is raised to it
+        assertThat(limit(10, 5, 2).getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void limitOnlyChangesOnceAWindowHasEnoughSamples() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 2.0, 1.0, 0, 3);
+        acquire(limit, 3);
+
+        limit.release(FAST, true);
+        limit.release(FAST, true);
+        assertThat(limit.getLimit()).isEqualTo(20);
+        limit.release(FAST, true);
+
+        assertThat(limit.getLimit()).isEqualTo(18);
+    }
+
+    // Every release closes a window, and changes are not smoothed, so each one shows in full.
+    private static AdaptiveConcurrencyLimit limit(int initialLimit, int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, 2.0, 1.0, 0, 1);
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimit limit, int permits) {
+        for (int i = 0; i < permits; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+    }
+}
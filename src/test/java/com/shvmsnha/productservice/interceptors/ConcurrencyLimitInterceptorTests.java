@@ -0,0 +1,173 @@
+package com.shvmsnha.productservice.interceptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.DispatcherType;
+
+class ConcurrencyLimitInterceptorTests {
+
+    private static final int READ_LIMIT = 2;
+    private static final int WRITE_LIMIT = 20;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // every release closes a window, so a failed request shrinks the limit right away
+    private final ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(new ObjectMapper(),
+        meterRegistry, true, READ_LIMIT, 100, WRITE_LIMIT, 100, 1, 2.0, 1.0, Duration.ZERO, 1, Duration.ofMillis(2500));
+
+    @Test
+    void requestOverTheLimitIsRejectedWithRetryAfter() throws Exception {
+        assertThat(preHandle(request("GET"), new MockHttpServletResponse())).isTrue();
+        assertThat(preHandle(request("GET"), new MockHttpServletResponse())).isTrue();
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+
+        assertThat(preHandle(request("GET"), rejected)).isFalse();
+
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(rejected.getContentAsString()).contains("Too many requests in progress");
+        assertThat(meterRegistry.counter("products.limiter.rejected", "endpoints", "reads").count()).isEqualTo(1);
+    }
+
+    @Test
+    void readsAndWritesHaveSeparateLimits() throws Exception {
+        preHandle(request("GET"), new MockHttpServletResponse());
+        preHandle(request("HEAD"), new MockHttpServletResponse());
+
+        assertThat(preHandle(request("POST"), new MockHttpServletResponse())).isTrue();
+        assertThat(inFlight("reads")).isEqualTo(2);
+        assertThat(inFlight("writes")).isEqualTo(1);
+    }
+
+    @Test
+    void permitIsReleasedWhenTheHandlerThrows() throws Exception {
+        MockHttpServletRequest request = request("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        preHandle(request, response);
+
+        interceptor.afterCompletion(request, response, null, new IllegalStateException("handler failed"));
+
+        assertThat(inFlight("writes")).isZero();
+        // the failure shrinks the limit
+        assertThat(limit("writes")).isEqualTo(WRITE_LIMIT * 0.9);
+    }
+
+    @Test
+    void asyncPermitIsHeldUntilTheAsyncRequestCompletes() throws Exception {
+        MockHttpServletRequest request = request("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        preHandle(request, response);
+
+        MockAsyncContext asyncContext = startAsync(request, response);
+        // the first dispatch ends, the response is not complete yet
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(inFlight("reads")).isEqualTo(1);
+
+        asyncContext.complete();
+        assertThat(inFlight("reads")).isZero();
+        // the async result dispatch must not release it again
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertThat(preHandle(request, response)).isTrue();
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(inFlight("reads")).isZero();
+        // a successful completion, which does not shrink the limit
+        assertThat(limit("reads")).isGreaterThanOrEqualTo(READ_LIMIT);
+    }
+
+    @Test
+    void asyncRequestThatCompletesWithAServerErrorCountsAsFailed() throws Exception {
+        MockHttpServletRequest request = request("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        preHandle(request, response);
+        MockAsyncContext asyncContext = startAsync(request, response);
+
+        response.setStatus(500);
+        asyncContext.complete();
+
+        assertThat(inFlight("writes")).isZero();
+        assertThat(limit("writes")).isEqualTo(WRITE_LIMIT * 0.9);
+    }
+
+    @Test
+    void asyncRequestThatTimesOutReleasesItsPermit() throws Exception {
+        MockHttpServletRequest request = request("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        preHandle(request, response);
+        MockAsyncContext asyncContext = startAsync(request, response);
+
+        AsyncEvent event = new AsyncEvent(asyncContext, request, response);
+        asyncContext.getListeners().forEach(listener -> {
+            try {
+                listener.onTimeout(event);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // and the completion that follows a timeout does not release it twice
+        asyncContext.complete();
+
+        assertThat(inFlight("writes")).isZero();
+        assertThat(limit("writes")).isEqualTo(WRITE_LIMIT * 0.9);
+    }
+
+    @Test
+    void streamingResponsesAreNotLimited() throws Exception {
+        HandlerMethod streaming = new HandlerMethod(new Handlers(), Handlers.class.getDeclaredMethod("stream"));
+        for (int i = 0; i < READ_LIMIT + 1; i++) {
+            assertThat(interceptor.preHandle(request("GET"), new MockHttpServletResponse(), streaming)).isTrue();
+        }
+
+        assertThat(inFlight("reads")).isZero();
+    }
+
+    private boolean preHandle(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        HandlerMethod handler = new HandlerMethod(new Handlers(), Handlers.class.getDeclaredMethod("product"));
+        return interceptor.preHandle(request, response, handler);
+    }
+
+    private MockAsyncContext startAsync(MockHttpServletRequest request, MockHttpServletResponse response)
+            throws Exception {
+        MockAsyncContext asyncContext = (MockAsyncContext) request.startAsync(request, response);
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        return asyncContext;
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/products");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private double inFlight(String endpoints) {
+        return meterRegistry.get("products.limiter.inflight").tag("endpoints", endpoints).gauge().value();
+    }
+
+    private double limit(String endpoints) {
+        return meterRegistry.get("products.limiter.limit").tag("endpoints", endpoints).gauge().value();
+    }
+
+    private static final class Handlers {
+
+        ResponseEntity<String> product() {
+            return ResponseEntity.ok("product");
+        }
+
+        ResponseEntity<StreamingResponseBody> stream() {
+            return ResponseEntity.ok(outputStream -> { });
+        }
+    }
+}
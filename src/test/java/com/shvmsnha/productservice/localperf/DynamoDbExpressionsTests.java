@@ -0,0 +1,138 @@
+package com.shvmsnha.productservice.localperf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.shvmsnha.productservice.localperf.DynamoDbExpressions.Context;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class DynamoDbExpressionsTests {
+
+    @Test
+    void attributeNotExistsHoldsOnlyForItemsWithoutTheAttribute() {
+        Context context = new Context(Map.of("#id", "id"), Map.of());
+        DynamoDbExpressions.Condition condition = DynamoDbExpressions.condition("attribute_not_exists(#id)");
+
+        assertThat(condition.test(Map.of(), context)).isTrue();
+        assertThat(condition.test(Map.of("id", AttributeValue.fromS("p1")), context)).isFalse();
+    }
+
+    // the reservation condition an upsert puts: the code is free, or already belongs to this product
+    @Test
+    void orOfAttributeNotExistsAndEqualityMatchesOwnedOrMissingItems() {
+        Context context = new Context(Map.of("#id", "id", "#productId", "productId"),
+            Map.of(":productId", AttributeValue.fromS("p1")));
+        DynamoDbExpressions.Condition condition =
+            DynamoDbExpressions.condition("attribute_not_exists(#id) OR #productId = :productId");
+
+        assertThat(condition.test(Map.of(), context)).isTrue();
+        assertThat(condition.test(reservation("p1"), context)).isTrue();
+        assertThat(condition.test(reservation("p2"), context)).isFalse();
+    }
+
+    @Test
+    void numbersCompareByValueRatherThanText() {
+        Context context = new Context(Map.of("#version", "version"),
+            Map.of(":low", AttributeValue.fromN("2"), ":high", AttributeValue.fromN("10"), ":ten", AttributeValue.fromN("10.0")));
+        Map<String, AttributeValue> item = Map.of("version", AttributeValue.fromN("9"));
+
+        assertThat(DynamoDbExpressions.condition("#version BETWEEN :low AND :high").test(item, context)).isTrue();
+        assertThat(DynamoDbExpressions.condition("#version IN (:low, :high)").test(item, context)).isFalse();
+        assertThat(DynamoDbExpressions.condition("#version < :ten").test(item, context)).isTrue();
+        assertThat(DynamoDbExpressions.condition("NOT #version >= :ten").test(item, context)).isTrue();
+    }
+
+    // as in DynamoDB, a missing attribute is not equal to any value and can not be ordered against one
+    @Test
+    void comparisonsWithAMissingAttribute() {
+        Context context = new Context(Map.of("#price", "price"), Map.of(":price", AttributeValue.fromN("1")));
+
+        assertThat(DynamoDbExpressions.condition("#price = :price").test(Map.of(), context)).isFalse();
+        assertThat(DynamoDbExpressions.condition("#price <> :price").test(Map.of(), context)).isTrue();
+        assertThat(DynamoDbExpressions.condition("#price > :price").test(Map.of(), context)).isFalse();
+        assertThat(DynamoDbExpressions.condition("#price <= :price").test(Map.of(), context)).isFalse();
+    }
+
+    @Test
+    void beginsWithAndContainsMatchStrings() {
+        Context context = new Context(Map.of(), Map.of(":prefix", AttributeValue.fromS("CODE#"), ":part", AttributeValue.fromS("-7")));
+        Map<String, AttributeValue> item = Map.of("id", AttributeValue.fromS("CODE#A-7"));
+
+        assertThat(DynamoDbExpressions.condition("begins_with(id, :prefix)").test(item, context)).isTrue();
+        assertThat(DynamoDbExpressions.condition("contains(id, :part)").test(item, context)).isTrue();
+        assertThat(DynamoDbExpressions.condition("begins_with(id, :part)").test(item, context)).isFalse();
+    }
+
+    @Test
+    void ifNotExistsStartsACounterThatLaterUpdatesIncrement() {
+        Context context = new Context(Map.of("#version", "version"),
+            Map.of(":zero", AttributeValue.fromN("0"), ":one", AttributeValue.fromN("1")));
+        DynamoDbExpressions.Update update =
+            DynamoDbExpressions.update("SET #version = if_not_exists(#version, :zero) + :one");
+        Map<String, AttributeValue> item = new HashMap<>();
+
+        assertThat(update.apply(item, context)).containsExactly("version");
+        assertThat(item).containsEntry("version", AttributeValue.fromN("1"));
+        update.apply(item, context);
+        assertThat(item).containsEntry("version", AttributeValue.fromN("2"));
+    }
+
+    @Test
+    void updateValuesAreEvaluatedAgainstTheItemBeforeTheUpdate() {
+        Context context = new Context(Map.of(), Map.of(":name", AttributeValue.fromS("new")));
+        Map<String, AttributeValue> item = new HashMap<>(Map.of(
+            "name", AttributeValue.fromS("old"),
+            "model", AttributeValue.fromS("m1")));
+
+        DynamoDbExpressions.update("SET name = :name, previous = name REMOVE model").apply(item, context);
+
+        assertThat(item).containsOnly(
+            Map.entry("name", AttributeValue.fromS("new")),
+            Map.entry("previous", AttributeValue.fromS("old")));
+    }
+
+    @Test
+    void requiredValueFindsTheKeyAnAndConditionPinsDown() {
+        Context context = new Context(Map.of("#code", "code"),
+            Map.of(":code", AttributeValue.fromS("A-1"), ":price", AttributeValue.fromN("3")));
+        DynamoDbExpressions.Condition condition = DynamoDbExpressions.condition("price > :price AND #code = :code");
+
+        assertThat(DynamoDbExpressions.requiredValue(condition, "code", context)).isEqualTo(AttributeValue.fromS("A-1"));
+        assertThat(DynamoDbExpressions.requiredValue(condition, "price", context)).isNull();
+    }
+
+    @Test
+    void malformedExpressionsAreRejected() {
+        assertThatThrownBy(() -> DynamoDbExpressions.condition(" "))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Invalid expression");
+        assertThatThrownBy(() -> DynamoDbExpressions.condition("#version BETWEEN :low"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DynamoDbExpressions.condition("size(#name) > :one"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DynamoDbExpressions.update("ADD #version :one"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void undefinedPlaceholdersAreRejectedWhenEvaluated() {
+        DynamoDbExpressions.Condition condition = DynamoDbExpressions.condition("#code = :code");
+
+        assertThatThrownBy(() -> condition.test(Map.of(), new Context(Map.of(), Map.of(":code", AttributeValue.fromS("A")))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("#code");
+        assertThatThrownBy(() -> condition.test(Map.of(), new Context(Map.of("#code", "code"), Map.of())))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining(":code");
+    }
+
+    private static Map<String, AttributeValue> reservation(String productId) {
+        return Map.of("id", AttributeValue.fromS("CODE#A-1"), "productId", AttributeValue.fromS(productId));
+    }
+}
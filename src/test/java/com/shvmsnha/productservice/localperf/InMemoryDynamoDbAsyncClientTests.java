@@ -0,0 +1,244 @@
+package com.shvmsnha.productservice.localperf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+class InMemoryDynamoDbAsyncClientTests {
+
+    private static final String TABLE = "products";
+
+    private InMemoryDynamoDbAsyncClient client;
+
+    @BeforeEach
+    void setUp() {
+        // no latency and no errors, with responses completed on the calling thread
+        client = new InMemoryDynamoDbAsyncClient(new FaultInjection(Duration.ZERO, Duration.ZERO, 0, Runnable::run,
+            IllegalStateException::new));
+        client.createTable(TABLE, "id", Map.of("codeIdx", "code"));
+    }
+
+    @Test
+    void putWithAttributeNotExistsFailsForAnExistingItemAndReturnsIt() {
+        client.load(TABLE, product("p1", "A-1"));
+
+        Throwable failure = failure(client.putItem(PutItemRequest.builder()
+            .tableName(TABLE)
+            .item(product("p1", "A-2"))
+            .conditionExpression("attribute_not_exists(id)")
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build()));
+
+        assertThat(failure).isInstanceOf(ConditionalCheckFailedException.class);
+        assertThat(((ConditionalCheckFailedException) failure).item()).isEqualTo(product("p1", "A-1"));
+        assertThat(get("p1")).isEqualTo(product("p1", "A-1"));
+    }
+
+    @Test
+    void putWithAttributeNotExistsCreatesAMissingItem() {
+        client.putItem(PutItemRequest.builder()
+            .tableName(TABLE)
+            .item(product("p1", "A-1"))
+            .conditionExpression("attribute_not_exists(id)")
+            .build()).join();
+
+        assertThat(get("p1")).isEqualTo(product("p1", "A-1"));
+    }
+
+    @Test
+    void updateWithIfNotExistsStartsAndIncrementsTheVersion() {
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(TABLE)
+            .key(Map.of("id", AttributeValue.fromS("p1")))
+            .updateExpression("SET #version = if_not_exists(#version, :zero) + :one")
+            .expressionAttributeNames(Map.of("#version", "version"))
+            .expressionAttributeValues(Map.of(":zero", AttributeValue.fromN("0"), ":one", AttributeValue.fromN("1")))
+            .returnValues(ReturnValue.UPDATED_NEW)
+            .build();
+
+        assertThat(client.updateItem(request).join().attributes()).containsExactly(Map.entry("version", AttributeValue.fromN("1")));
+        assertThat(client.updateItem(request).join().attributes()).containsExactly(Map.entry("version", AttributeValue.fromN("2")));
+        assertThat(get("p1")).containsEntry("id", AttributeValue.fromS("p1"));
+    }
+
+    @Test
+    void scanWithALimitPagesThroughEveryItemOnce() {
+        for (int i = 0; i < 5; i++) {
+            client.load(TABLE, product("p" + i, "A-" + i));
+        }
+
+        List<String> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse page = client.scan(ScanRequest.builder()
+                .tableName(TABLE)
+                .limit(2)
+                .exclusiveStartKey(startKey)
+                .build()).join();
+            page.items().forEach(item -> ids.add(item.get("id").s()));
+            pageSizes.add(page.items().size());
+            startKey = page.hasLastEvaluatedKey() ? page.lastEvaluatedKey() : null;
+        } while (startKey != null);
+
+        assertThat(ids).containsExactlyInAnyOrder("p0", "p1", "p2", "p3", "p4");
+        assertThat(pageSizes).containsExactly(2, 2, 1);
+    }
+
+    // as in DynamoDB, a page that ends with the last item has no LastEvaluatedKey
+    @Test
+    void scanPageEndingWithTheLastItemHasNoLastEvaluatedKey() {
+        client.load(TABLE, product("p1", "A-1"));
+        client.load(TABLE, product("p2", "A-2"));
+
+        ScanResponse page = client.scan(ScanRequest.builder().tableName(TABLE).limit(2).build()).join();
+
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.hasLastEvaluatedKey()).isFalse();
+    }
+
+    // Limit counts the items evaluated before the filter, so a page can come back empty with more to read
+    @Test
+    void scanLimitCountsItemsBeforeTheFilter() {
+        for (int i = 0; i < 3; i++) {
+            client.load(TABLE, product("p" + i, "A-" + i));
+        }
+
+        ScanResponse page = client.scan(ScanRequest.builder()
+            .tableName(TABLE)
+            .limit(2)
+            .filterExpression("code = :code")
+            .expressionAttributeValues(Map.of(":code", AttributeValue.fromS("missing")))
+            .build()).join();
+
+        assertThat(page.items()).isEmpty();
+        assertThat(page.scannedCount()).isEqualTo(2);
+        assertThat(page.hasLastEvaluatedKey()).isTrue();
+    }
+
+    @Test
+    void queryOnAnIndexWithALimitReturnsTheIndexKeyAndContinuesFromIt() {
+        client.load(TABLE, product("p1", "A-1"));
+        client.load(TABLE, product("p2", "A-1"));
+        client.load(TABLE, product("p3", "B-1"));
+        QueryRequest.Builder request = QueryRequest.builder()
+            .tableName(TABLE)
+            .indexName("codeIdx")
+            .keyConditionExpression("code = :code")
+            .expressionAttributeValues(Map.of(":code", AttributeValue.fromS("A-1")))
+            .limit(1);
+
+        QueryResponse first = client.query(request.build()).join();
+        QueryResponse second = client.query(request.exclusiveStartKey(first.lastEvaluatedKey()).build()).join();
+
+        assertThat(first.items()).hasSize(1);
+        assertThat(first.lastEvaluatedKey()).containsOnlyKeys("id", "code");
+        assertThat(second.items()).hasSize(1);
+        assertThat(second.hasLastEvaluatedKey()).isFalse();
+        assertThat(List.of(first.items().get(0).get("id").s(), second.items().get(0).get("id").s()))
+            .containsExactlyInAnyOrder("p1", "p2");
+    }
+
+    @Test
+    void cancelledTransactionReportsAReasonPerActionAndWritesNothing() {
+        client.load(TABLE, reservation("A-1", "p0"));
+
+        Throwable failure = failure(client.transactWriteItems(TransactWriteItemsRequest.builder()
+            .transactItems(
+                put(product("p1", "A-1"), "attribute_not_exists(id)"),
+                put(reservation("A-1", "p1"), "attribute_not_exists(id)"))
+            .build()));
+
+        assertThat(failure).isInstanceOf(TransactionCanceledException.class);
+        List<CancellationReason> reasons = ((TransactionCanceledException) failure).cancellationReasons();
+        assertThat(reasons).extracting(CancellationReason::code).containsExactly("None", "ConditionalCheckFailed");
+        assertThat(reasons.get(0).item()).isEmpty();
+        assertThat(reasons.get(1).item()).isEqualTo(reservation("A-1", "p0"));
+        assertThat(get("p1")).isNull();
+        assertThat(get("CODE#A-1")).isEqualTo(reservation("A-1", "p0"));
+    }
+
+    @Test
+    void transactionWritesEveryActionWhenAllConditionsHold() {
+        client.transactWriteItems(TransactWriteItemsRequest.builder()
+            .transactItems(
+                put(product("p1", "A-1"), "attribute_not_exists(id)"),
+                put(reservation("A-1", "p1"), "attribute_not_exists(id)"))
+            .build()).join();
+
+        assertThat(get("p1")).isEqualTo(product("p1", "A-1"));
+        assertThat(get("CODE#A-1")).isEqualTo(reservation("A-1", "p1"));
+    }
+
+    @Test
+    void transactionWithTwoActionsOnOneItemIsAValidationError() {
+        Throwable failure = failure(client.transactWriteItems(TransactWriteItemsRequest.builder()
+            .transactItems(put(product("p1", "A-1"), null), put(product("p1", "A-2"), null))
+            .build()));
+
+        assertThat(failure).isInstanceOf(DynamoDbException.class);
+        assertThat(((DynamoDbException) failure).awsErrorDetails().errorCode()).isEqualTo("ValidationException");
+        assertThat(get("p1")).isNull();
+    }
+
+    private Map<String, AttributeValue> get(String id) {
+        Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder()
+            .tableName(TABLE)
+            .key(Map.of("id", AttributeValue.fromS(id)))
+            .build()).join().item();
+        // the SDK's auto-constructed empty map stands for no item
+        return item == null || item.isEmpty() ? null : item;
+    }
+
+    private static TransactWriteItem put(Map<String, AttributeValue> item, String condition) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(TABLE)
+                .item(item)
+                .conditionExpression(condition)
+                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                .build())
+            .build();
+    }
+
+    private static Map<String, AttributeValue> product(String id, String code) {
+        return Map.of("id", AttributeValue.fromS(id), "code", AttributeValue.fromS(code));
+    }
+
+    private static Map<String, AttributeValue> reservation(String code, String productId) {
+        return Map.of("id", AttributeValue.fromS("CODE#" + code), "productId", AttributeValue.fromS(productId));
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        Throwable thrown = catchThrowable(future::join);
+        assertThat(thrown).isInstanceOf(CompletionException.class);
+        return thrown.getCause();
+    }
+}
@@ -0,0 +1,59 @@
+package com.shvmsnha.productservice.products.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import org.junit.jupiter.api.Test;
+
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+
+class ProductETagsTests {
+
+    @Test
+    void eTagIsTheQuotedVersion() {
+        assertThat(ProductETags.of(product(3L))).isEqualTo("\"3\"");
+        assertThat(ProductETags.of(product(null))).isNull();
+    }
+
+    @Test
+    void ifNoneMatchMatchesAnyListedETagWeakOrNot() {
+        assertThat(ProductETags.matchesAny("\"3\"", "\"3\"")).isTrue();
+        assertThat(ProductETags.matchesAny("W/\"3\"", "\"3\"")).isTrue();
+        assertThat(ProductETags.matchesAny("\"1\", W/\"3\"", "\"3\"")).isTrue();
+        assertThat(ProductETags.matchesAny("*", "\"3\"")).isTrue();
+
+        assertThat(ProductETags.matchesAny("\"2\"", "\"3\"")).isFalse();
+        assertThat(ProductETags.matchesAny(null, "\"3\"")).isFalse();
+        // a product without a version matches nothing
+        assertThat(ProductETags.matchesAny("*", null)).isFalse();
+    }
+
+    @Test
+    void ifMatchRequiresTheQuotedVersion() throws ProductException {
+        assertThat(ProductETags.expectedVersion("\"3\"", "p1")).isEqualTo(3L);
+        assertThat(ProductETags.expectedVersion(" \"3\" ", "p1")).isEqualTo(3L);
+        assertThat(ProductETags.expectedVersion(null, "p1")).isNull();
+        assertThat(ProductETags.expectedVersion("*", "p1")).isNull();
+    }
+
+    @Test
+    void ifMatchThatIsNotOneOfOurETagsNeverMatches() {
+        // weak ETags never match for writes, and a product has only one current version
+        for (String ifMatch : new String[] { "W/\"3\"", "\"3\", \"4\"", "3", "\"\"", "\"abc\"" }) {
+            ProductException exception = catchThrowableOfType(() -> ProductETags.expectedVersion(ifMatch, "p1"),
+                ProductException.class);
+
+            assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_VERSION_MISMATCH);
+            assertThat(exception.getProductId()).isEqualTo("p1");
+        }
+    }
+
+    private static Product product(Long version) {
+        Product product = new Product();
+        product.setId("p1");
+        product.setVersion(version);
+        return product;
+    }
+}
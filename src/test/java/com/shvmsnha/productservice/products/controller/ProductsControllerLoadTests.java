@@ -0,0 +1,73 @@
+package com.shvmsnha.productservice.products.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+// With a fixed, small Tomcat pool, requests waiting on DynamoDB must not each hold a Tomcat thread: while the
+// repository future is held, every request has to reach the repository, which a blocking handler would only
+// let TOMCAT_THREADS of them do.
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "server.tomcat.threads.max=" + ProductsControllerLoadTests.TOMCAT_THREADS,
+        "server.tomcat.threads.min-spare=" + ProductsControllerLoadTests.TOMCAT_THREADS
+    })
+class ProductsControllerLoadTests {
+
+    static final int TOMCAT_THREADS = 4;
+    private static final int REQUESTS = 64;
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private ProductsRepository productsRepository;
+
+    @Test
+    void getByIdRequestsInFlightAreNotBoundByTomcatThreads() throws InterruptedException {
+        Product product = new Product();
+        product.setId("p1");
+        product.setCode("code1");
+        product.setProductName("product");
+        CountDownLatch inFlight = new CountDownLatch(REQUESTS);
+        CompletableFuture<Product> held = new CompletableFuture<>();
+        when(productsRepository.getById(anyString())).thenAnswer(invocation -> {
+            inFlight.countDown();
+            return held;
+        });
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/p1"))
+            .header("requestId", "load-test")
+            .build();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        // the timeout only bounds a failing run, a passing one continues as soon as the last request arrives
+        assertThat(inFlight.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(responses).noneMatch(CompletableFuture::isDone);
+        held.complete(product);
+        assertThat(responses).allSatisfy(response -> assertThat(response.join().statusCode()).isEqualTo(200));
+    }
+}
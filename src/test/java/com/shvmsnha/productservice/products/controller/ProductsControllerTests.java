@@ -0,0 +1,167 @@
+package com.shvmsnha.productservice.products.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.events.dto.EventType;
+import com.shvmsnha.productservice.events.services.EventsPublisher;
+import com.shvmsnha.productservice.localperf.FaultInjection;
+import com.shvmsnha.productservice.localperf.InMemoryDynamoDbAsyncClient;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.dto.ProductPatchDto;
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.replica.ProductsReplica;
+import com.shvmsnha.productservice.products.repositories.ProductsCache;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+// The controller over a repository backed by the in-memory table, so version checks are the real ones.
+class ProductsControllerTests {
+
+    private static final String TABLE = "products";
+
+    private final EventsPublisher eventsPublisher = mock(EventsPublisher.class);
+    private ProductsRepository repository;
+    private ProductsController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InMemoryDynamoDbAsyncClient client = new InMemoryDynamoDbAsyncClient(
+            new FaultInjection(Duration.ZERO, Duration.ZERO, 0, Runnable::run, IllegalStateException::new));
+        client.createTable(TABLE, "id", Map.of("codeIdx", "code"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProductsCache productsCache = new ProductsCache(meterRegistry, true, 1_000_000, Duration.ofMinutes(1), 1000,
+            Duration.ofMinutes(1), Duration.ofSeconds(1));
+        repository = new ProductsRepository(
+            DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).build(),
+            DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).extensions().build(),
+            client, productsCache, meterRegistry, TABLE, 3, 1, 10, 2, false, 0.95, Duration.ofMillis(5), 100, 10,
+            false);
+        when(eventsPublisher.sendProductEvent(any(Product.class), any(EventType.class), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(PublishResponse.builder().messageId("m1").build()));
+        controller = new ProductsController(repository, eventsPublisher, mock(ProductsReplica.class),
+            new ObjectMapper(), 20, 100, 100, 2, 25);
+        repository.create(product("p1", "A-1")).join();
+    }
+
+    @Test
+    void productIsReturnedWithItsETag() {
+        ResponseEntity<ProductDto> response = controller.getProductById("p1", null).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(response.getBody().id()).isEqualTo("p1");
+    }
+
+    @Test
+    void ifNoneMatchWithTheCurrentETagIsNotModified() {
+        for (String ifNoneMatch : new String[] { "\"1\"", "W/\"1\"", "\"0\", \"1\"", "*" }) {
+            ResponseEntity<ProductDto> response = controller.getProductById("p1", ifNoneMatch).join();
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+            assertThat(response.getHeaders().getETag()).isEqualTo("\"1\"");
+            assertThat(response.getBody()).isNull();
+        }
+    }
+
+    @Test
+    void ifNoneMatchWithAnOlderETagReturnsTheProduct() {
+        ResponseEntity<ProductDto> response = controller.getProductById("p1", "\"0\"").join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+    }
+
+    @Test
+    void updateWithTheCurrentETagReturnsTheNextOne() {
+        ResponseEntity<ProductDto> response = controller.updateProduct("p1", "\"1\"", dto("Renamed", "A-1")).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"2\"");
+        assertThat(response.getBody().name()).isEqualTo("Renamed");
+    }
+
+    @Test
+    void updateWithAStaleETagFailsThePrecondition() {
+        controller.updateProduct("p1", null, dto("Renamed", "A-1")).join();
+
+        ProductException exception = failure(controller.updateProduct("p1", "\"1\"", dto("Stale", "A-1")));
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_VERSION_MISMATCH);
+        assertThat(exception.getProductErrors().getHttpStatus()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(repository.getById("p1").join().getProductName()).isEqualTo("Renamed");
+    }
+
+    @Test
+    void weakOrMultipleIfMatchETagsAreRejectedWithoutWriting() throws Exception {
+        for (String ifMatch : new String[] { "W/\"1\"", "\"1\", \"2\"" }) {
+            ProductException exception = failure(controller.updateProduct("p1", ifMatch, dto("Renamed", "A-1")));
+
+            assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_VERSION_MISMATCH);
+        }
+        assertThat(repository.getById("p1").join().getVersion()).isEqualTo(1L);
+        verify(eventsPublisher, never()).sendProductEvent(any(Product.class), any(EventType.class), anyString());
+    }
+
+    @Test
+    void patchRespondsWithThePatchedAttributesAndTheNextETag() {
+        ResponseEntity<ProductPatchDto> response = controller.patchProduct("p1", "\"1\"",
+            new ProductPatchDto(null, null, 25f, null, null)).join();
+
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"2\"");
+        assertThat(response.getBody()).isEqualTo(new ProductPatchDto(null, null, 25f, null, null));
+    }
+
+    @Test
+    void emptyPatchIsRejectedWithoutWriting() throws Exception {
+        ProductException exception = failure(controller.patchProduct("p1", null,
+            new ProductPatchDto(null, null, null, null, null)));
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.EMPTY_PATCH);
+        assertThat(exception.getProductErrors().getHttpStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(repository.getById("p1").join().getVersion()).isEqualTo(1L);
+        verify(eventsPublisher, never()).sendProductEvent(any(Product.class), any(EventType.class), anyString());
+    }
+
+    private static ProductException failure(CompletableFuture<?> future) {
+        Throwable failure = catchThrowable(future::join);
+        assertThat(failure).isInstanceOf(CompletionException.class).hasCauseInstanceOf(ProductException.class);
+        return (ProductException) failure.getCause();
+    }
+
+    private static ProductDto dto(String name, String code) {
+        return new ProductDto(null, name, code, 10, "model", null);
+    }
+
+    private static Product product(String id, String code) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName("Product " + id);
+        product.setCode(code);
+        product.setPrice(10);
+        product.setModel("model");
+        return product;
+    }
+}
@@ -0,0 +1,114 @@
+package com.shvmsnha.productservice.products.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+// Drives GET /api/products/{id} at CONCURRENCY in-flight requests against a repository that either blocks
+// the calling thread or completes asynchronously after LATENCY_MS, and prints throughput and p99.
+// Subclasses pick the threading mode; run both with `./gradlew benchmark`.
+@Tag("benchmark")
+abstract class ThreadingModeBenchmark {
+
+    private static final int CONCURRENCY = 1000;
+    private static final int WARMUP_REQUESTS = 2000;
+    private static final int REQUESTS = 20000;
+    private static final long LATENCY_MS = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private ProductsRepository productsRepository;
+
+    abstract String threadingMode();
+
+    @Test
+    void blockingRepository() {
+        when(productsRepository.getById(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(LATENCY_MS);
+            return CompletableFuture.completedFuture(product());
+        });
+        run("blocking");
+    }
+
+    @Test
+    void asyncRepository() {
+        when(productsRepository.getById(anyString())).thenAnswer(invocation -> CompletableFuture.supplyAsync(
+            this::product, CompletableFuture.delayedExecutor(LATENCY_MS, TimeUnit.MILLISECONDS)));
+        run("async");
+    }
+
+    private void run(String scenario) {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/p1"))
+            .header("requestId", "benchmark")
+            .build();
+        send(httpClient, request, WARMUP_REQUESTS);
+
+        long startNanos = System.nanoTime();
+        long[] latenciesNanos = send(httpClient, request, REQUESTS);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        Arrays.sort(latenciesNanos);
+        System.out.printf("[%s threads, %s repository] %d requests at concurrency %d: %.0f req/s, p50 %.1f ms, p99 %.1f ms%n",
+            threadingMode(), scenario, REQUESTS, CONCURRENCY, REQUESTS / elapsedSeconds,
+            percentileMs(latenciesNanos, 0.50), percentileMs(latenciesNanos, 0.99));
+    }
+
+    private long[] send(HttpClient httpClient, HttpRequest request, int requests) {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        long[] latenciesNanos = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<?>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquireUninterruptibly();
+            int index = i;
+            long sentNanos = System.nanoTime();
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, throwable) -> {
+                    latenciesNanos[index] = System.nanoTime() - sentNanos;
+                    if (throwable != null || response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    inFlight.release();
+                }));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        assertThat(failures).hasValue(0);
+        return latenciesNanos;
+    }
+
+    private static double percentileMs(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private Product product() {
+        Product product = new Product();
+        product.setId("p1");
+        product.setCode("code1");
+        product.setProductName("product");
+        return product;
+    }
+}
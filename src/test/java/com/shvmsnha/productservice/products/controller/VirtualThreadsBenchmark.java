@@ -0,0 +1,15 @@
+package com.shvmsnha.productservice.products.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    // the benchmark measures how each threading mode copes with CONCURRENCY requests, none may be shed
+    properties = { "spring.threads.virtual.enabled=true", "products.limiter.enabled=false" })
+class VirtualThreadsBenchmark extends ThreadingModeBenchmark {
+
+    @Override
+    String threadingMode() {
+        return "virtual";
+    }
+}
@@ -0,0 +1,165 @@
+package com.shvmsnha.productservice.products.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shvmsnha.productservice.products.dto.ProductDto;
+import com.shvmsnha.productservice.products.models.Product;
+
+class ImportFileTests {
+
+    private static final ObjectReader PRODUCT_READER = new ObjectMapper().readerFor(ProductDto.class);
+
+    @TempDir
+    private Path directory;
+
+    private final ExecutorService parsers = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    void tearDown() {
+        parsers.shutdownNow();
+    }
+
+    @Test
+    void csvFieldsSplitOnCommasOutsideQuotes() {
+        assertThat(ImportFile.csvFields("a,\"b,c\",,\"say \"\"hi\"\"\",")).containsExactly("a", "b,c", "", "say \"hi\"", "");
+        assertThat(ImportFile.csvFields("")).containsExactly("");
+    }
+
+    @Test
+    void csvFieldsRejectAnUnterminatedQuote() {
+        assertThatThrownBy(() -> ImportFile.csvFields("a,\"b"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void csvWithAByteOrderMarkAndCrlfLineEndingsIsReadByHeaderName() throws IOException {
+        Path file = write("products.csv", "\uFEFFCode,name,price,url\r\n"
+            + "A-1,\"Desk, oak\",12.5,https://example.com/a\r\n"
+            + "\r\n"
+            + "A-2,\"The \"\"big\"\" chair\",,https://example.com/b\r\n");
+
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.CSV, PRODUCT_READER)) {
+            ImportBlock block = importFile.read(importFile.dataStart(), 1024, 2, parsers);
+
+            assertThat(block.invalid()).isZero();
+            assertThat(block.end()).isEqualTo(importFile.size());
+            assertThat(block.products()).extracting(Product::getCode).containsExactly("A-1", "A-2");
+            assertThat(block.products()).extracting(Product::getProductName).containsExactly("Desk, oak", "The \"big\" chair");
+            assertThat(block.products()).extracting(Product::getPrice).containsExactly(12.5f, 0f);
+            assertThat(block.products()).extracting(Product::getProductUrl)
+                .containsExactly("https://example.com/a", "https://example.com/b");
+            assertThat(block.products()).extracting(Product::getModel).containsOnlyNulls();
+        }
+    }
+
+    @Test
+    void csvWithoutACodeColumnIsRejected() throws IOException {
+        Path file = write("products.csv", "id,name\np1,desk\n");
+
+        assertThatThrownBy(() -> ImportFile.open(file, ImportFormat.CSV, PRODUCT_READER))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("no code column");
+    }
+
+    // blocks end at line boundaries and slices split each block, so every row is read once and in order
+    @Test
+    void blocksAndSlicesSplitTheFileAtLineBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder("code,name\n");
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            codes.add("C-" + i);
+            content.append("C-").append(i).append(",product ").append(i).append('\n');
+        }
+        Path file = write("products.csv", content.toString());
+
+        List<String> read = new ArrayList<>();
+        List<ImportBlock> blocks = new ArrayList<>();
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.CSV, PRODUCT_READER)) {
+            byte[] bytes = Files.readAllBytes(file);
+            long start = importFile.dataStart();
+            while (start < importFile.size()) {
+                ImportBlock block = importFile.read(start, 256, 3, parsers);
+                assertThat(block.start()).isEqualTo(start);
+                assertThat(bytes[(int) block.end() - 1]).isEqualTo((byte) '\n');
+                block.products().forEach(product -> read.add(product.getCode()));
+                blocks.add(block);
+                start = block.end();
+            }
+        }
+
+        assertThat(blocks).hasSizeBetween(2, 3);
+        assertThat(read).isEqualTo(codes);
+    }
+
+    @Test
+    void lastLineWithoutANewlineIsRead() throws IOException {
+        Path file = write("products.ndjson", "{\"code\":\"A-1\"}\n{\"code\":\"A-2\"}");
+
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.NDJSON, PRODUCT_READER)) {
+            ImportBlock first = importFile.read(0, 20, 1, parsers);
+            ImportBlock second = importFile.read(first.end(), 20, 1, parsers);
+
+            assertThat(first.products()).extracting(Product::getCode).containsExactly("A-1");
+            assertThat(second.products()).extracting(Product::getCode).containsExactly("A-2");
+            assertThat(second.end()).isEqualTo(importFile.size());
+        }
+    }
+
+    @Test
+    void lineLongerThanTheBlockIsAnError() throws IOException {
+        Path file = write("products.ndjson", "{\"code\":\"A-1\",\"name\":\"a long product name\"}\n{\"code\":\"A-2\"}\n");
+
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.NDJSON, PRODUCT_READER)) {
+            assertThatThrownBy(() -> importFile.read(0, 16, 1, parsers))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("longer than the block size");
+        }
+    }
+
+    @Test
+    void invalidRowsAreCountedAndSkipped() throws IOException {
+        Path file = write("products.csv", "id,code,price\n"
+            + "p1,A-1,1\n"
+            + "p2,,2\n"
+            + "CODE#A-3,A-3,3\n"
+            + "p4,A-4,not a number\n"
+            + "p5,\"A-5\n"
+            + ",A-6,6\n");
+
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.CSV, PRODUCT_READER)) {
+            ImportBlock block = importFile.read(importFile.dataStart(), 1024, 2, parsers);
+
+            assertThat(block.invalid()).isEqualTo(4);
+            assertThat(block.products()).extracting(Product::getCode).containsExactly("A-1", "A-6");
+            // a row without an id gets the same id every time it is imported
+            assertThat(block.products().get(1).getId()).isNotBlank();
+            assertThat(block.products().get(1).getId()).isEqualTo(readAgain(file).get(1).getId());
+        }
+    }
+
+    private List<Product> readAgain(Path file) throws IOException {
+        try (ImportFile importFile = ImportFile.open(file, ImportFormat.CSV, PRODUCT_READER)) {
+            return importFile.read(importFile.dataStart(), 1024, 1, parsers).products();
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
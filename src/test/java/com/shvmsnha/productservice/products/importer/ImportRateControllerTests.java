@@ -0,0 +1,81 @@
+package com.shvmsnha.productservice.products.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ImportRateControllerTests {
+
+    private static final long NO_COOLDOWN = 0;
+    private static final long LONG_COOLDOWN = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void initialRateIsKeptBetweenTheMinimumAndTheBudget() {
+        assertThat(new ImportRateController(1000, 5000, NO_COOLDOWN).wcuPerSecond()).isEqualTo(1000);
+        assertThat(new ImportRateController(1000, 0, NO_COOLDOWN).wcuPerSecond()).isEqualTo(10);
+        assertThat(new ImportRateController(50, 0, NO_COOLDOWN).wcuPerSecond()).isEqualTo(1);
+    }
+
+    @Test
+    void successesRaiseTheRateByAStepUpToTheBudget() {
+        ImportRateController controller = new ImportRateController(1000, 100, NO_COOLDOWN);
+
+        controller.succeeded();
+        assertThat(controller.wcuPerSecond()).isEqualTo(150);
+        for (int i = 0; i < 100; i++) {
+            controller.succeeded();
+        }
+        assertThat(controller.wcuPerSecond()).isEqualTo(1000);
+    }
+
+    @Test
+    void throttlingCutsTheRateDownToTheMinimum() {
+        ImportRateController controller = new ImportRateController(1000, 1000, NO_COOLDOWN);
+
+        controller.throttled();
+        assertThat(controller.wcuPerSecond()).isCloseTo(700, within(1e-9));
+        for (int i = 0; i < 100; i++) {
+            controller.throttled();
+        }
+        assertThat(controller.wcuPerSecond()).isEqualTo(10);
+    }
+
+    // chunks throttled by the same burst report it one after another, and only the first one cuts the rate
+    @Test
+    void throttlingWithinTheCooldownCutsTheRateOnce() {
+        ImportRateController controller = new ImportRateController(1000, 1000, LONG_COOLDOWN);
+
+        controller.throttled();
+        controller.throttled();
+        controller.throttled();
+
+        assertThat(controller.wcuPerSecond()).isCloseTo(700, within(1e-9));
+    }
+
+    @Test
+    void reservationsAreSpacedByTheirUnitsAtTheCurrentRate() {
+        ImportRateController controller = new ImportRateController(1000, 100, NO_COOLDOWN);
+
+        long first = controller.reserve(50);
+        long second = controller.reserve(50);
+        long third = controller.reserve(50);
+
+        assertThat(first).isZero();
+        assertThat(second).isBetween(TimeUnit.MILLISECONDS.toNanos(400), TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(third).isBetween(TimeUnit.MILLISECONDS.toNanos(900), TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    // a controller idle for a while does not build up a burst of units to send at once
+    @Test
+    void idleTimeIsNotSavedUpForLaterReservations() throws InterruptedException {
+        ImportRateController controller = new ImportRateController(1000, 100, NO_COOLDOWN);
+        controller.reserve(1);
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        assertThat(controller.reserve(50)).isZero();
+        assertThat(controller.reserve(50)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(400));
+    }
+}
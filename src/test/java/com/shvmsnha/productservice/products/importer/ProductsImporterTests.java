@@ -0,0 +1,126 @@
+package com.shvmsnha.productservice.products.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.products.dto.ImportReportDto;
+import com.shvmsnha.productservice.products.dto.ProductBatchItemResultDto;
+import com.shvmsnha.productservice.products.enums.BatchItemStatus;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+class ProductsImporterTests {
+
+    // a header of 10 bytes and rows of 12, so a block of 40 bytes holds three rows
+    private static final String HEADER = "code,name\n";
+    private static final int ROWS = 9;
+    private static final int BLOCK_SIZE = 40;
+
+    @TempDir
+    private Path directory;
+
+    private final ProductsRepository productsRepository = mock(ProductsRepository.class);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private volatile String failOnCode;
+    private ProductsImporter importer;
+    private Path file;
+    private Path checkpoint;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        importer = new ProductsImporter(productsRepository, new ObjectMapper(), BLOCK_SIZE, 2, 100, 1, 1,
+            1_000_000, 1_000_000, Duration.ofSeconds(1), Duration.ofHours(1));
+        StringBuilder content = new StringBuilder(HEADER);
+        for (int i = 0; i < ROWS; i++) {
+            content.append(String.format("C-%02d,name %d\n", i, i));
+        }
+        file = Files.writeString(directory.resolve("products.csv"), content);
+        checkpoint = directory.resolve("products.csv.checkpoint");
+        when(productsRepository.importAll(anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            if (products.stream().anyMatch(product -> product.getCode().equals(failOnCode))) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Import failed"));
+            }
+            List<ProductBatchItemResultDto> results = new ArrayList<>();
+            for (int i = 0; i < products.size(); i++) {
+                written.add(products.get(i).getCode());
+                results.add(new ProductBatchItemResultDto(i, products.get(i).getId(), products.get(i).getCode(),
+                    BatchItemStatus.CREATED, null));
+            }
+            return CompletableFuture.completedFuture(results);
+        });
+    }
+
+    @Test
+    void importWritesEveryRowAndRemovesTheCheckpoint() throws IOException {
+        ImportReportDto report = importer.importFile(file, ImportFormat.CSV, false);
+
+        assertThat(written).isEqualTo(codes(0, ROWS));
+        assertThat(report.created()).isEqualTo(ROWS);
+        assertThat(report.startOffset()).isEqualTo(HEADER.length());
+        assertThat(report.endOffset()).isEqualTo(Files.size(file));
+        assertThat(checkpoint).doesNotExist();
+    }
+
+    @Test
+    void failedImportIsResumedFromTheBlockAfterTheLastOneWritten() throws IOException {
+        failOnCode = "C-04";
+        assertThatThrownBy(() -> importer.importFile(file, ImportFormat.CSV, false))
+            .isInstanceOf(IOException.class);
+
+        long firstBlockEnd = HEADER.length() + 3 * 12;
+        assertThat(written).isEqualTo(codes(0, 3));
+        assertThat(Files.readString(checkpoint)).isEqualTo(firstBlockEnd + ":" + Files.size(file));
+
+        failOnCode = null;
+        written.clear();
+        ImportReportDto report = importer.importFile(file, ImportFormat.CSV, true);
+
+        assertThat(written).isEqualTo(codes(3, ROWS));
+        assertThat(report.startOffset()).isEqualTo(firstBlockEnd);
+        assertThat(report.created()).isEqualTo(ROWS - 3);
+        assertThat(checkpoint).doesNotExist();
+    }
+
+    @Test
+    void resumeWithoutACheckpointStartsAtTheFirstRow() throws IOException {
+        ImportReportDto report = importer.importFile(file, ImportFormat.CSV, true);
+
+        assertThat(report.startOffset()).isEqualTo(HEADER.length());
+        assertThat(written).isEqualTo(codes(0, ROWS));
+    }
+
+    @Test
+    void checkpointOfAnotherFileIsRejected() throws IOException {
+        Files.writeString(checkpoint, "22:" + (Files.size(file) + 1));
+
+        assertThatThrownBy(() -> importer.importFile(file, ImportFormat.CSV, true))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("different file");
+        verify(productsRepository, never()).importAll(anyList());
+    }
+
+    private static List<String> codes(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> String.format("C-%02d", i)).toList();
+    }
+}
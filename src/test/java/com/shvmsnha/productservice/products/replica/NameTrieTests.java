@@ -0,0 +1,72 @@
+package com.shvmsnha.productservice.products.replica;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class NameTrieTests {
+
+    private final NameTrie trie = new NameTrie();
+
+    @Test
+    void prefixFindsEveryNameStartingWithIt() {
+        trie.add("desk", "p1");
+        trie.add("desk lamp", "p2");
+        trie.add("dresser", "p3");
+        trie.add("chair", "p4");
+
+        assertThat(trie.withPrefix("d")).containsExactlyInAnyOrder("p1", "p2", "p3");
+        assertThat(trie.withPrefix("desk")).containsExactlyInAnyOrder("p1", "p2");
+        assertThat(trie.withPrefix("desk lamp")).containsExactly("p2");
+        assertThat(trie.withPrefix("desks")).isEmpty();
+        assertThat(trie.withPrefix("")).containsExactlyInAnyOrder("p1", "p2", "p3", "p4");
+    }
+
+    @Test
+    void productsWithTheSameNameAreKeptApart() {
+        trie.add("desk", "p1");
+        trie.add("desk", "p2");
+
+        trie.remove("desk", "p1");
+
+        assertThat(trie.withPrefix("desk")).containsExactly("p2");
+    }
+
+    @Test
+    void removingANameKeepsTheNamesItIsAPrefixOfAndThatArePrefixesOfIt() {
+        trie.add("desk", "p1");
+        trie.add("desk lamp", "p2");
+        trie.add("desk lamp shade", "p3");
+
+        trie.remove("desk lamp", "p2");
+
+        assertThat(trie.withPrefix("desk")).containsExactlyInAnyOrder("p1", "p3");
+        assertThat(trie.withPrefix("desk lamp")).containsExactly("p3");
+    }
+
+    @Test
+    void removingEveryNamePrunesEveryNode() {
+        trie.add("desk", "p1");
+        trie.add("desk lamp", "p2");
+        trie.add("dresser", "p3");
+
+        trie.remove("desk lamp", "p2");
+        assertThat(trie.isEmpty()).isFalse();
+        trie.remove("dresser", "p3");
+        trie.remove("desk", "p1");
+
+        assertThat(trie.isEmpty()).isTrue();
+        assertThat(trie.withPrefix("")).isEmpty();
+    }
+
+    @Test
+    void removingAMissingNameOrProductChangesNothing() {
+        trie.add("desk", "p1");
+
+        trie.remove("desk", "p2");
+        trie.remove("des", "p1");
+        trie.remove("desk lamp", "p1");
+
+        assertThat(trie.withPrefix("desk")).containsExactly("p1");
+    }
+}
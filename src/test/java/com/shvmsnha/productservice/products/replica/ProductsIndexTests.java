@@ -0,0 +1,147 @@
+package com.shvmsnha.productservice.products.replica;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+class ProductsIndexTests {
+
+    private final ProductsIndex index = new ProductsIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.put(product("p1", "Oak desk", 120, "desk"));
+        index.put(product("p2", "Pine desk", 80, "desk"));
+        index.put(product("p3", "Desk lamp", 25, "lamp"));
+        index.put(product("p4", "Floor lamp", 60, "lamp"));
+        index.put(product("p5", "Office chair", 80, "chair"));
+    }
+
+    @Test
+    void searchWithoutFiltersIsOrderedByPriceThenId() {
+        assertThat(ids(index.search(query(null, null, null, null), null, 10)))
+            .containsExactly("p3", "p4", "p2", "p5", "p1");
+    }
+
+    @Test
+    void priceRangeSearchStartsAtTheMinimumAndStopsAfterTheMaximum() {
+        assertThat(ids(index.search(query(60f, 80f, null, null), null, 10))).containsExactly("p4", "p2", "p5");
+        assertThat(ids(index.search(query(null, 24.9f, null, null), null, 10))).isEmpty();
+    }
+
+    @Test
+    void searchPagesContinueAfterTheGivenProduct() {
+        List<Product> first = index.search(query(null, null, null, null), null, 2);
+        List<Product> second = index.search(query(null, null, null, null), first.get(1), 2);
+        List<Product> third = index.search(query(null, null, null, null), second.get(1), 2);
+
+        assertThat(ids(first)).containsExactly("p3", "p4");
+        assertThat(ids(second)).containsExactly("p2", "p5");
+        assertThat(ids(third)).containsExactly("p1");
+    }
+
+    @Test
+    void modelAndNamePrefixSearchesAreOrderedAndPaged() {
+        assertThat(ids(index.search(query(null, null, "desk", null), null, 10))).containsExactly("p2", "p1");
+        assertThat(ids(index.search(query(null, null, null, "DESK"), null, 10))).containsExactly("p3");
+        assertThat(ids(index.search(query(null, null, "lamp", null), null, 1))).containsExactly("p3");
+        assertThat(ids(index.search(query(null, null, "lamp", null), ProductsIndex.position(25, "p3"), 1)))
+            .containsExactly("p4");
+    }
+
+    @Test
+    void modelAndNamePrefixTogetherMatchBoth() {
+        index.put(product("p6", "Desk organiser", 15, "desk"));
+
+        // the name narrows the desks down to one product
+        assertThat(ids(index.search(query(null, null, "desk", "desk"), null, 10))).containsExactly("p6");
+        // the model narrows the products named "o..." down to none, whichever set is searched
+        assertThat(ids(index.search(query(null, null, "lamp", "o"), null, 10))).isEmpty();
+        assertThat(ids(index.search(query(null, null, "chair", "o"), null, 10))).containsExactly("p5");
+        assertThat(ids(index.search(query(null, null, "missing", "o"), null, 10))).isEmpty();
+    }
+
+    @Test
+    void smallerCandidateSetIsSearched() {
+        Set<String> byModel = Set.of("p1", "p2");
+        Set<String> byName = Set.of("p1");
+
+        assertThat(ProductsIndex.smaller(null, byName)).isSameAs(byName);
+        assertThat(ProductsIndex.smaller(byModel, byName)).isSameAs(byName);
+        assertThat(ProductsIndex.smaller(byName, byModel)).isSameAs(byName);
+        // on a tie the set already chosen is kept
+        assertThat(ProductsIndex.smaller(byName, Set.of("p2"))).isSameAs(byName);
+    }
+
+    @Test
+    void putReplacesTheProductInEveryIndex() {
+        index.put(product("p3", "Reading light", 200, "light"));
+
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(ids(index.search(query(null, null, "lamp", null), null, 10))).containsExactly("p4");
+        assertThat(ids(index.search(query(null, null, null, "desk"), null, 10))).isEmpty();
+        assertThat(ids(index.search(query(null, null, null, "read"), null, 10))).containsExactly("p3");
+        assertThat(ids(index.search(query(null, null, null, null), null, 10))).endsWith("p3");
+    }
+
+    // a scan can deliver a copy older than one a write already applied
+    @Test
+    void olderVersionDoesNotReplaceANewerOne() {
+        Product newer = product("p7", "Stool", 30, "chair");
+        newer.setVersion(3L);
+        Product older = product("p7", "Old stool", 10, "chair");
+        older.setVersion(2L);
+
+        index.put(newer);
+        index.put(older);
+
+        assertThat(index.search(query(null, null, "chair", "stool"), null, 10))
+            .extracting(Product::getProductName).containsExactly("Stool");
+    }
+
+    @Test
+    void removedProductIsNotFoundByAnyIndex() {
+        index.remove("p2");
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(ids(index.search(query(null, null, "desk", null), null, 10))).containsExactly("p1");
+        assertThat(ids(index.search(query(null, null, null, "pine"), null, 10))).isEmpty();
+        assertThat(ids(index.search(query(80f, 80f, null, null), null, 10))).containsExactly("p5");
+    }
+
+    @Test
+    void laterChangesToAPutProductDoNotReachTheIndex() {
+        Product product = product("p8", "Shelf", 40, "shelf");
+        index.put(product);
+
+        product.setPrice(1);
+        product.setModel("desk");
+
+        assertThat(ids(index.search(query(null, null, "shelf", null), null, 10))).containsExactly("p8");
+        assertThat(index.search(query(null, null, "shelf", null), null, 10).get(0).getPrice()).isEqualTo(40);
+    }
+
+    private static ProductsQuery query(Float minPrice, Float maxPrice, String model, String namePrefix) {
+        return new ProductsQuery(minPrice, maxPrice, model, namePrefix);
+    }
+
+    private static Product product(String id, String name, float price, String model) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName(name);
+        product.setCode("CODE-" + id);
+        product.setPrice(price);
+        product.setModel(model);
+        return product;
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
@@ -0,0 +1,152 @@
+package com.shvmsnha.productservice.products.replica;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.shvmsnha.productservice.events.dto.EventType;
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.repositories.ProductsRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.PagePublisher;
+
+class ProductsReplicaTests {
+
+    private static final ProductsQuery ALL = new ProductsQuery(null, null, null, null);
+
+    private final ProductsRepository productsRepository = mock(ProductsRepository.class);
+    private ProductsReplica replica;
+
+    @BeforeEach
+    void setUp() {
+        // two scan segments, with products of the same price in both
+        segment(0, product("a", 10), product("c", 20), product("e", 30));
+        segment(1, product("d", 20), product("b", 20));
+        replica = new ProductsReplica(productsRepository, new SimpleMeterRegistry(), true, Duration.ofHours(1), 2, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replica.shutdown();
+    }
+
+    @Test
+    void searchIsUnavailableUntilTheFirstLoadCompletes() {
+        ProductException exception = catchThrowableOfType(() -> replica.search(ALL, 10, null), ProductException.class);
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.SEARCH_UNAVAILABLE);
+    }
+
+    @Test
+    void pagesFollowPriceThenIdAcrossEqualPrices() throws ProductException {
+        started();
+
+        List<List<String>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductsSearchPage page = replica.search(ALL, 2, cursor);
+            pages.add(ids(page));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(pages).containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+    }
+
+    @Test
+    void fullLastPageHasNoCursor() throws ProductException {
+        started();
+
+        ProductsSearchPage page = replica.search(ALL, 5, null);
+
+        assertThat(ids(page)).containsExactly("a", "b", "c", "d", "e");
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    // the cursor is a position rather than a product, so it still works once that product is gone
+    @Test
+    void cursorOfADeletedProductContinuesAfterItsPosition() throws ProductException {
+        started();
+        ProductsSearchPage first = replica.search(ALL, 2, null);
+
+        replica.apply(product("b", 20), EventType.PRODUCT_DELETED);
+        replica.apply(product("bb", 20), EventType.PRODUCT_CREATED);
+        ProductsSearchPage second = replica.search(ALL, 2, first.nextCursor());
+
+        assertThat(ids(second)).containsExactly("bb", "c");
+    }
+
+    @Test
+    void cursorPagesThroughAFilteredSearch() throws ProductException {
+        started();
+
+        ProductsSearchPage first = replica.search(new ProductsQuery(20f, 20f, null, null), 2, null);
+        ProductsSearchPage second = replica.search(new ProductsQuery(20f, 20f, null, null), 2, first.nextCursor());
+
+        assertThat(ids(first)).containsExactly("b", "c");
+        assertThat(ids(second)).containsExactly("d");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        started();
+
+        for (String cursor : List.of("%%%", "bm8tc2VwYXJhdG9y", "eno6YQ")) {
+            ProductException exception = catchThrowableOfType(() -> replica.search(ALL, 2, cursor), ProductException.class);
+            assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.INVALID_CURSOR);
+        }
+    }
+
+    private void started() {
+        replica.start();
+        await().atMost(Duration.ofSeconds(5)).until(replica::isReady);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void segment(int segment, Product... products) {
+        PagePublisher<Product> pages = mock(PagePublisher.class);
+        SdkPublisher<Product> items = mock(SdkPublisher.class);
+        when(productsRepository.scanSegment(eq(segment), anyInt(), anyInt())).thenReturn(pages);
+        when(pages.items()).thenReturn(items);
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            for (Product product : products) {
+                consumer.accept(product);
+            }
+            return CompletableFuture.completedFuture(null);
+        }).when(items).subscribe(any(Consumer.class));
+    }
+
+    private static Product product(String id, float price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName("Product " + id);
+        product.setCode("CODE-" + id);
+        product.setPrice(price);
+        return product;
+    }
+
+    private static List<String> ids(ProductsSearchPage page) {
+        return page.items().stream().map(Product::getId).toList();
+    }
+}
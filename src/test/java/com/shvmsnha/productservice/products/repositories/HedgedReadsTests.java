@@ -0,0 +1,170 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HedgedReadsTests {
+
+    private static final int MIN_SAMPLES = 64;
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(20);
+    // long enough for a hedge that was going to be sent to have been
+    private static final Duration NO_HEDGE_WAIT = Duration.ofMillis(200);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // the futures of the calls made, primary first
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void disabledReadsMakeOneCall() {
+        HedgedReads hedgedReads = hedgedReads(false, 10);
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        assertThat(hedgedReads.read(() -> call)).isSameAs(call);
+    }
+
+    @Test
+    void readsAreNotHedgedBeforeEnoughLatenciesAreSeen() throws InterruptedException {
+        HedgedReads hedgedReads = hedgedReads(true, 10);
+
+        hedgedReads.read(this::pendingCall);
+        TimeUnit.MILLISECONDS.sleep(NO_HEDGE_WAIT.toMillis());
+
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    void slowReadIsHedgedAndCompletesWithTheHedge() {
+        HedgedReads hedgedReads = warmedUp(10);
+
+        CompletableFuture<String> result = hedgedReads.read(this::pendingCall);
+        await().atMost(Duration.ofSeconds(5)).until(() -> calls.size() == 2);
+        calls.get(1).complete("hedge");
+
+        assertThat(result.join()).isEqualTo("hedge");
+        assertThat(meterRegistry.counter("products.hedge.sent", "operation", "test").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("products.hedge.won", "operation", "test").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedPrimaryWaitsForTheHedge() {
+        HedgedReads hedgedReads = warmedUp(10);
+
+        CompletableFuture<String> result = hedgedReads.read(this::pendingCall);
+        await().atMost(Duration.ofSeconds(5)).until(() -> calls.size() == 2);
+        calls.get(0).completeExceptionally(new IllegalStateException("primary"));
+
+        assertThat(result).isNotDone();
+        calls.get(1).complete("hedge");
+        assertThat(result.join()).isEqualTo("hedge");
+    }
+
+    @Test
+    void readFailsOnceEveryCallHasFailed() {
+        HedgedReads hedgedReads = warmedUp(10);
+
+        CompletableFuture<String> result = hedgedReads.read(this::pendingCall);
+        await().atMost(Duration.ofSeconds(5)).until(() -> calls.size() == 2);
+        calls.get(1).completeExceptionally(new IllegalStateException("hedge"));
+        assertThat(result).isNotDone();
+        calls.get(0).completeExceptionally(new IllegalStateException("primary"));
+
+        assertThat(catchThrowable(result::join)).isInstanceOf(CompletionException.class)
+            .hasRootCauseMessage("primary");
+    }
+
+    // the hedge counts as a completed call even when it throws instead of returning a future
+    @Test
+    void hedgeThatThrowsDoesNotKeepAFailedReadPending() {
+        HedgedReads hedgedReads = warmedUp(10);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        List<Boolean> hedged = new CopyOnWriteArrayList<>();
+        Supplier<CompletableFuture<String>> call = () -> {
+            if (hedged.isEmpty()) {
+                hedged.add(false);
+                return primary;
+            }
+            hedged.add(true);
+            throw new IllegalStateException("hedge");
+        };
+
+        CompletableFuture<String> result = hedgedReads.read(call);
+        await().atMost(Duration.ofSeconds(5)).until(() -> hedged.size() == 2);
+        primary.completeExceptionally(new IllegalStateException("primary"));
+
+        await().atMost(Duration.ofSeconds(5)).until(result::isDone);
+        assertThat(result).isCompletedExceptionally();
+    }
+
+    @Test
+    void hedgesStopWhenTheBudgetIsSpent() throws InterruptedException {
+        // without a share per read, only the initial budget of ten hedges is there to spend
+        HedgedReads hedgedReads = warmedUp(0);
+
+        for (int hedge = 0; hedge < 10; hedge++) {
+            int expected = calls.size() + 2;
+            hedgedReads.read(this::pendingCall);
+            await().atMost(Duration.ofSeconds(5)).until(() -> calls.size() == expected);
+        }
+        hedgedReads.read(this::pendingCall);
+        TimeUnit.MILLISECONDS.sleep(NO_HEDGE_WAIT.toMillis());
+
+        assertThat(calls).hasSize(21);
+        assertThat(meterRegistry.counter("products.hedge.sent", "operation", "test").count()).isEqualTo(10);
+    }
+
+    @Test
+    void readsRefillTheBudget() {
+        // each read adds a whole hedge, so every read can be hedged however many there are
+        HedgedReads hedgedReads = warmedUp(100);
+
+        for (int read = 0; read < 15; read++) {
+            int expected = calls.size() + 2;
+            hedgedReads.read(this::pendingCall);
+            await().atMost(Duration.ofSeconds(5)).until(() -> calls.size() == expected);
+        }
+
+        assertThat(meterRegistry.counter("products.hedge.sent", "operation", "test").count()).isEqualTo(15);
+    }
+
+    private HedgedReads hedgedReads(boolean enabled, double budgetPercent) {
+        return new HedgedReads(enabled, scheduler, meterRegistry, "test", 0.5, HEDGE_DELAY.toNanos(), MIN_SAMPLES,
+            budgetPercent);
+    }
+
+    // Fast reads until the hedge delay is set; they are far below HEDGE_DELAY, which it is then held at.
+    private HedgedReads warmedUp(double budgetPercent) {
+        HedgedReads hedgedReads = hedgedReads(true, budgetPercent);
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            hedgedReads.read(() -> CompletableFuture.completedFuture("fast")).join();
+        }
+        return hedgedReads;
+    }
+
+    private CompletableFuture<String> pendingCall() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    }
+}
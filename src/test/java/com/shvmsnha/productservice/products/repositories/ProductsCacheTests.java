@@ -0,0 +1,137 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ProductsCacheTests {
+
+    // product(...) weighs 160 bytes of overhead plus 2 bytes per character: 220 bytes
+    private static final int PRODUCT_WEIGHT = 220;
+    private static final Duration NEGATIVE_CODE_TTL = Duration.ofMillis(100);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void productIsLoadedOnceAndThenServedFromTheCache() {
+        ProductsCache cache = cache(1_000_000);
+
+        cache.getById("p1", this::load).join();
+        Product cached = cache.getById("p1", this::load).join();
+
+        assertThat(cached.getId()).isEqualTo("p1");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getIfCached("p1")).isSameAs(cached);
+    }
+
+    @Test
+    void writesReplaceOrInvalidateTheCachedProduct() {
+        ProductsCache cache = cache(1_000_000);
+        cache.getById("p1", this::load).join();
+
+        Product written = product("p1");
+        written.setVersion(2L);
+        cache.put(written);
+        assertThat(cache.getById("p1", this::load).join()).isSameAs(written);
+
+        cache.invalidate("p1");
+        assertThat(cache.getIfCached("p1")).isNull();
+        cache.getById("p1", this::load).join();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void productsAreEvictedByWeight() {
+        ProductsCache cache = cache(10 * PRODUCT_WEIGHT);
+
+        IntStream.range(0, 100).forEach(i -> cache.put(product(String.format("p%02d", i))));
+
+        // eviction runs asynchronously after the writes
+        await().atMost(Duration.ofSeconds(5)).until(() -> cached(cache) <= 10);
+        assertThat(cached(cache)).isPositive();
+    }
+
+    @Test
+    void missingCodeIsCachedForTheNegativeTtl() throws InterruptedException {
+        ProductsCache cache = cache(1_000_000);
+        AtomicInteger queries = new AtomicInteger();
+
+        assertThat(cache.getIdByCode("A-1", code -> query(queries, null)).join()).isNull();
+        assertThat(cache.getIdByCode("A-1", code -> query(queries, "p1")).join()).isNull();
+        assertThat(queries).hasValue(1);
+
+        Thread.sleep(NEGATIVE_CODE_TTL.multipliedBy(2).toMillis());
+        assertThat(cache.getIdByCode("A-1", code -> query(queries, "p1")).join()).isEqualTo("p1");
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void codeWritesReplaceOrInvalidateTheCachedMapping() {
+        ProductsCache cache = cache(1_000_000);
+        AtomicInteger queries = new AtomicInteger();
+
+        cache.putCode("A-1", "p1");
+        assertThat(cache.getIdByCode("A-1", code -> query(queries, "p2")).join()).isEqualTo("p1");
+        cache.invalidateCode("A-1");
+        assertThat(cache.getIdByCode("A-1", code -> query(queries, "p2")).join()).isEqualTo("p2");
+        // a product without a code has no mapping to cache
+        cache.putCode(null, "p3");
+
+        assertThat(queries).hasValue(1);
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        ProductsCache cache = new ProductsCache(new SimpleMeterRegistry(), false, 1_000_000, Duration.ofMinutes(1), 1000,
+            Duration.ofMinutes(1), NEGATIVE_CODE_TTL);
+
+        cache.put(product("p1"));
+        cache.getById("p1", this::load).join();
+        cache.getById("p1", this::load).join();
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getIfCached("p1")).isNull();
+    }
+
+    private static ProductsCache cache(long maxWeightBytes) {
+        return new ProductsCache(new SimpleMeterRegistry(), true, maxWeightBytes, Duration.ofMinutes(1), 1000,
+            Duration.ofMinutes(1), NEGATIVE_CODE_TTL);
+    }
+
+    private static long cached(ProductsCache cache) {
+        return IntStream.range(0, 100)
+            .filter(i -> cache.getIfCached(String.format("p%02d", i)) != null)
+            .count();
+    }
+
+    private CompletableFuture<Product> load(String productId) {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture(product(productId));
+    }
+
+    private static CompletableFuture<String> query(AtomicInteger queries, String productId) {
+        queries.incrementAndGet();
+        return CompletableFuture.completedFuture(productId);
+    }
+
+    // 30 characters of strings
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName("Product " + id);
+        product.setCode("C-" + id);
+        product.setModel("model");
+        product.setProductUrl("url" + id);
+        return product;
+    }
+}
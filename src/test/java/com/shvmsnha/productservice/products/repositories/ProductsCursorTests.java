@@ -0,0 +1,38 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class ProductsCursorTests {
+
+    @Test
+    void cursorRoundTripsTheLastEvaluatedKey() {
+        Map<String, AttributeValue> lastEvaluatedKey = Map.of("id", AttributeValue.fromS("7f3c-ü/+?"));
+
+        String cursor = ProductsCursor.encode(lastEvaluatedKey);
+
+        // safe to pass as a query parameter as is
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+        assertThat(ProductsCursor.decode(cursor)).isEqualTo(lastEvaluatedKey);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        assertThat(ProductsCursor.encode(null)).isNull();
+        assertThat(ProductsCursor.encode(Map.of())).isNull();
+        assertThat(ProductsCursor.decode(null)).isNull();
+        assertThat(ProductsCursor.decode(" ")).isNull();
+    }
+
+    @Test
+    void cursorThatIsNotBase64IsRejected() {
+        assertThat(catchThrowable(() -> ProductsCursor.decode("not a cursor!")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
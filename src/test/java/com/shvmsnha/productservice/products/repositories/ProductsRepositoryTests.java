@@ -0,0 +1,398 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.shvmsnha.productservice.localperf.FaultInjection;
+import com.shvmsnha.productservice.localperf.InMemoryDynamoDbAsyncClient;
+import com.shvmsnha.productservice.products.dto.ProductBatchItemResultDto;
+import com.shvmsnha.productservice.products.dto.ProductPatchDto;
+import com.shvmsnha.productservice.products.enums.BatchItemStatus;
+import com.shvmsnha.productservice.products.enums.ProductErrors;
+import com.shvmsnha.productservice.products.exceptions.ProductException;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.models.ProductCodeReservation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+class ProductsRepositoryTests {
+
+    private static final String TABLE = "products";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConcurrentWriterClient client;
+    private ProductsRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        client = new ConcurrentWriterClient();
+        client.createTable(TABLE, "id", Map.of("codeIdx", "code"));
+        ProductsCache productsCache = new ProductsCache(meterRegistry, true, 1_000_000, Duration.ofMinutes(1), 1000,
+            Duration.ofMinutes(1), Duration.ofSeconds(1));
+        repository = new ProductsRepository(
+            DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).build(),
+            DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).extensions().build(),
+            client, productsCache, meterRegistry, TABLE, MAX_ATTEMPTS, 1, 10, 2, false, 0.95, Duration.ofMillis(5), 100, 10,
+            false);
+    }
+
+    @Test
+    void createReservesTheCode() {
+        repository.create(product("p1", "A-1")).join();
+
+        assertThat(repository.getById("p1").join().getVersion()).isEqualTo(1L);
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+    }
+
+    @Test
+    void createWithAReservedCodeIsRejected() {
+        repository.create(product("p1", "A-1")).join();
+
+        ProductException exception = failure(repository.create(product("p2", "A-1")));
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS);
+        assertThat(exception.getProductId()).isEqualTo("p1");
+        assertThat(stored("p2")).isNull();
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+    }
+
+    @Test
+    void productWithoutACodeIsRejected() {
+        for (String code : new String[] { null, "", "  " }) {
+            assertThat(failure(repository.create(product("p1", code))).getProductErrors())
+                .isEqualTo(ProductErrors.PRODUCT_CODE_REQUIRED);
+        }
+        repository.create(product("p2", "A-2")).join();
+
+        assertThat(failure(repository.update(product("p2", null), "p2", null)).getProductErrors())
+            .isEqualTo(ProductErrors.PRODUCT_CODE_REQUIRED);
+        assertThat(stored("p1")).isNull();
+        assertThat(stored(ProductCodeReservation.idFor(null))).isNull();
+        assertThat(repository.getById("p2").join().getCode()).isEqualTo("A-2");
+    }
+
+    @Test
+    void productsWithoutACodeFailInABatchWithoutAffectingTheOthers() {
+        List<ProductBatchItemResultDto> results = repository.createAll(List.of(product("p1", null),
+            product("p2", "A-2"), product("p3", ""))).join();
+
+        assertThat(results).extracting(ProductBatchItemResultDto::status)
+            .containsExactly(BatchItemStatus.FAILED, BatchItemStatus.CREATED, BatchItemStatus.FAILED);
+        assertThat(stored("p1")).isNull();
+        assertThat(reservationOwner("A-2")).isEqualTo("p2");
+    }
+
+    @Test
+    void codeChangeReleasesTheOldReservation() {
+        repository.create(product("p1", "A-1")).join();
+
+        Product updated = repository.update(product("p1", "B-1"), "p1", null).join();
+
+        assertThat(updated.getVersion()).isEqualTo(2L);
+        assertThat(reservationOwner("A-1")).isNull();
+        assertThat(reservationOwner("B-1")).isEqualTo("p1");
+        // the released code can be taken by another product
+        repository.create(product("p2", "A-1")).join();
+        assertThat(reservationOwner("A-1")).isEqualTo("p2");
+    }
+
+    @Test
+    void codeChangeToAReservedCodeIsRejectedAndKeepsBothReservations() {
+        repository.create(product("p1", "A-1")).join();
+        repository.create(product("p2", "B-1")).join();
+
+        ProductException exception = failure(repository.update(product("p1", "B-1"), "p1", null));
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_CODE_ALREADY_EXISTS);
+        assertThat(exception.getProductId()).isEqualTo("p2");
+        assertThat(repository.getById("p1").join().getCode()).isEqualTo("A-1");
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+        assertThat(reservationOwner("B-1")).isEqualTo("p2");
+    }
+
+    @Test
+    void deleteReleasesTheReservation() {
+        repository.create(product("p1", "A-1")).join();
+
+        Product deleted = repository.deleteById("p1").join();
+
+        assertThat(deleted.getId()).isEqualTo("p1");
+        assertThat(stored("p1")).isNull();
+        assertThat(reservationOwner("A-1")).isNull();
+        repository.create(product("p2", "A-1")).join();
+        assertThat(reservationOwner("A-1")).isEqualTo("p2");
+    }
+
+    @Test
+    void reservationsAreNotReachableById() {
+        repository.create(product("p1", "A-1")).join();
+
+        assertThat(repository.getById(ProductCodeReservation.idFor("A-1")).join()).isNull();
+        assertThat(repository.deleteById(ProductCodeReservation.idFor("A-1")).join()).isNull();
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+    }
+
+    // the cached product is behind one another task wrote, so the first write fails its condition
+    @Test
+    void updateOfAStaleCachedProductIsRetriedWithAConsistentRead() {
+        repository.create(product("p1", "A-1")).join();
+        writeElsewhere("p1", product -> product.setProductName("Renamed"));
+
+        Product updated = repository.update(product("p1", "A-1"), "p1", 2L).join();
+
+        assertThat(updated.getVersion()).isEqualTo(3L);
+        assertThat(Product.TABLE_SCHEMA.mapToItem(stored("p1")).getVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void updateWithoutAnExpectedVersionIsRetriedWhenTheCacheIsStale() {
+        repository.create(product("p1", "A-1")).join();
+        writeElsewhere("p1", product -> product.setProductName("Renamed"));
+
+        Product updated = repository.update(product("p1", "A-1"), "p1", null).join();
+
+        assertThat(updated.getVersion()).isEqualTo(3L);
+        assertThat(Product.TABLE_SCHEMA.mapToItem(stored("p1")).getProductName()).isEqualTo("Product p1");
+    }
+
+    @Test
+    void deleteOfAProductWhoseCodeChangedElsewhereReleasesItsCurrentCode() {
+        repository.create(product("p1", "A-1")).join();
+        writeElsewhere("p1", product -> product.setCode("B-1"));
+        client.load(TABLE, ProductCodeReservation.TABLE_SCHEMA.itemToMap(ProductCodeReservation.of("B-1", "p1"), true));
+
+        repository.deleteById("p1").join();
+
+        assertThat(stored("p1")).isNull();
+        assertThat(reservationOwner("B-1")).isNull();
+    }
+
+    @Test
+    void writeThatKeepsLosingTheRaceIsRejected() {
+        repository.create(product("p1", "A-1")).join();
+        client.beforeWrite = () -> writeElsewhere("p1", product -> product.setProductName("Renamed"));
+
+        assertThat(failure(repository.update(product("p1", "A-1"), "p1", null)).getProductErrors())
+            .isEqualTo(ProductErrors.PRODUCT_CONCURRENTLY_MODIFIED);
+        assertThat(failure(repository.update(product("p1", "A-1"), "p1", 3L)).getProductErrors())
+            .isEqualTo(ProductErrors.PRODUCT_VERSION_MISMATCH);
+    }
+
+    // Within one transaction a product is cancelled for its own reason, or only because another one failed.
+    @Test
+    void cancellationReasonsAreMappedToEachProduct() {
+        repository.create(product("px", "B-1")).join();
+        repository.create(product("p3", "C-1")).join();
+
+        List<ProductBatchItemResultDto> results = repository.createAll(List.of(product("p1", "A-1"),
+            product("p2", "B-1"), product("p3", "C-2"), product("p4", "D-1"), product("p5", "A-1"))).join();
+
+        assertThat(results).extracting(ProductBatchItemResultDto::status).containsExactly(BatchItemStatus.CREATED,
+            BatchItemStatus.CODE_ALREADY_EXISTS, BatchItemStatus.FAILED, BatchItemStatus.CREATED,
+            BatchItemStatus.CODE_ALREADY_EXISTS);
+        assertThat(results).extracting(ProductBatchItemResultDto::existingProductId)
+            .containsExactly(null, "px", null, null, "p1");
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+        assertThat(reservationOwner("D-1")).isEqualTo("p4");
+        assertThat(reservationOwner("C-2")).isNull();
+        assertThat(Product.TABLE_SCHEMA.mapToItem(stored("p3")).getCode()).isEqualTo("C-1");
+    }
+
+    @Test
+    void importWithACodeReservedByAnotherProductKeepsTheReplacedProduct() {
+        repository.create(product("p1", "A-1")).join();
+        repository.create(product("p2", "B-1")).join();
+
+        List<ProductBatchItemResultDto> results = repository.importAll(List.of(product("p1", "B-1"),
+            product("p3", "C-1"))).join();
+
+        assertThat(results).extracting(ProductBatchItemResultDto::status)
+            .containsExactly(BatchItemStatus.CODE_ALREADY_EXISTS, BatchItemStatus.CREATED);
+        assertThat(results.get(0).existingProductId()).isEqualTo("p2");
+        assertThat(Product.TABLE_SCHEMA.mapToItem(stored("p1")).getCode()).isEqualTo("A-1");
+        assertThat(reservationOwner("A-1")).isEqualTo("p1");
+    }
+
+    @Test
+    void batchWriteGivesUpAfterMaxAttempts() {
+        repository.create(product("p1", "A-1")).join();
+        AtomicInteger writes = new AtomicInteger();
+        client.beforeWrite = () -> {
+            writes.incrementAndGet();
+            writeElsewhere("p1", product -> product.setProductName("Renamed"));
+        };
+
+        List<ProductBatchItemResultDto> results = repository.importAll(List.of(product("p1", "A-1"))).join();
+
+        assertThat(results).extracting(ProductBatchItemResultDto::status).containsExactly(BatchItemStatus.FAILED);
+        assertThat(writes).hasValue(MAX_ATTEMPTS);
+    }
+
+    @Test
+    void patchChangesOnlyTheGivenAttributes() {
+        repository.create(product("p1", "A-1")).join();
+
+        Product patched = repository.patch(new ProductPatchDto(null, null, 25f, null, null), "p1", null).join();
+
+        assertThat(patched.getVersion()).isEqualTo(2L);
+        Product stored = Product.TABLE_SCHEMA.mapToItem(stored("p1"));
+        assertThat(stored.getPrice()).isEqualTo(25f);
+        assertThat(stored.getVersion()).isEqualTo(2L);
+        assertThat(stored.getProductName()).isEqualTo("Product p1");
+        assertThat(stored.getCode()).isEqualTo("A-1");
+        assertThat(stored.getModel()).isEqualTo("model");
+        assertThat(stored.getProductUrl()).isEqualTo("https://example.com/products/p1");
+        assertThat(repository.getById("p1").join().getPrice()).isEqualTo(25f);
+    }
+
+    @Test
+    void patchThatChangesTheCodeMovesTheReservation() {
+        repository.create(product("p1", "A-1")).join();
+
+        Product patched = repository.patch(new ProductPatchDto(null, "B-1", null, null, null), "p1", 1L).join();
+
+        assertThat(patched.getVersion()).isEqualTo(2L);
+        Product stored = Product.TABLE_SCHEMA.mapToItem(stored("p1"));
+        assertThat(stored.getCode()).isEqualTo("B-1");
+        assertThat(stored.getProductName()).isEqualTo("Product p1");
+        assertThat(reservationOwner("B-1")).isEqualTo("p1");
+        assertThat(reservationOwner("A-1")).isNull();
+        assertThat(repository.getByCode("B-1").join().getId()).isEqualTo("p1");
+    }
+
+    @Test
+    void patchWithAStaleVersionOrOfAMissingProductIsRejected() {
+        repository.create(product("p1", "A-1")).join();
+        repository.patch(new ProductPatchDto("Renamed", null, null, null, null), "p1", null).join();
+
+        ProductException stale = failure(repository.patch(new ProductPatchDto(null, null, 25f, null, null), "p1", 1L));
+        ProductException missing = failure(repository.patch(new ProductPatchDto(null, null, 25f, null, null), "p2", null));
+
+        assertThat(stale.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_VERSION_MISMATCH);
+        assertThat(missing.getProductErrors()).isEqualTo(ProductErrors.PRODUCT_NOT_FOUND);
+        assertThat(stored("p2")).isNull();
+        assertThat(Product.TABLE_SCHEMA.mapToItem(stored("p1")).getPrice()).isEqualTo(10f);
+    }
+
+    // the controller rejects an empty patch; one that reaches the repository only bumps the version
+    @Test
+    void patchWithoutAttributesOnlyBumpsTheVersion() {
+        repository.create(product("p1", "A-1")).join();
+
+        Product patched = repository.patch(new ProductPatchDto(null, null, null, null, null), "p1", 1L).join();
+
+        assertThat(patched.getVersion()).isEqualTo(2L);
+        Map<String, AttributeValue> stored = new HashMap<>(stored("p1"));
+        stored.remove("version");
+        Map<String, AttributeValue> created = new HashMap<>(Product.TABLE_SCHEMA.itemToMap(product("p1", "A-1"), true));
+        assertThat(stored).isEqualTo(created);
+    }
+
+    @Test
+    void pagesFollowTheCursorAndSkipReservations() {
+        for (String id : new String[] { "p1", "p2", "p3" }) {
+            repository.create(product(id, "A-" + id)).join();
+        }
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Product> page = repository.getPage(2, cursor).join();
+            page.items().forEach(product -> ids.add(product.getId()));
+            cursor = ProductsCursor.encode(page.lastEvaluatedKey());
+        } while (cursor != null);
+
+        assertThat(ids).containsExactlyInAnyOrder("p1", "p2", "p3");
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() {
+        ProductException exception = failure(repository.getPage(2, "not a cursor!"));
+
+        assertThat(exception.getProductErrors()).isEqualTo(ProductErrors.INVALID_CURSOR);
+        assertThat(exception.getProductErrors().getHttpStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private Map<String, AttributeValue> stored(String id) {
+        Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder()
+            .tableName(TABLE)
+            .key(Map.of("id", AttributeValue.fromS(id)))
+            .consistentRead(true)
+            .build()).join().item();
+        return item == null || item.isEmpty() ? null : item;
+    }
+
+    private String reservationOwner(String code) {
+        Map<String, AttributeValue> reservation = stored(ProductCodeReservation.idFor(code));
+        return reservation == null ? null : reservation.get("productId").s();
+    }
+
+    // a write of another task: the product as it is stored, changed and with the next version
+    private void writeElsewhere(String id, Consumer<Product> change) {
+        Product product = Product.TABLE_SCHEMA.mapToItem(stored(id));
+        change.accept(product);
+        product.setVersion(product.getVersion() + 1);
+        client.load(TABLE, Product.TABLE_SCHEMA.itemToMap(product, true));
+    }
+
+    private static ProductException failure(CompletableFuture<?> future) {
+        Throwable failure = catchThrowable(future::join);
+        assertThat(failure).isInstanceOf(CompletionException.class).hasCauseInstanceOf(ProductException.class);
+        return (ProductException) failure.getCause();
+    }
+
+    private static Product product(String id, String code) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName("Product " + id);
+        product.setCode(code);
+        product.setPrice(10);
+        product.setModel("model");
+        product.setProductUrl("https://example.com/products/" + id);
+        return product;
+    }
+
+    // no latency and no errors, with responses completed on the calling thread; `beforeWrite` runs before
+    // every conditional write, as a write of another task that lands just before it would
+    private static final class ConcurrentWriterClient extends InMemoryDynamoDbAsyncClient {
+        private volatile Runnable beforeWrite = () -> { };
+
+        private ConcurrentWriterClient() {
+            super(new FaultInjection(Duration.ZERO, Duration.ZERO, 0, Runnable::run, IllegalStateException::new));
+        }
+
+        @Override
+        public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+            beforeWrite.run();
+            return super.updateItem(request);
+        }
+
+        @Override
+        public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+            beforeWrite.run();
+            return super.transactWriteItems(request);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.shvmsnha.productservice.products.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SingleFlightTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(meterRegistry, "id");
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void concurrentLoadsOfAKeyShareOneCall() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.load("p1", key -> load(call));
+        CompletableFuture<String> second = singleFlight.load("p1", key -> load(call));
+        call.complete("product");
+
+        assertThat(loads).hasValue(1);
+        assertThat(first.join()).isEqualTo("product");
+        assertThat(second.join()).isEqualTo("product");
+        assertThat(calls("issued")).isEqualTo(1);
+        assertThat(calls("coalesced")).isEqualTo(1);
+    }
+
+    @Test
+    void loadsOfDifferentKeysAreNotCoalesced() {
+        singleFlight.load("p1", key -> load(new CompletableFuture<>()));
+        singleFlight.load("p2", key -> load(new CompletableFuture<>()));
+
+        assertThat(loads).hasValue(2);
+        assertThat(calls("coalesced")).isZero();
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotAffectTheOthers() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.load("p1", key -> load(call));
+        CompletableFuture<String> second = singleFlight.load("p1", key -> load(call));
+
+        first.cancel(false);
+        call.complete("product");
+
+        assertThat(call).isNotCancelled();
+        assertThat(second.join()).isEqualTo("product");
+    }
+
+    // nothing is cached: a load after the previous one completed is issued again
+    @Test
+    void keyIsReleasedWhenTheLoadCompletes() {
+        singleFlight.load("p1", key -> load(CompletableFuture.completedFuture("old"))).join();
+
+        CompletableFuture<String> next = singleFlight.load("p1", key -> load(CompletableFuture.completedFuture("new")));
+
+        assertThat(next.join()).isEqualTo("new");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void keyIsReleasedWhenTheLoadFails() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.load("p1", key -> load(call));
+        CompletableFuture<String> second = singleFlight.load("p1", key -> load(call));
+        call.completeExceptionally(new IllegalStateException("throttled"));
+
+        assertThat(catchThrowable(first::join)).isInstanceOf(CompletionException.class).hasRootCauseMessage("throttled");
+        assertThat(catchThrowable(second::join)).isInstanceOf(CompletionException.class).hasRootCauseMessage("throttled");
+        assertThat(singleFlight.load("p1", key -> load(CompletableFuture.completedFuture("retried"))).join())
+            .isEqualTo("retried");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void keyIsReleasedWhenTheLoaderThrows() {
+        CompletableFuture<String> failed = singleFlight.load("p1", key -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("no client");
+        });
+
+        assertThat(catchThrowable(failed::join)).isInstanceOf(CompletionException.class).hasRootCauseMessage("no client");
+        assertThat(singleFlight.load("p1", key -> load(CompletableFuture.completedFuture("retried"))).join())
+            .isEqualTo("retried");
+        assertThat(loads).hasValue(2);
+    }
+
+    private CompletableFuture<String> load(CompletableFuture<String> call) {
+        loads.incrementAndGet();
+        return call;
+    }
+
+    private double calls(String outcome) {
+        return meterRegistry.counter("products.singleflight.calls", "lookup", "id", "outcome", outcome).count();
+    }
+}
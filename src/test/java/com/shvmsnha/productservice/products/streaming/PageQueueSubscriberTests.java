@@ -0,0 +1,99 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import com.shvmsnha.productservice.products.models.Product;
+
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+class PageQueueSubscriberTests {
+
+    private final RecordingSubscription subscription = new RecordingSubscription();
+
+    @Test
+    void onlyThePrefetchIsRequestedUpFront() {
+        PageQueueSubscriber subscriber = new PageQueueSubscriber(2);
+
+        subscriber.onSubscribe(subscription);
+
+        assertThat(subscription.requested).isEqualTo(2);
+    }
+
+    @Test
+    void eachPageTakenRequestsOneMore() throws IOException {
+        PageQueueSubscriber subscriber = new PageQueueSubscriber(2);
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(page("p1"));
+        subscriber.onNext(page("p2"));
+
+        assertThat(subscriber.next().items()).extracting(Product::getId).containsExactly("p1");
+        assertThat(subscription.requested).isEqualTo(3);
+        subscriber.onNext(page("p3"));
+        subscriber.onComplete();
+
+        assertThat(subscriber.next().items()).extracting(Product::getId).containsExactly("p2");
+        assertThat(subscriber.next().items()).extracting(Product::getId).containsExactly("p3");
+        assertThat(subscriber.next()).isNull();
+        assertThat(subscription.requested).isEqualTo(5);
+    }
+
+    @Test
+    void scanFailureIsRethrownAfterThePagesBeforeIt() throws IOException {
+        PageQueueSubscriber subscriber = new PageQueueSubscriber(2);
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(page("p1"));
+        subscriber.onError(new IllegalStateException("scan failed"));
+
+        assertThat(subscriber.next().items()).hasSize(1);
+        assertThat(catchThrowable(subscriber::next)).isInstanceOf(IOException.class)
+            .hasRootCauseMessage("scan failed");
+    }
+
+    @Test
+    void interruptedWaitCancelsTheScan() {
+        PageQueueSubscriber subscriber = new PageQueueSubscriber(1);
+        subscriber.onSubscribe(subscription);
+
+        Thread.currentThread().interrupt();
+        Throwable thrown = catchThrowable(subscriber::next);
+
+        assertThat(Thread.interrupted()).isTrue();
+        assertThat(thrown).isInstanceOf(IOException.class);
+        assertThat(subscription.cancelled).isTrue();
+    }
+
+    static Page<Product> page(String... ids) {
+        return Page.create(List.of(ids).stream().map(PageQueueSubscriberTests::product).toList());
+    }
+
+    static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductName("Product " + id);
+        product.setCode("C-" + id);
+        product.setModel("model");
+        return product;
+    }
+
+    static final class RecordingSubscription implements Subscription {
+        volatile long requested;
+        volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
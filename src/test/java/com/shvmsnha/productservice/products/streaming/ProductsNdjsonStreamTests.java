@@ -0,0 +1,77 @@
+package com.shvmsnha.productservice.products.streaming;
+
+import static com.shvmsnha.productservice.products.streaming.PageQueueSubscriberTests.page;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shvmsnha.productservice.products.models.Product;
+import com.shvmsnha.productservice.products.streaming.PageQueueSubscriberTests.RecordingSubscription;
+
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+class ProductsNdjsonStreamTests {
+
+    private final RecordingSubscription subscription = new RecordingSubscription();
+
+    @Test
+    void everyProductIsWrittenOnItsOwnLine() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        stream(List.of(page("p1", "p2"), page("p3"))).writeTo(output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"id\":\"p1\"").contains("\"name\":\"Product p1\"");
+        assertThat(lines[2]).contains("\"id\":\"p3\"");
+        assertThat(subscription.cancelled).isFalse();
+    }
+
+    @Test
+    void scanIsCancelledWhenTheClientGoesAway() {
+        Throwable thrown = catchThrowable(() -> stream(List.of(page("p1"))).writeTo(failing(new IOException("reset"))));
+
+        assertThat(thrown).isInstanceOf(IOException.class);
+        assertThat(subscription.cancelled).isTrue();
+    }
+
+    @Test
+    void scanIsCancelledWhenWritingFailsUnexpectedly() {
+        Throwable thrown = catchThrowable(
+            () -> stream(List.of(page("p1"))).writeTo(failing(new IllegalStateException("broken"))));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        assertThat(subscription.cancelled).isTrue();
+    }
+
+    // Emits the pages right away, as long as they were requested, then completes.
+    private ProductsNdjsonStream stream(List<Page<Product>> pages) {
+        SdkPublisher<Page<Product>> publisher = subscriber -> {
+            subscriber.onSubscribe(subscription);
+            pages.forEach(subscriber::onNext);
+            subscriber.onComplete();
+        };
+        return new ProductsNdjsonStream(publisher, new ObjectMapper(), pages.size());
+    }
+
+    private static OutputStream failing(Exception failure) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (failure instanceof IOException e) {
+                    throw e;
+                }
+                throw (RuntimeException) failure;
+            }
+        };
+    }
+}